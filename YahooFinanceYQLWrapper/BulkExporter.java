@@ -0,0 +1,205 @@
+package YahooFinanceYQLWrapper;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Streams quotes and financial statements for a large universe of
+ * tickers straight to a file, as CSV or as a columnar binary file; see
+ * {@link ExportFormat}.
+ *
+ * <p>Fetches run on a {@link RequestExecutor} while the calling thread
+ * writes each result as soon as it arrives, so memory stays bounded however
+ * many tickers are exported. At most <code>window</code> fetches are ever
+ * started but not yet written: a new fetch is only started once an earlier
+ * result has been written, so a slow disk holds the fetchers back rather
+ * than letting results pile up. Rows are written in the order their
+ * fetches complete.
+ *
+ * <p>A chunk of quotes or a statement that cannot be retrieved is skipped
+ * and counted by {@link #failureCount()}, so one bad ticker does not cost
+ * the rest of the export.
+ *
+ * @author Amandeep Sarow
+ */
+public final class BulkExporter {
+    private final RequestExecutor executor;
+    private final int window;
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Creates an exporter.
+     *
+     * @param executor The executor that runs each fetch.
+     * @param window   The maximum number of fetches started but not yet
+     *                 written. Each quote fetch is one chunk of tickers;
+     *                 each statement fetch is every statement of one
+     *                 ticker.
+     */
+    public BulkExporter(RequestExecutor executor, int window) {
+	if (window < 1)
+	    throw new IllegalArgumentException("window must be positive");
+	this.executor = executor;
+	this.window = window;
+    }
+
+    /**
+     * Exports the given quote fields for every ticker.
+     *
+     * @param tickers The stock tickers for the public corporations.
+     * @param fields  The fields to retrieve; one column each.
+     * @param file    The file to write, replacing any file already there.
+     * @param format  The file format.
+     * @return        The number of quotes written.
+     * @throws IOException If the file cannot be written.
+     */
+    public long exportQuotes(Collection<String> tickers,
+			     Set<QuoteField> fields, Path file,
+			     ExportFormat format) throws IOException {
+	List<List<String>> chunks = YQLWrapper.chunkTickers(tickers, fields);
+	ExportChannel channel = ExportChannel.create(file);
+	ExportWriter<QuoteSnapshot> writer;
+	try {
+	    writer = format == ExportFormat.CSV ?
+		CsvExport.quotes(channel, fields) :
+		ColumnarExport.quotes(channel, fields);
+	} catch (IOException | RuntimeException e) {
+	    channel.close();
+	    throw e;
+	}
+
+	try (ExportWriter<QuoteSnapshot> quotes = writer) {
+	    pipeline(chunks.iterator(),
+		     chunk -> YQLWrapper.findQuotes(chunk, fields).values(),
+		     quotes);
+	    return quotes.rowCount();
+	}
+    }
+
+    /**
+     * Exports the given financial statements for every ticker.
+     *
+     * @param tickers     The stock tickers of the public corporations.
+     * @param types       The statements to export for each ticker.
+     * @param periodTypes The statement periods to export for each
+     *                    statement.
+     * @param file        The file to write, replacing any file already
+     *                    there.
+     * @param format      The file format.
+     * @return            The number of rows written, one per line item and
+     *                    period.
+     * @throws IOException If the file cannot be written.
+     */
+    public long exportStatements(Collection<String> tickers,
+				 Set<StatementType> types,
+				 Set<PeriodType> periodTypes, Path file,
+				 ExportFormat format) throws IOException {
+	ExportChannel channel = ExportChannel.create(file);
+	ExportWriter<FinancialStatement> writer;
+	try {
+	    writer = format == ExportFormat.CSV ?
+		CsvExport.statements(channel) :
+		ColumnarExport.statements(channel);
+	} catch (IOException | RuntimeException e) {
+	    channel.close();
+	    throw e;
+	}
+
+	try (ExportWriter<FinancialStatement> statements = writer) {
+	    pipeline(tickers.iterator(),
+		     ticker -> statements(ticker, types, periodTypes),
+		     statements);
+	    return statements.rowCount();
+	}
+    }
+
+    /** @return The number of fetches skipped because they failed. */
+    public long failureCount() {
+	return failures.get();
+    }
+
+    /* Fetches the records for each key on the executor and writes them on
+       the calling thread, keeping at most window fetches outstanding. If
+       the export fails, the fetches still outstanding are cancelled. */
+    private <K, R> void pipeline(Iterator<K> keys,
+				 Function<K, ? extends Iterable<R>> fetch,
+				 ExportWriter<R> writer) throws IOException {
+	BlockingQueue<CompletableFuture<? extends Iterable<R>>> completed =
+	    new ArrayBlockingQueue<CompletableFuture<? extends Iterable<R>>>
+	    (window);
+	Set<CompletableFuture<? extends Iterable<R>>> outstanding =
+	    new HashSet<CompletableFuture<? extends Iterable<R>>>();
+
+	try {
+	    while (!outstanding.isEmpty() || keys.hasNext()) {
+		while (outstanding.size() < window && keys.hasNext()) {
+		    K key = keys.next();
+		    CompletableFuture<? extends Iterable<R>> result =
+			executor.submit(() -> fetch.apply(key));
+		    result.whenComplete((records, error) ->
+					completed.add(result));
+		    outstanding.add(result);
+		}
+
+		CompletableFuture<? extends Iterable<R>> result;
+		try {
+		    result = completed.take();
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		    throw new InterruptedIOException("Export interrupted");
+		}
+		outstanding.remove(result);
+
+		Iterable<R> records;
+		try {
+		    records = result.join();
+		} catch (CompletionException e) {
+		    if (!(e.getCause() instanceof YQLException))
+			throw e;
+		    failures.incrementAndGet();
+		    continue;
+		}
+		for (R record : records)
+		    writer.write(record);
+	    }
+	} finally {
+	    /* Fetches that have not started are never run; running ones
+	       finish but their records are discarded */
+	    for (CompletableFuture<? extends Iterable<R>> result : outstanding)
+		result.cancel(false);
+	}
+    }
+
+    /* Fetches every requested statement of one ticker, skipping the ones
+       that fail */
+    private List<FinancialStatement> statements(String ticker,
+						Set<StatementType> types,
+						Set<PeriodType> periodTypes) {
+	List<FinancialStatement> statements =
+	    new ArrayList<FinancialStatement>();
+	for (StatementType type : types) {
+	    for (PeriodType periodType : periodTypes) {
+		try {
+		    statements.add(YQLWrapper.financialStatement
+				   (ticker, type, periodType));
+		} catch (YQLException e) {
+		    failures.incrementAndGet();
+		}
+	    }
+	}
+	return statements;
+    }
+}
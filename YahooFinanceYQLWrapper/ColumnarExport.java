@@ -0,0 +1,270 @@
+package YahooFinanceYQLWrapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes quotes and financial statements as a compact columnar binary
+ * file. Rows are gathered into blocks of up to {@link #BLOCK_ROWS}, and
+ * each full block is written one column after another, so a reader can
+ * load a single column of a block without decoding the others. Only one
+ * block is ever held in memory.
+ *
+ * <p>Text columns are dictionary encoded within each block: the distinct
+ * values are written once and each row holds an index into them, so a
+ * ticker or line item name repeated down a block costs four bytes a row.
+ *
+ * <pre>
+ * file    := magic:int version:int columnCount:int
+ *            (kind:byte nameLength:int name:utf8)[columnCount]
+ *            block* rowCount:int=0
+ * block   := rowCount:int column[columnCount]
+ * column  := value:int[rowCount]                          for INT
+ *          | value:long[rowCount]                         for LONG
+ *          | value:double[rowCount]                       for DOUBLE
+ *          | wordCount:int (length:int utf8)[wordCount]
+ *            index:int[rowCount]                          for TEXT,
+ *                                                         index -1 if absent
+ * </pre>
+ *
+ * <p>Quote files have a TEXT symbol column and then one column per
+ * requested field, named by its YQL tag: DOUBLE for fields with a numeric
+ * value, with NaN where absent, and TEXT for the others. Statement files
+ * have TEXT ticker, statement and period columns, an INT periodEnding
+ * column of <code>yyyymmdd</code> dates, a TEXT lineItem column and a LONG
+ * value column in thousands, holding {@link FinancialStatement#MISSING}
+ * where the statement has no figure.
+ *
+ * @author Amandeep Sarow
+ */
+final class ColumnarExport {
+    static final int MAGIC = 0x59514c43;
+    static final int VERSION = 1;
+    static final int BLOCK_ROWS = 8192;
+
+    static final byte TEXT = 1;
+    static final byte INT = 2;
+    static final byte LONG = 3;
+    static final byte DOUBLE = 4;
+
+    private final ExportChannel channel;
+    private final Column[] columns;
+    private int blockRows;
+    private long rows;
+
+    private ColumnarExport(ExportChannel channel, byte[] kinds,
+			   String[] names) throws IOException {
+	this.channel = channel;
+	columns = new Column[kinds.length];
+	channel.putInt(MAGIC);
+	channel.putInt(VERSION);
+	channel.putInt(kinds.length);
+	for (int i = 0; i < kinds.length; i++) {
+	    columns[i] = new Column(kinds[i]);
+	    channel.putByte(kinds[i]);
+	    putString(names[i]);
+	}
+    }
+
+    /* Creates a writer for snapshots requested with the given fields */
+    static ExportWriter<QuoteSnapshot> quotes(ExportChannel channel,
+					      Set<QuoteField> fields)
+	throws IOException {
+	return new Quotes(channel, fields.toArray(new QuoteField[0]));
+    }
+
+    /* Creates a writer for financial statements */
+    static ExportWriter<FinancialStatement> statements(ExportChannel channel)
+	throws IOException {
+	return new Statements(channel);
+    }
+
+    private void text(int column, String value) {
+	columns[column].codes[blockRows] = columns[column].code(value);
+    }
+
+    private void number(int column, long value) {
+	columns[column].longs[blockRows] = value;
+    }
+
+    private void number(int column, double value) {
+	columns[column].doubles[blockRows] = value;
+    }
+
+    /* Finishes the current row, writing the block once it is full */
+    private void endRow() throws IOException {
+	rows++;
+	if (++blockRows == BLOCK_ROWS)
+	    writeBlock();
+    }
+
+    private void writeBlock() throws IOException {
+	channel.putInt(blockRows);
+	for (Column column : columns) {
+	    switch (column.kind) {
+	    case TEXT:
+		channel.putInt(column.words.size());
+		for (String word : column.words)
+		    putString(word);
+		for (int row = 0; row < blockRows; row++)
+		    channel.putInt(column.codes[row]);
+		column.clear();
+		break;
+	    case INT:
+		for (int row = 0; row < blockRows; row++)
+		    channel.putInt((int) column.longs[row]);
+		break;
+	    case LONG:
+		for (int row = 0; row < blockRows; row++)
+		    channel.putLong(column.longs[row]);
+		break;
+	    default:
+		for (int row = 0; row < blockRows; row++)
+		    channel.putDouble(column.doubles[row]);
+		break;
+	    }
+	}
+	blockRows = 0;
+    }
+
+    /* Writes the last, partly filled block and the end marker, and closes
+       the file */
+    private void finish() throws IOException {
+	try {
+	    if (blockRows > 0)
+		writeBlock();
+	    channel.putInt(0);
+	} finally {
+	    channel.close();
+	}
+    }
+
+    private void putString(String value) throws IOException {
+	byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+	channel.putInt(bytes.length);
+	channel.putBytes(bytes);
+    }
+
+    /* The values of one column for the current block */
+    private static final class Column {
+	final byte kind;
+	long[] longs;
+	double[] doubles;
+	int[] codes;
+	Map<String, Integer> dictionary;
+	List<String> words;
+
+	Column(byte kind) {
+	    this.kind = kind;
+	    if (kind == TEXT) {
+		codes = new int[BLOCK_ROWS];
+		dictionary = new HashMap<String, Integer>();
+		words = new ArrayList<String>();
+	    } else if (kind == DOUBLE) {
+		doubles = new double[BLOCK_ROWS];
+	    } else {
+		longs = new long[BLOCK_ROWS];
+	    }
+	}
+
+	/* The index of a value in this block's dictionary, adding it if
+	   it is new */
+	int code(String value) {
+	    if (value == null)
+		return -1;
+	    Integer code = dictionary.get(value);
+	    if (code == null) {
+		code = words.size();
+		dictionary.put(value, code);
+		words.add(value);
+	    }
+	    return code;
+	}
+
+	void clear() {
+	    dictionary.clear();
+	    words.clear();
+	}
+    }
+
+    private static final class Quotes implements ExportWriter<QuoteSnapshot> {
+	private final ColumnarExport table;
+	private final QuoteField[] fields;
+
+	Quotes(ExportChannel channel, QuoteField[] fields) throws IOException {
+	    byte[] kinds = new byte[fields.length + 1];
+	    String[] names = new String[fields.length + 1];
+	    kinds[0] = TEXT;
+	    names[0] = "symbol";
+	    for (int i = 0; i < fields.length; i++) {
+		kinds[i + 1] = fields[i].hasNumber() ? DOUBLE : TEXT;
+		names[i + 1] = fields[i].tagName();
+	    }
+	    this.table = new ColumnarExport(channel, kinds, names);
+	    this.fields = fields;
+	}
+
+	public void write(QuoteSnapshot snapshot) throws IOException {
+	    table.text(0, snapshot.symbol());
+	    for (int i = 0; i < fields.length; i++) {
+		if (fields[i].hasNumber())
+		    table.number(i + 1, snapshot.getDouble(fields[i]));
+		else
+		    table.text(i + 1, snapshot.getText(fields[i]));
+	    }
+	    table.endRow();
+	}
+
+	public long rowCount() {
+	    return table.rows;
+	}
+
+	public void close() throws IOException {
+	    table.finish();
+	}
+    }
+
+    private static final class Statements
+	implements ExportWriter<FinancialStatement> {
+	private static final byte[] KINDS = {
+	    TEXT, TEXT, TEXT, INT, TEXT, LONG
+	};
+	private static final String[] NAMES = {
+	    "ticker", "statement", "period", "periodEnding", "lineItem",
+	    "value"
+	};
+
+	private final ColumnarExport table;
+
+	Statements(ExportChannel channel) throws IOException {
+	    table = new ColumnarExport(channel, KINDS, NAMES);
+	}
+
+	public void write(FinancialStatement statement) throws IOException {
+	    for (int period = 0; period < statement.periodCount(); period++) {
+		for (int item = 0; item < statement.lineItemCount(); item++) {
+		    table.text(0, statement.ticker());
+		    table.text(1, statement.type().code());
+		    table.text(2, statement.periodType().parameter());
+		    table.number(3, (long) statement.periodEnd(period));
+		    table.text(4, statement.lineItem(item));
+		    table.number(5, statement.value(item, period));
+		    table.endRow();
+		}
+	    }
+	}
+
+	public long rowCount() {
+	    return table.rows;
+	}
+
+	public void close() throws IOException {
+	    table.finish();
+	}
+    }
+}
@@ -0,0 +1,62 @@
+package YahooFinanceYQLWrapper;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The financial statements retrieved for one public corporation by a
+ * {@link StatementFetcher}.
+ *
+ * @author Amandeep Sarow
+ */
+public final class CompanyStatements {
+    private final String ticker;
+    private final Map<StatementType, Map<PeriodType, FinancialStatement>>
+	statements = new EnumMap<StatementType,
+				 Map<PeriodType, FinancialStatement>>
+	(StatementType.class);
+    private int failures;
+
+    CompanyStatements(String ticker) {
+	this.ticker = ticker;
+    }
+
+    /** @return The stock ticker of the public corporation. */
+    public String ticker() {
+	return ticker;
+    }
+
+    /**
+     * Retrieves one of the fetched statements.
+     *
+     * @param type       The statement.
+     * @param periodType The type of statement period.
+     * @return           The statement, or null if it was not requested or
+     *                   could not be retrieved.
+     */
+    public synchronized FinancialStatement statement(StatementType type,
+						     PeriodType periodType) {
+	Map<PeriodType, FinancialStatement> byPeriod = statements.get(type);
+	return byPeriod == null ? null : byPeriod.get(periodType);
+    }
+
+    /** @return The number of requested statements that failed. */
+    public synchronized int failureCount() {
+	return failures;
+    }
+
+    synchronized void add(StatementType type, PeriodType periodType,
+			  FinancialStatement statement) {
+	if (statement == null) {
+	    failures++;
+	    return;
+	}
+	Map<PeriodType, FinancialStatement> byPeriod = statements.get(type);
+	if (byPeriod == null) {
+	    byPeriod = new EnumMap<PeriodType, FinancialStatement>
+		(PeriodType.class);
+	    statements.put(type, byPeriod);
+	}
+	byPeriod.put(periodType, statement);
+    }
+}
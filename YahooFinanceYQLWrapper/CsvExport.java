@@ -0,0 +1,179 @@
+package YahooFinanceYQLWrapper;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Writes quotes and financial statements as comma-separated text. Every
+ * file starts with a header row. Text is quoted only when it holds a
+ * comma, quote or line break, and absent values are left empty.
+ *
+ * <p>Quote files have a symbol column and then one column per requested
+ * field, named by its YQL tag. Fields with a numeric value are written as
+ * that number, so "2.1B" is written 2100000000, and text fields as their
+ * text. Statement files have one row per line item and period, with the
+ * values in thousands as shown on the statement page:
+ *
+ * <pre>
+ * ticker,statement,period,periodEnding,lineItem,value
+ * AAPL,is,annual,2014-09-27,Total Revenue,182795000
+ * </pre>
+ *
+ * @author Amandeep Sarow
+ */
+final class CsvExport {
+    /* The most decimal places written in plain notation */
+    private static final int MAX_PLACES = 6;
+
+    private CsvExport() {
+    }
+
+    /* Creates a writer for snapshots requested with the given fields */
+    static ExportWriter<QuoteSnapshot> quotes(ExportChannel channel,
+					      Set<QuoteField> fields)
+	throws IOException {
+	return new Quotes(channel, fields);
+    }
+
+    /* Creates a writer for financial statements */
+    static ExportWriter<FinancialStatement> statements(ExportChannel channel)
+	throws IOException {
+	return new Statements(channel);
+    }
+
+    /* Writes text, quoting it if it would otherwise break the row */
+    static void putText(ExportChannel channel, String text)
+	throws IOException {
+	if (text == null)
+	    return;
+	boolean quoted = false;
+	for (int i = 0; i < text.length() && !quoted; i++) {
+	    char c = text.charAt(i);
+	    quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+	}
+	if (!quoted) {
+	    channel.putUtf8(text);
+	    return;
+	}
+	channel.putByte('"');
+	channel.putUtf8(text.replace("\"", "\"\""));
+	channel.putByte('"');
+    }
+
+    /* Writes a number in plain notation with the fewest decimal places
+       that read back as the same double, which for prices and ratios
+       avoids the cost of Double.toString. Dividing an exact whole number
+       by an exact power of ten rounds the same way as parsing the
+       decimal, so the check is exact. */
+    static void putNumber(ExportChannel channel, double value)
+	throws IOException {
+	if (Double.isNaN(value))
+	    return;
+	long scale = 1;
+	for (int places = 0; places <= MAX_PLACES; places++) {
+	    double scaled = Math.rint(value * scale);
+	    if (Math.abs(scaled) < 1e15 && scaled / scale == value) {
+		channel.putDecimal((long) scaled, places);
+		return;
+	    }
+	    scale *= 10;
+	}
+	channel.putDecimal(value);
+    }
+
+    /* Writes a yyyymmdd date as yyyy-mm-dd */
+    static void putDate(ExportChannel channel, int date) throws IOException {
+	channel.putDecimal(date / 10000);
+	channel.putByte('-');
+	putTwoDigits(channel, date / 100 % 100);
+	channel.putByte('-');
+	putTwoDigits(channel, date % 100);
+    }
+
+    private static void putTwoDigits(ExportChannel channel, int value)
+	throws IOException {
+	channel.putByte('0' + value / 10);
+	channel.putByte('0' + value % 10);
+    }
+
+    private static final class Quotes implements ExportWriter<QuoteSnapshot> {
+	private final ExportChannel channel;
+	private final QuoteField[] fields;
+	private long rows;
+
+	Quotes(ExportChannel channel, Set<QuoteField> fields)
+	    throws IOException {
+	    this.channel = channel;
+	    this.fields = fields.toArray(new QuoteField[0]);
+	    channel.putAscii("symbol");
+	    for (QuoteField field : this.fields) {
+		channel.putByte(',');
+		channel.putAscii(field.tagName());
+	    }
+	    channel.putByte('\n');
+	}
+
+	public void write(QuoteSnapshot snapshot) throws IOException {
+	    putText(channel, snapshot.symbol());
+	    for (QuoteField field : fields) {
+		channel.putByte(',');
+		if (field.hasNumber())
+		    putNumber(channel, snapshot.getDouble(field));
+		else
+		    putText(channel, snapshot.getText(field));
+	    }
+	    channel.putByte('\n');
+	    rows++;
+	}
+
+	public long rowCount() {
+	    return rows;
+	}
+
+	public void close() throws IOException {
+	    channel.close();
+	}
+    }
+
+    private static final class Statements
+	implements ExportWriter<FinancialStatement> {
+	private final ExportChannel channel;
+	private long rows;
+
+	Statements(ExportChannel channel) throws IOException {
+	    this.channel = channel;
+	    channel.putAscii("ticker,statement,period,periodEnding,"
+			     + "lineItem,value\n");
+	}
+
+	public void write(FinancialStatement statement) throws IOException {
+	    for (int period = 0; period < statement.periodCount(); period++) {
+		for (int item = 0; item < statement.lineItemCount(); item++) {
+		    putText(channel, statement.ticker());
+		    channel.putByte(',');
+		    channel.putAscii(statement.type().code());
+		    channel.putByte(',');
+		    channel.putAscii(statement.periodType().parameter());
+		    channel.putByte(',');
+		    putDate(channel, statement.periodEnd(period));
+		    channel.putByte(',');
+		    putText(channel, statement.lineItem(item));
+		    channel.putByte(',');
+		    long value = statement.value(item, period);
+		    if (value != FinancialStatement.MISSING)
+			channel.putDecimal(value);
+		    channel.putByte('\n');
+		    rows++;
+		}
+	    }
+	}
+
+	public long rowCount() {
+	    return rows;
+	}
+
+	public void close() throws IOException {
+	    channel.close();
+	}
+    }
+}
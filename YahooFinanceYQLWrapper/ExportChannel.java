@@ -0,0 +1,166 @@
+package YahooFinanceYQLWrapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file channel written through a fixed-size direct buffer. Values are
+ * encoded straight into the buffer, big-endian, and the buffer is drained
+ * to the file whenever the next value would not fit, so an export never
+ * holds more than one buffer of output.
+ *
+ * @author Amandeep Sarow
+ */
+final class ExportChannel implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final byte[] digits = new byte[24];
+    private final StringBuilder scratch = new StringBuilder(32);
+
+    private ExportChannel(FileChannel channel) {
+	this.channel = channel;
+    }
+
+    /**
+     * Creates a file, replacing any file already there.
+     *
+     * @param file The file to write.
+     * @return     The opened channel.
+     * @throws IOException If the file cannot be created.
+     */
+    static ExportChannel create(Path file) throws IOException {
+	return new ExportChannel(FileChannel.open
+				 (file, StandardOpenOption.CREATE,
+				  StandardOpenOption.TRUNCATE_EXISTING,
+				  StandardOpenOption.WRITE));
+    }
+
+    void putByte(int value) throws IOException {
+	ensure(1);
+	buffer.put((byte) value);
+    }
+
+    void putInt(int value) throws IOException {
+	ensure(4);
+	buffer.putInt(value);
+    }
+
+    void putLong(long value) throws IOException {
+	ensure(8);
+	buffer.putLong(value);
+    }
+
+    void putDouble(double value) throws IOException {
+	ensure(8);
+	buffer.putDouble(value);
+    }
+
+    /* Writes bytes of any length, draining as often as needed */
+    void putBytes(byte[] bytes) throws IOException {
+	int offset = 0;
+	while (offset < bytes.length) {
+	    ensure(1);
+	    int length = Math.min(buffer.remaining(), bytes.length - offset);
+	    buffer.put(bytes, offset, length);
+	    offset += length;
+	}
+    }
+
+    /* Writes text as UTF-8, copying ASCII text straight into the buffer */
+    void putUtf8(String text) throws IOException {
+	for (int i = 0; i < text.length(); i++) {
+	    if (text.charAt(i) >= 0x80) {
+		putBytes(text.getBytes(StandardCharsets.UTF_8));
+		return;
+	    }
+	}
+	putAscii(text);
+    }
+
+    /* Writes text known to be ASCII, one byte per character */
+    void putAscii(CharSequence text) throws IOException {
+	for (int i = 0; i < text.length(); i++)
+	    putByte(text.charAt(i));
+    }
+
+    /* Writes a whole number as ASCII digits without building a string */
+    void putDecimal(long value) throws IOException {
+	if (value == Long.MIN_VALUE) {
+	    putAscii(Long.toString(value));
+	    return;
+	}
+	if (value < 0) {
+	    putByte('-');
+	    value = -value;
+	}
+	int start = digits.length;
+	do {
+	    digits[--start] = (byte) ('0' + value % 10);
+	    value /= 10;
+	} while (value != 0);
+	ensure(digits.length - start);
+	buffer.put(digits, start, digits.length - start);
+    }
+
+    /* Writes unscaled / 10^places in plain decimal notation, e.g. 28249
+       with 2 places as 282.49. The magnitude must be below 10^18. */
+    void putDecimal(long unscaled, int places) throws IOException {
+	if (places == 0) {
+	    putDecimal(unscaled);
+	    return;
+	}
+	long magnitude = Math.abs(unscaled);
+	int start = digits.length;
+	for (int i = 0; i < places; i++) {
+	    digits[--start] = (byte) ('0' + magnitude % 10);
+	    magnitude /= 10;
+	}
+	digits[--start] = '.';
+	do {
+	    digits[--start] = (byte) ('0' + magnitude % 10);
+	    magnitude /= 10;
+	} while (magnitude != 0);
+	if (unscaled < 0)
+	    digits[--start] = '-';
+	ensure(digits.length - start);
+	buffer.put(digits, start, digits.length - start);
+    }
+
+    /* Writes a number as Double.toString would, without the string */
+    void putDecimal(double value) throws IOException {
+	scratch.setLength(0);
+	putAscii(scratch.append(value));
+    }
+
+    /**
+     * Writes buffered bytes to the file and closes it.
+     *
+     * @throws IOException If the bytes cannot be written.
+     */
+    public void close() throws IOException {
+	try {
+	    drain();
+	} finally {
+	    channel.close();
+	}
+    }
+
+    private void ensure(int bytes) throws IOException {
+	if (buffer.remaining() < bytes)
+	    drain();
+    }
+
+    private void drain() throws IOException {
+	buffer.flip();
+	while (buffer.hasRemaining())
+	    channel.write(buffer);
+	buffer.clear();
+    }
+}
@@ -0,0 +1,16 @@
+package YahooFinanceYQLWrapper;
+
+/**
+ * The file formats a {@link BulkExporter} can write.
+ *
+ * @author Amandeep Sarow
+ */
+public enum ExportFormat {
+    /** Comma-separated text with a header row. Quotes are written one row
+	per ticker; statements one row per line item and period. */
+    CSV,
+    /** A compact binary file of fixed-size blocks of rows, each block
+	holding one column after another, with repeated text such as
+	tickers and line item names stored once per block. */
+    COLUMNAR
+}
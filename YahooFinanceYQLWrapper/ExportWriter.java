@@ -0,0 +1,23 @@
+package YahooFinanceYQLWrapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes records to an export file as they arrive. Closing the writer
+ * flushes anything it has buffered and closes the file.
+ *
+ * @author Amandeep Sarow
+ */
+interface ExportWriter<R> extends Closeable {
+    /**
+     * Writes one record.
+     *
+     * @param record The record to write.
+     * @throws IOException If the file cannot be written.
+     */
+    void write(R record) throws IOException;
+
+    /** @return The number of rows written so far. */
+    long rowCount();
+}
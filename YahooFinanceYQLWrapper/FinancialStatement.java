@@ -0,0 +1,274 @@
+package YahooFinanceYQLWrapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A parsed financial statement stored column by column. Each reporting
+ * period is a column of <code>long</code> values, in the thousands of
+ * dollars shown on the statement page, with {@link #MISSING} where the page
+ * shows a dash. Period end dates are held as <code>yyyymmdd</code> integers
+ * and line item names are interned, so statements for many companies share
+ * the same name strings.
+ *
+ * @author Amandeep Sarow
+ */
+public final class FinancialStatement {
+    /** The value stored where the statement has no figure. */
+    public static final long MISSING = Long.MIN_VALUE;
+
+    private final String ticker;
+    private final StatementType type;
+    private final PeriodType periodType;
+    private final int[] periodEnds;
+    private final String[] lineItems;
+    private final long[] values;
+
+    /* The values array holds one column per period, each column holding
+       one value per line item */
+    FinancialStatement(String ticker, StatementType type, PeriodType periodType,
+		       int[] periodEnds, String[] lineItems, long[] values) {
+	this.ticker = ticker;
+	this.type = type;
+	this.periodType = periodType;
+	this.periodEnds = periodEnds;
+	this.lineItems = lineItems;
+	this.values = values;
+    }
+
+    /** @return The stock ticker of the public corporation. */
+    public String ticker() {
+	return ticker;
+    }
+
+    /** @return Which statement this is. */
+    public StatementType type() {
+	return type;
+    }
+
+    /** @return Whether the periods are quarters or years. */
+    public PeriodType periodType() {
+	return periodType;
+    }
+
+    /** @return The number of reporting periods, most recent first. */
+    public int periodCount() {
+	return periodEnds.length;
+    }
+
+    /**
+     * Retrieves the end date of a reporting period.
+     *
+     * @param period The period index, 0 being the most recent.
+     * @return       The date as a <code>yyyymmdd</code> integer.
+     */
+    public int periodEnd(int period) {
+	return periodEnds[period];
+    }
+
+    /** @return The number of line items. */
+    public int lineItemCount() {
+	return lineItems.length;
+    }
+
+    /**
+     * Retrieves the name of a line item.
+     *
+     * @param lineItem The line item index, in statement order.
+     * @return         The name, e.g. "Total Revenue".
+     */
+    public String lineItem(int lineItem) {
+	return lineItems[lineItem];
+    }
+
+    /**
+     * Finds a line item by name.
+     *
+     * @param name The name, e.g. "Total Revenue".
+     * @return     The line item index, or -1 if the statement has no such
+     *             line item.
+     */
+    public int indexOf(String name) {
+	for (int i = 0; i < lineItems.length; i++) {
+	    if (lineItems[i].equals(name))
+		return i;
+	}
+	return -1;
+    }
+
+    /**
+     * Retrieves a single value.
+     *
+     * @param lineItem The line item index.
+     * @param period   The period index, 0 being the most recent.
+     * @return         The value in thousands, or {@link #MISSING}.
+     */
+    public long value(int lineItem, int period) {
+	return values[period * lineItems.length + lineItem];
+    }
+
+    /**
+     * Retrieves a single value by line item name.
+     *
+     * @param name   The line item name, e.g. "Total Revenue".
+     * @param period The period index, 0 being the most recent.
+     * @return       The value in thousands, or {@link #MISSING} if it is
+     *               absent or the statement has no such line item.
+     */
+    public long value(String name, int period) {
+	int lineItem = indexOf(name);
+	return lineItem == -1 ? MISSING : value(lineItem, period);
+    }
+
+    /**
+     * Copies every value of one reporting period.
+     *
+     * @param period The period index, 0 being the most recent.
+     * @return       The values in line item order.
+     */
+    public long[] period(int period) {
+	int from = period * lineItems.length;
+	return Arrays.copyOfRange(values, from, from + lineItems.length);
+    }
+
+    /** @return The period end dates as <code>yyyymmdd</code> integers. */
+    int[] periodEnds() {
+	return periodEnds;
+    }
+
+    /** @return The line item names, in statement order. */
+    String[] lineItems() {
+	return lineItems;
+    }
+
+    /** @return The values, one column per period. */
+    long[] values() {
+	return values;
+    }
+
+    /* Accumulates the rows of a statement table from its de-tagged text */
+    static final class Builder {
+	private static final String[] MONTHS = {
+	    "Jan", "Feb", "Mar", "Apr", "May", "Jun",
+	    "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"
+	};
+
+	private final String ticker;
+	private final StatementType type;
+	private final PeriodType periodType;
+	private int[] periodEnds;
+	private final List<String> lineItems = new ArrayList<String>();
+	private final List<long[]> rows = new ArrayList<long[]>();
+
+	Builder(String ticker, StatementType type, PeriodType periodType) {
+	    this.ticker = ticker;
+	    this.type = type;
+	    this.periodType = periodType;
+	}
+
+	/* Reads the period end dates from the "Period Ending" row, or a
+	   line item and one value per period from any other row */
+	void addLine(String text) {
+	    String[] tokens = text.split(" ");
+
+	    if (periodEnds == null) {
+		int ending = Arrays.asList(tokens).indexOf("Ending");
+		if (ending != -1)
+		    periodEnds = parsePeriodEnds(tokens, ending + 1);
+		return;
+	    }
+
+	    int firstValue = 0;
+	    while (firstValue < tokens.length && !isValue(tokens[firstValue]))
+		firstValue++;
+	    if (firstValue == 0 ||
+		tokens.length - firstValue != periodEnds.length)
+		return;
+
+	    StringBuilder name = new StringBuilder(tokens[0]);
+	    for (int i = 1; i < firstValue; i++)
+		name.append(' ').append(tokens[i]);
+
+	    long[] row = new long[periodEnds.length];
+	    for (int i = 0; i < row.length; i++) {
+		String token = tokens[firstValue + i];
+		if (!isValue(token))
+		    return;
+		row[i] = parseValue(token);
+	    }
+	    lineItems.add(name.toString().intern());
+	    rows.add(row);
+	}
+
+	boolean hasPeriods() {
+	    return periodEnds != null;
+	}
+
+	FinancialStatement build() {
+	    int[] periods = periodEnds == null ? new int[0] : periodEnds;
+	    int items = rows.size();
+	    long[] values = new long[periods.length * items];
+
+	    for (int item = 0; item < items; item++) {
+		long[] row = rows.get(item);
+		for (int period = 0; period < periods.length; period++)
+		    values[period * items + item] = row[period];
+	    }
+	    return new FinancialStatement(ticker, type, periodType, periods,
+					  lineItems.toArray(new String[items]),
+					  values);
+	}
+
+	/* Dates are written "Sep 27, 2014" */
+	private static int[] parsePeriodEnds(String[] tokens, int from) {
+	    List<Integer> dates = new ArrayList<Integer>();
+	    for (int i = from; i + 2 < tokens.length; i++) {
+		int month = Arrays.asList(MONTHS).indexOf(tokens[i]) + 1;
+		String day = tokens[i + 1];
+		if (month == 0 || !day.endsWith(","))
+		    continue;
+		try {
+		    int dayOfMonth = Integer.parseInt
+			(day.substring(0, day.length() - 1));
+		    int year = Integer.parseInt(tokens[i + 2]);
+		    dates.add(year * 10000 + month * 100 + dayOfMonth);
+		    i += 2;
+		} catch (NumberFormatException e) {
+		    continue;
+		}
+	    }
+
+	    int[] periodEnds = new int[dates.size()];
+	    for (int i = 0; i < periodEnds.length; i++)
+		periodEnds[i] = dates.get(i);
+	    return periodEnds;
+	}
+
+	/* A value is a dash, a number such as 1,234 or a negative number
+	   in parentheses such as (1,234) */
+	private static boolean isValue(String token) {
+	    if (token.equals("-"))
+		return true;
+	    int start = token.startsWith("(") ? 1 : 0;
+	    return token.length() > start &&
+		Character.isDigit(token.charAt(start));
+	}
+
+	private static long parseValue(String token) {
+	    if (token.equals("-"))
+		return MISSING;
+
+	    boolean negative = false;
+	    long value = 0;
+	    for (int i = 0; i < token.length(); i++) {
+		char c = token.charAt(i);
+		if (c == '(')
+		    negative = true;
+		else if (c >= '0' && c <= '9')
+		    value = value * 10 + (c - '0');
+	    }
+	    return negative ? -value : value;
+	}
+    }
+}
@@ -0,0 +1,31 @@
+package YahooFinanceYQLWrapper;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a server answers a request with an HTTP error status other
+ * than 404, which is reported as a {@link java.io.FileNotFoundException}.
+ *
+ * @author Amandeep Sarow
+ */
+public class HttpStatusException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    /**
+     * Creates the exception for a failed request.
+     *
+     * @param status The HTTP status code of the response.
+     * @param url    The URL that was requested.
+     */
+    public HttpStatusException(int status, String url) {
+	super("HTTP " + status + " fetching " + url);
+	this.status = status;
+    }
+
+    /** @return The HTTP status code of the response. */
+    public int status() {
+	return status;
+    }
+}
@@ -0,0 +1,23 @@
+package YahooFinanceYQLWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fetches the body of a YQL or statement page. The wrapper performs all of
+ * its network access through the transport set with
+ * {@link YQLWrapper#setTransport(HttpTransport)}.
+ *
+ * @author Amandeep Sarow
+ */
+public interface HttpTransport {
+    /**
+     * Opens the body of the resource at the given URL.
+     *
+     * @param url The absolute URL to retrieve.
+     * @return    The response body, decompressed if necessary. The caller
+     *            closes the stream.
+     * @throws IOException If the resource could not be retrieved.
+     */
+    InputStream open(String url) throws IOException;
+}
@@ -0,0 +1,58 @@
+package YahooFinanceYQLWrapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A transport that serves canned responses from memory, so the wrapper can
+ * be exercised and benchmarked without network access. Responses are
+ * registered against a URL prefix; the longest matching prefix wins.
+ *
+ * @author Amandeep Sarow
+ */
+public final class InMemoryTransport implements HttpTransport {
+    private final Map<String, byte[]> responses =
+	new ConcurrentHashMap<String, byte[]>();
+    private final LongAdder requests = new LongAdder();
+
+    /**
+     * Serves the given body for every URL starting with the prefix.
+     *
+     * @param urlPrefix The start of the URLs to answer.
+     * @param body      The response body.
+     * @return          This transport, for chaining.
+     */
+    public InMemoryTransport respond(String urlPrefix, byte[] body) {
+	responses.put(urlPrefix, body.clone());
+	return this;
+    }
+
+    /** Removes every registered response. */
+    public void clear() {
+	responses.clear();
+    }
+
+    /** @return The number of URLs opened through this transport. */
+    public long requestCount() {
+	return requests.sum();
+    }
+
+    public InputStream open(String url) throws FileNotFoundException {
+	requests.increment();
+
+	String bestPrefix = null;
+	for (String prefix : responses.keySet()) {
+	    if (url.startsWith(prefix) &&
+		(bestPrefix == null || prefix.length() > bestPrefix.length()))
+		bestPrefix = prefix;
+	}
+	byte[] body = bestPrefix == null ? null : responses.get(bestPrefix);
+	if (body == null)
+	    throw new FileNotFoundException(url);
+	return new ByteArrayInputStream(body);
+    }
+}
@@ -0,0 +1,342 @@
+package YahooFinanceYQLWrapper;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maintains intraday indicators for each ticker from the quotes it is
+ * given, typically as a {@link QuoteListener} of a {@link QuotePoller}.
+ * Every indicator covers the last <i>window</i> ticks, where a tick is a
+ * snapshot whose price, volume or daily range differs from the previous
+ * one, so the same quote polled twice is counted once:
+ * <ul>
+ * <li>the simple and exponential moving averages of the last trade
+ *     price,</li>
+ * <li>the volume-weighted average price, weighting each tick's price by
+ *     the shares traded since the previous tick, and</li>
+ * <li>the highest and lowest price traded, raised or lowered to the day's
+ *     high or low when that moved between ticks.</li>
+ * </ul>
+ *
+ * <p>Each ticker keeps fixed-size primitive ring buffers allocated when it
+ * is first seen. A tick updates every indicator in constant time without
+ * allocating, so thousands of tickers can be tracked from one thread.
+ *
+ * @author Amandeep Sarow
+ */
+public final class IndicatorEngine implements QuoteListener {
+    private final int window;
+    private final double alpha;
+    private final Map<String, Series> series =
+	new ConcurrentHashMap<String, Series>();
+
+    /**
+     * Creates an engine tracking no tickers.
+     *
+     * @param window The number of ticks each indicator covers. The
+     *               exponential moving average uses a smoothing factor of
+     *               2 / (window + 1).
+     */
+    public IndicatorEngine(int window) {
+	if (window < 1)
+	    throw new IllegalArgumentException("Window must be positive");
+	this.window = window;
+	alpha = 2.0 / (window + 1);
+    }
+
+    /** @return The number of ticks each indicator covers. */
+    public int window() {
+	return window;
+    }
+
+    /** @return The number of tickers tracked. */
+    public int size() {
+	return series.size();
+    }
+
+    /**
+     * Stops tracking a ticker and discards its history.
+     *
+     * @param symbol The stock ticker for the public corporation.
+     */
+    public void remove(String symbol) {
+	series.remove(symbol);
+    }
+
+    /**
+     * Updates the indicators of a snapshot's ticker. Snapshots without a
+     * last trade price are ignored; the day's high, low and volume are used
+     * when the snapshot has them.
+     *
+     * @param snapshot The quote snapshot.
+     */
+    public void onQuote(QuoteSnapshot snapshot) {
+	double volume = snapshot.getDouble(QuoteField.VOLUME);
+	update(snapshot.symbol(),
+	       snapshot.getDouble(QuoteField.LAST_TRADE_PRICE),
+	       snapshot.getDouble(QuoteField.DAYS_HIGH),
+	       snapshot.getDouble(QuoteField.DAYS_LOW),
+	       Double.isNaN(volume) ? -1 : (long) volume);
+    }
+
+    /**
+     * Updates the indicators of a ticker with a new quote.
+     *
+     * @param symbol  The stock ticker for the public corporation.
+     * @param price   The last trade price.
+     * @param dayHigh The day's high, or NaN if unknown.
+     * @param dayLow  The day's low, or NaN if unknown.
+     * @param volume  The shares traded so far today, or -1 if unknown.
+     * @return        true if the quote was counted as a new tick, false if
+     *                it had no price or repeated the previous quote.
+     */
+    public boolean update(String symbol, double price, double dayHigh,
+			  double dayLow, long volume) {
+	if (Double.isNaN(price))
+	    return false;
+
+	Series s = series.get(symbol);
+	if (s == null) {
+	    Series created = new Series(window);
+	    s = series.putIfAbsent(symbol, created);
+	    if (s == null)
+		s = created;
+	}
+	synchronized (s) {
+	    return s.add(price, dayHigh, dayLow, volume, alpha);
+	}
+    }
+
+    /**
+     * Retrieves the number of ticks the indicators of a ticker cover,
+     * which is less than the window until that many have been seen.
+     *
+     * @param symbol The stock ticker for the public corporation.
+     * @return       The number of ticks, or 0 if the ticker is not tracked.
+     */
+    public int ticks(String symbol) {
+	Series s = series.get(symbol);
+	if (s == null)
+	    return 0;
+	synchronized (s) {
+	    return s.length();
+	}
+    }
+
+    /**
+     * Retrieves the simple moving average of the last trade price.
+     *
+     * @param symbol The stock ticker for the public corporation.
+     * @return       The average, or NaN if the ticker is not tracked.
+     */
+    public double sma(String symbol) {
+	Series s = series.get(symbol);
+	if (s == null)
+	    return Double.NaN;
+	synchronized (s) {
+	    return s.priceSum / s.length();
+	}
+    }
+
+    /**
+     * Retrieves the exponential moving average of the last trade price,
+     * seeded with the first price seen.
+     *
+     * @param symbol The stock ticker for the public corporation.
+     * @return       The average, or NaN if the ticker is not tracked.
+     */
+    public double ema(String symbol) {
+	Series s = series.get(symbol);
+	if (s == null)
+	    return Double.NaN;
+	synchronized (s) {
+	    return s.ema;
+	}
+    }
+
+    /**
+     * Retrieves the volume-weighted average price.
+     *
+     * @param symbol The stock ticker for the public corporation.
+     * @return       The average, or NaN if the ticker is not tracked or no
+     *               shares were traded within the window.
+     */
+    public double vwap(String symbol) {
+	Series s = series.get(symbol);
+	if (s == null)
+	    return Double.NaN;
+	synchronized (s) {
+	    return s.volumeSum > 0 ? s.tradedSum / s.volumeSum : Double.NaN;
+	}
+    }
+
+    /**
+     * Retrieves the highest price traded within the window.
+     *
+     * @param symbol The stock ticker for the public corporation.
+     * @return       The high, or NaN if the ticker is not tracked.
+     */
+    public double high(String symbol) {
+	Series s = series.get(symbol);
+	if (s == null)
+	    return Double.NaN;
+	synchronized (s) {
+	    return s.highs.first();
+	}
+    }
+
+    /**
+     * Retrieves the lowest price traded within the window.
+     *
+     * @param symbol The stock ticker for the public corporation.
+     * @return       The low, or NaN if the ticker is not tracked.
+     */
+    public double low(String symbol) {
+	Series s = series.get(symbol);
+	if (s == null)
+	    return Double.NaN;
+	synchronized (s) {
+	    return s.lows.first();
+	}
+    }
+
+    /* The ring buffers and running totals of one ticker. Tick n is held in
+       slot n % window of each buffer. */
+    private static final class Series {
+	final int window;
+	final double[] prices;
+	final double[] traded;
+	final double[] volumes;
+	final Extremes highs;
+	final Extremes lows;
+	long count;
+	double priceSum;
+	double tradedSum;
+	double volumeSum;
+	double ema;
+	double lastPrice;
+	double lastDayHigh = Double.NaN;
+	double lastDayLow = Double.NaN;
+	long lastVolume = -1;
+
+	Series(int window) {
+	    this.window = window;
+	    prices = new double[window];
+	    traded = new double[window];
+	    volumes = new double[window];
+	    highs = new Extremes(window, true);
+	    lows = new Extremes(window, false);
+	}
+
+	int length() {
+	    return (int) Math.min(count, window);
+	}
+
+	boolean add(double price, double dayHigh, double dayLow, long volume,
+		    double alpha) {
+	    if (count > 0 && price == lastPrice && volume == lastVolume &&
+		Double.compare(dayHigh, lastDayHigh) == 0 &&
+		Double.compare(dayLow, lastDayLow) == 0)
+		return false;
+
+	    /* The day's volume is cumulative and starts again from zero
+	       the next trading day */
+	    double shares = 0;
+	    if (volume >= 0 && lastVolume >= 0)
+		shares = volume >= lastVolume ? volume - lastVolume : volume;
+
+	    /* A day's high or low that moved since the previous tick was
+	       traded in between */
+	    double high = price;
+	    double low = price;
+	    if (dayHigh > lastDayHigh)
+		high = Math.max(high, dayHigh);
+	    if (dayLow < lastDayLow)
+		low = Math.min(low, dayLow);
+
+	    int slot = (int) (count % window);
+	    if (count >= window) {
+		priceSum -= prices[slot];
+		tradedSum -= traded[slot];
+		volumeSum -= volumes[slot];
+	    }
+	    prices[slot] = price;
+	    traded[slot] = price * shares;
+	    volumes[slot] = shares;
+	    priceSum += price;
+	    tradedSum += price * shares;
+	    volumeSum += shares;
+	    highs.add(count, high);
+	    lows.add(count, low);
+
+	    ema = count == 0 ? price : ema + alpha * (price - ema);
+	    count++;
+	    lastPrice = price;
+	    lastVolume = volume;
+	    lastDayHigh = Double.isNaN(dayHigh) ? lastDayHigh : dayHigh;
+	    lastDayLow = Double.isNaN(dayLow) ? lastDayLow : dayLow;
+
+	    /* Recompute the running sums once per pass over the buffers so
+	       rounding errors from the subtractions do not build up */
+	    if (slot == window - 1)
+		resum();
+	    return true;
+	}
+
+	private void resum() {
+	    priceSum = 0;
+	    tradedSum = 0;
+	    volumeSum = 0;
+	    for (int i = 0; i < window; i++) {
+		priceSum += prices[i];
+		tradedSum += traded[i];
+		volumeSum += volumes[i];
+	    }
+	}
+    }
+
+    /* The highest or lowest value of the last window ticks, kept as a
+       monotonic queue: only ticks that may still become the extreme are
+       held, with the current extreme first. Each tick is added and removed
+       at most once, so an update takes amortized constant time. */
+    private static final class Extremes {
+	final int window;
+	final boolean highest;
+	final long[] ticks;
+	final double[] values;
+	int head;
+	int length;
+
+	Extremes(int window, boolean highest) {
+	    this.window = window;
+	    this.highest = highest;
+	    ticks = new long[window];
+	    values = new double[window];
+	}
+
+	void add(long tick, double value) {
+	    if (length > 0 && ticks[head] <= tick - window) {
+		head = (head + 1) % window;
+		length--;
+	    }
+	    while (length > 0 && !beats(values[last()], value))
+		length--;
+	    int tail = (head + length) % window;
+	    ticks[tail] = tick;
+	    values[tail] = value;
+	    length++;
+	}
+
+	double first() {
+	    return length == 0 ? Double.NaN : values[head];
+	}
+
+	private int last() {
+	    return (head + length - 1) % window;
+	}
+
+	private boolean beats(double held, double value) {
+	    return highest ? held > value : held < value;
+	}
+    }
+}
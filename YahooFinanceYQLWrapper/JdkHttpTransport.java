@@ -0,0 +1,87 @@
+package YahooFinanceYQLWrapper;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The default transport, built on {@link java.net.http.HttpClient}. A single
+ * client is shared by every request so connections are pooled and kept
+ * alive between calls, HTTP/2 is negotiated where the server supports it,
+ * and responses are requested gzip-compressed.
+ *
+ * @author Amandeep Sarow
+ */
+public final class JdkHttpTransport implements HttpTransport {
+    private final HttpClient client;
+    private final Duration requestTimeout;
+
+    /**
+     * Creates a transport with a 10 second connect timeout and a 30 second
+     * request timeout.
+     */
+    public JdkHttpTransport() {
+	this(Duration.ofSeconds(10), Duration.ofSeconds(30));
+    }
+
+    /**
+     * Creates a transport with the given timeouts.
+     *
+     * @param connectTimeout How long to wait for a connection.
+     * @param requestTimeout How long to wait for the response headers.
+     */
+    public JdkHttpTransport(Duration connectTimeout, Duration requestTimeout) {
+	this.client = HttpClient.newBuilder()
+	    .version(HttpClient.Version.HTTP_2)
+	    .followRedirects(HttpClient.Redirect.NORMAL)
+	    .connectTimeout(connectTimeout)
+	    .build();
+	this.requestTimeout = requestTimeout;
+    }
+
+    public InputStream open(String url) throws IOException {
+	HttpRequest request;
+	try {
+	    request = HttpRequest.newBuilder(URI.create(url))
+		.timeout(requestTimeout)
+		.header("Accept-Encoding", "gzip")
+		.GET()
+		.build();
+	} catch (IllegalArgumentException e) {
+	    throw (MalformedURLException)
+		new MalformedURLException(url).initCause(e);
+	}
+
+	HttpResponse<InputStream> response;
+	try {
+	    response = client.send(request,
+				   HttpResponse.BodyHandlers.ofInputStream());
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new InterruptedIOException("Interrupted fetching " + url);
+	}
+
+	InputStream body = response.body();
+	int status = response.statusCode();
+	if (status >= 400) {
+	    body.close();
+	    if (status == 404)
+		throw new FileNotFoundException(url);
+	    throw new HttpStatusException(status, url);
+	}
+
+	if ("gzip".equalsIgnoreCase(response.headers()
+				    .firstValue("Content-Encoding")
+				    .orElse("")))
+	    return new GZIPInputStream(body);
+	return body;
+    }
+}
@@ -0,0 +1,126 @@
+package YahooFinanceYQLWrapper;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, lock-free histogram of durations in nanoseconds. Each power
+ * of two is split into eight linear buckets, so a recorded value is
+ * reported to within 12.5% and recording is a handful of atomic adds with
+ * no allocation.
+ *
+ * @author Amandeep Sarow
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos The duration in nanoseconds; negative values count as 0.
+     */
+    void record(long nanos) {
+	if (nanos < 0)
+	    nanos = 0;
+	counts.incrementAndGet(bucketFor(nanos));
+	count.incrementAndGet();
+	total.addAndGet(nanos);
+
+	long current = max.get();
+	while (nanos > current && !max.compareAndSet(current, nanos))
+	    current = max.get();
+    }
+
+    /** Clears every recorded duration. */
+    void reset() {
+	for (int i = 0; i < BUCKETS; i++)
+	    counts.set(i, 0);
+	count.set(0);
+	total.set(0);
+	max.set(0);
+    }
+
+    /**
+     * Copies the histogram's current state. Durations recorded while the
+     * copy is taken may or may not be included.
+     *
+     * @return The summary of recorded durations.
+     */
+    LatencySnapshot snapshot() {
+	long[] copy = new long[BUCKETS];
+	long n = 0;
+	for (int i = 0; i < BUCKETS; i++) {
+	    copy[i] = counts.get(i);
+	    n += copy[i];
+	}
+
+	long maxNanos = max.get();
+	return new LatencySnapshot(n,
+				   n == 0 ? 0 : total.get() / n,
+				   percentile(copy, n, 0.50, maxNanos),
+				   percentile(copy, n, 0.99, maxNanos),
+				   percentile(copy, n, 0.999, maxNanos),
+				   maxNanos);
+    }
+
+    /**
+     * Estimates one quantile of the recorded durations without copying
+     * the histogram.
+     *
+     * @param quantile The quantile, e.g. 0.95.
+     * @return         The upper bound of the bucket holding the quantile,
+     *                 or 0 if nothing has been recorded.
+     */
+    long percentile(double quantile) {
+	long n = count.get();
+	if (n == 0)
+	    return 0;
+	long rank = (long) Math.ceil(quantile * n);
+	long seen = 0;
+	for (int i = 0; i < BUCKETS; i++) {
+	    seen += counts.get(i);
+	    if (seen >= rank)
+		return Math.min(upperBound(i), max.get());
+	}
+	return max.get();
+    }
+
+    /* Returns the upper bound of the bucket holding the given quantile */
+    private static long percentile(long[] counts, long n, double quantile,
+				   long maxNanos) {
+	if (n == 0)
+	    return 0;
+	long rank = (long) Math.ceil(quantile * n);
+	long seen = 0;
+	for (int i = 0; i < counts.length; i++) {
+	    seen += counts[i];
+	    if (seen >= rank)
+		return Math.min(upperBound(i), maxNanos);
+	}
+	return maxNanos;
+    }
+
+    private static int bucketFor(long value) {
+	if (value < SUB_BUCKETS)
+	    return (int) value;
+	int exponent = 63 - Long.numberOfLeadingZeros(value);
+	int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS))
+	    & (SUB_BUCKETS - 1);
+	return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int bucket) {
+	if (bucket < SUB_BUCKETS)
+	    return bucket;
+	int shift = bucket / SUB_BUCKETS - 1;
+	long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+	return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,67 @@
+package YahooFinanceYQLWrapper;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * A point-in-time summary of the durations recorded for one phase of a
+ * request. Percentiles are accurate to within 12.5%.
+ *
+ * @author Amandeep Sarow
+ */
+public final class LatencySnapshot {
+    private final long count;
+    private final long meanNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maxNanos;
+
+    @ConstructorProperties({"count", "meanNanos", "p50Nanos", "p99Nanos",
+			    "p999Nanos", "maxNanos"})
+    public LatencySnapshot(long count, long meanNanos, long p50Nanos,
+			   long p99Nanos, long p999Nanos, long maxNanos) {
+	this.count = count;
+	this.meanNanos = meanNanos;
+	this.p50Nanos = p50Nanos;
+	this.p99Nanos = p99Nanos;
+	this.p999Nanos = p999Nanos;
+	this.maxNanos = maxNanos;
+    }
+
+    /** @return The number of durations recorded. */
+    public long getCount() {
+	return count;
+    }
+
+    /** @return The mean duration in nanoseconds. */
+    public long getMeanNanos() {
+	return meanNanos;
+    }
+
+    /** @return The median duration in nanoseconds. */
+    public long getP50Nanos() {
+	return p50Nanos;
+    }
+
+    /** @return The 99th percentile duration in nanoseconds. */
+    public long getP99Nanos() {
+	return p99Nanos;
+    }
+
+    /** @return The 99.9th percentile duration in nanoseconds. */
+    public long getP999Nanos() {
+	return p999Nanos;
+    }
+
+    /** @return The longest duration recorded, in nanoseconds. */
+    public long getMaxNanos() {
+	return maxNanos;
+    }
+
+    public String toString() {
+	return String.format("n=%d mean=%.3fms p50=%.3fms p99=%.3fms "
+			     + "p999=%.3fms max=%.3fms", count,
+			     meanNanos / 1e6, p50Nanos / 1e6, p99Nanos / 1e6,
+			     p999Nanos / 1e6, maxNanos / 1e6);
+    }
+}
@@ -0,0 +1,64 @@
+package YahooFinanceYQLWrapper;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A response body that times the reads made on it. When it is closed, the
+ * time spent blocked in reads is recorded as the transfer phase and the
+ * rest of the time since it was opened as the parse phase.
+ *
+ * @author Amandeep Sarow
+ */
+final class MeteredInputStream extends FilterInputStream {
+    private final long openedAt = System.nanoTime();
+    private long readNanos;
+    private long bytes;
+    private boolean closed;
+
+    MeteredInputStream(InputStream in) {
+	super(in);
+    }
+
+    public int read() throws IOException {
+	long start = System.nanoTime();
+	int b;
+	try {
+	    b = in.read();
+	} catch (IOException e) {
+	    Metrics.error(Metrics.readFailureCause(e));
+	    throw e;
+	}
+	readNanos += System.nanoTime() - start;
+	if (b >= 0)
+	    bytes++;
+	return b;
+    }
+
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+	long start = System.nanoTime();
+	int n;
+	try {
+	    n = in.read(buffer, offset, length);
+	} catch (IOException e) {
+	    Metrics.error(Metrics.readFailureCause(e));
+	    throw e;
+	}
+	readNanos += System.nanoTime() - start;
+	if (n > 0)
+	    bytes += n;
+	return n;
+    }
+
+    public void close() throws IOException {
+	if (!closed) {
+	    closed = true;
+	    long elapsed = System.nanoTime() - openedAt;
+	    Metrics.record(Metrics.Phase.TRANSFER, readNanos);
+	    Metrics.record(Metrics.Phase.PARSE, elapsed - readNanos);
+	    Metrics.bytesRead(bytes);
+	}
+	super.close();
+    }
+}
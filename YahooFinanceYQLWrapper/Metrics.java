@@ -0,0 +1,283 @@
+package YahooFinanceYQLWrapper;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.MalformedURLException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.net.http.HttpTimeoutException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics for every request the wrapper makes: latency histograms for the
+ * connect, transfer and parse phases, the bytes read, the failures by
+ * cause, the retries and hedged requests sent, the failed
+ * {@link QuotePoller} refreshes and the quote cache's hit rate. They are
+ * read through {@link #snapshot()} or over JMX.
+ *
+ * <p>Metrics are off until {@link #enable()} is called. While they are off
+ * a request pays for one volatile read and nothing else.
+ *
+ * @author Amandeep Sarow
+ */
+public final class Metrics {
+    /** The phases of a request that are timed. */
+    public enum Phase {
+	/** Opening the connection and awaiting the response headers. */
+	CONNECT,
+	/** Blocked reading the response body. */
+	TRANSFER,
+	/** Working on the response body between reads. */
+	PARSE
+    }
+
+    /** The causes a request is counted as failed under. STORAGE counts
+	results that were fetched but could not be written to a
+	{@link StatementStore} or {@link TickJournal}. */
+    public enum ErrorCause {
+	MALFORMED_URL,
+	NOT_FOUND,
+	HTTP_STATUS,
+	TIMEOUT,
+	CONNECTION,
+	READ,
+	STORAGE,
+	OTHER
+    }
+
+    /** The name the metrics are registered under over JMX. */
+    public static final String OBJECT_NAME =
+	"YahooFinanceYQLWrapper:type=Metrics";
+
+    private static volatile boolean enabled = false;
+
+    private static final LatencyHistogram[] latencies =
+	new LatencyHistogram[Phase.values().length];
+    private static final LongAdder[] errors =
+	new LongAdder[ErrorCause.values().length];
+    private static final LongAdder requests = new LongAdder();
+    private static final LongAdder bytesRead = new LongAdder();
+    private static final LongAdder retries = new LongAdder();
+    private static final LongAdder hedges = new LongAdder();
+    private static final LongAdder pollFailures = new LongAdder();
+
+    static {
+	for (int i = 0; i < latencies.length; i++)
+	    latencies[i] = new LatencyHistogram();
+	for (int i = 0; i < errors.length; i++)
+	    errors[i] = new LongAdder();
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Starts recording metrics and registers them with the platform MBean
+     * server if they are not registered already.
+     */
+    public static void enable() {
+	enabled = true;
+	registerMBean();
+    }
+
+    /** Stops recording metrics. What was recorded is kept. */
+    public static void disable() {
+	enabled = false;
+    }
+
+    /** @return Whether metrics are being recorded. */
+    public static boolean isEnabled() {
+	return enabled;
+    }
+
+    /** Clears every recorded metric. */
+    public static void reset() {
+	for (LatencyHistogram histogram : latencies)
+	    histogram.reset();
+	for (LongAdder count : errors)
+	    count.reset();
+	requests.reset();
+	bytesRead.reset();
+	retries.reset();
+	hedges.reset();
+	pollFailures.reset();
+    }
+
+    /**
+     * Copies the metrics recorded so far.
+     *
+     * @return The current metrics.
+     */
+    public static MetricsSnapshot snapshot() {
+	EnumMap<Phase, LatencySnapshot> latencyCopy =
+	    new EnumMap<Phase, LatencySnapshot>(Phase.class);
+	for (Phase phase : Phase.values())
+	    latencyCopy.put(phase, latencies[phase.ordinal()].snapshot());
+
+	EnumMap<ErrorCause, Long> errorCopy =
+	    new EnumMap<ErrorCause, Long>(ErrorCause.class);
+	for (ErrorCause cause : ErrorCause.values())
+	    errorCopy.put(cause, errors[cause.ordinal()].sum());
+
+	QuoteCache cache = YQLWrapper.quoteCache();
+	return new MetricsSnapshot(latencyCopy, errorCopy, requests.sum(),
+				   bytesRead.sum(), retries.sum(),
+				   hedges.sum(), pollFailures.sum(),
+				   cache.hitCount(), cache.missCount());
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server under
+     * {@link #OBJECT_NAME}. Does nothing if they are already registered.
+     */
+    public static void registerMBean() {
+	MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+	try {
+	    ObjectName name = new ObjectName(OBJECT_NAME);
+	    if (!server.isRegistered(name))
+		server.registerMBean(new MBean(), name);
+	} catch (InstanceAlreadyExistsException ignored) {
+	} catch (JMException e) {
+	    throw new IllegalStateException("Failed to register metrics", e);
+	}
+    }
+
+    /* Opens a URL through the transport. While metrics are enabled the
+       connection is timed, failures are counted and the body is metered
+       until it is closed. */
+    static InputStream open(HttpTransport transport, String url)
+	throws IOException {
+	if (!enabled)
+	    return transport.open(url);
+
+	requests.increment();
+	long start = System.nanoTime();
+	InputStream body;
+	try {
+	    body = transport.open(url);
+	} catch (IOException e) {
+	    error(openFailureCause(e));
+	    throw e;
+	}
+	record(Phase.CONNECT, System.nanoTime() - start);
+	return new MeteredInputStream(body);
+    }
+
+    static void record(Phase phase, long nanos) {
+	latencies[phase.ordinal()].record(nanos);
+    }
+
+    static void bytesRead(long bytes) {
+	bytesRead.add(bytes);
+    }
+
+    static void error(ErrorCause cause) {
+	if (enabled)
+	    errors[cause.ordinal()].increment();
+    }
+
+    static void retry() {
+	if (enabled)
+	    retries.increment();
+    }
+
+    static void hedge() {
+	if (enabled)
+	    hedges.increment();
+    }
+
+    static void pollFailure() {
+	if (enabled)
+	    pollFailures.increment();
+    }
+
+    static ErrorCause openFailureCause(IOException e) {
+	if (e instanceof MalformedURLException)
+	    return ErrorCause.MALFORMED_URL;
+	if (e instanceof FileNotFoundException)
+	    return ErrorCause.NOT_FOUND;
+	if (e instanceof HttpStatusException)
+	    return ErrorCause.HTTP_STATUS;
+	if (e instanceof HttpTimeoutException
+	    || e instanceof InterruptedIOException)
+	    return ErrorCause.TIMEOUT;
+	if (e instanceof SocketException
+	    || e instanceof UnknownHostException)
+	    return ErrorCause.CONNECTION;
+	return ErrorCause.OTHER;
+    }
+
+    static ErrorCause readFailureCause(IOException e) {
+	if (e instanceof InterruptedIOException)
+	    return ErrorCause.TIMEOUT;
+	return ErrorCause.READ;
+    }
+
+    /* The JMX view of the metrics, read live on every attribute access */
+    private static final class MBean implements MetricsMXBean {
+	public boolean isEnabled() {
+	    return enabled;
+	}
+
+	public void setEnabled(boolean enable) {
+	    enabled = enable;
+	}
+
+	public LatencySnapshot getConnectLatency() {
+	    return latencies[Phase.CONNECT.ordinal()].snapshot();
+	}
+
+	public LatencySnapshot getTransferLatency() {
+	    return latencies[Phase.TRANSFER.ordinal()].snapshot();
+	}
+
+	public LatencySnapshot getParseLatency() {
+	    return latencies[Phase.PARSE.ordinal()].snapshot();
+	}
+
+	public long getRequestCount() {
+	    return requests.sum();
+	}
+
+	public long getBytesRead() {
+	    return bytesRead.sum();
+	}
+
+	public long getRetryCount() {
+	    return retries.sum();
+	}
+
+	public long getHedgeCount() {
+	    return hedges.sum();
+	}
+
+	public long getPollFailureCount() {
+	    return pollFailures.sum();
+	}
+
+	public Map<String, Long> getErrorCounts() {
+	    Map<String, Long> counts = new LinkedHashMap<String, Long>();
+	    for (ErrorCause cause : ErrorCause.values())
+		counts.put(cause.name(), errors[cause.ordinal()].sum());
+	    return counts;
+	}
+
+	public double getQuoteCacheHitRate() {
+	    return YQLWrapper.quoteCache().hitRate();
+	}
+
+	public void reset() {
+	    Metrics.reset();
+	}
+    }
+}
@@ -0,0 +1,51 @@
+package YahooFinanceYQLWrapper;
+
+import java.util.Map;
+
+/**
+ * The management interface through which the wrapper's metrics are
+ * published over JMX, under the name
+ * {@code YahooFinanceYQLWrapper:type=Metrics}.
+ *
+ * @author Amandeep Sarow
+ */
+public interface MetricsMXBean {
+    /** @return Whether metrics are being recorded. */
+    boolean isEnabled();
+
+    /** @param enabled Whether metrics should be recorded. */
+    void setEnabled(boolean enabled);
+
+    /** @return How long opening connections and awaiting headers took. */
+    LatencySnapshot getConnectLatency();
+
+    /** @return How long requests spent blocked reading response bodies. */
+    LatencySnapshot getTransferLatency();
+
+    /** @return How long requests spent parsing response bodies. */
+    LatencySnapshot getParseLatency();
+
+    /** @return The number of requests made. */
+    long getRequestCount();
+
+    /** @return The number of response body bytes read. */
+    long getBytesRead();
+
+    /** @return The number of failed requests that were retried. */
+    long getRetryCount();
+
+    /** @return The number of hedged duplicate requests sent. */
+    long getHedgeCount();
+
+    /** @return The number of quote poller refreshes that failed. */
+    long getPollFailureCount();
+
+    /** @return The number of failed requests, by cause. */
+    Map<String, Long> getErrorCounts();
+
+    /** @return The fraction of quote lookups answered from the cache. */
+    double getQuoteCacheHitRate();
+
+    /** Clears every recorded metric. */
+    void reset();
+}
@@ -0,0 +1,120 @@
+package YahooFinanceYQLWrapper;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A point-in-time copy of the wrapper's metrics.
+ *
+ * @author Amandeep Sarow
+ */
+public final class MetricsSnapshot {
+    private final EnumMap<Metrics.Phase, LatencySnapshot> latencies;
+    private final EnumMap<Metrics.ErrorCause, Long> errors;
+    private final long requests;
+    private final long bytesRead;
+    private final long retries;
+    private final long hedges;
+    private final long pollFailures;
+    private final long cacheHits;
+    private final long cacheMisses;
+
+    MetricsSnapshot(EnumMap<Metrics.Phase, LatencySnapshot> latencies,
+		    EnumMap<Metrics.ErrorCause, Long> errors, long requests,
+		    long bytesRead, long retries, long hedges,
+		    long pollFailures, long cacheHits, long cacheMisses) {
+	this.latencies = latencies;
+	this.errors = errors;
+	this.requests = requests;
+	this.bytesRead = bytesRead;
+	this.retries = retries;
+	this.hedges = hedges;
+	this.pollFailures = pollFailures;
+	this.cacheHits = cacheHits;
+	this.cacheMisses = cacheMisses;
+    }
+
+    /**
+     * Retrieves the durations recorded for one phase of a request.
+     *
+     * @param phase The phase.
+     * @return      The summary of its durations.
+     */
+    public LatencySnapshot latency(Metrics.Phase phase) {
+	return latencies.get(phase);
+    }
+
+    /** @return The number of requests made. */
+    public long requestCount() {
+	return requests;
+    }
+
+    /** @return The number of response body bytes read. */
+    public long bytesRead() {
+	return bytesRead;
+    }
+
+    /** @return The number of failed requests that were retried. */
+    public long retryCount() {
+	return retries;
+    }
+
+    /** @return The number of hedged duplicate requests sent. */
+    public long hedgeCount() {
+	return hedges;
+    }
+
+    /** @return The number of quote poller refreshes that failed. */
+    public long pollFailureCount() {
+	return pollFailures;
+    }
+
+    /**
+     * Retrieves the number of requests that failed for one cause.
+     *
+     * @param cause The cause of failure.
+     * @return      The number of failures.
+     */
+    public long errorCount(Metrics.ErrorCause cause) {
+	return errors.get(cause);
+    }
+
+    /** @return The number of failed requests, by cause. */
+    public Map<Metrics.ErrorCause, Long> errorCounts() {
+	return Collections.unmodifiableMap(errors);
+    }
+
+    /** @return The number of quote lookups answered from the cache. */
+    public long quoteCacheHits() {
+	return cacheHits;
+    }
+
+    /** @return The number of quote lookups the cache could not answer. */
+    public long quoteCacheMisses() {
+	return cacheMisses;
+    }
+
+    /** @return The fraction of quote lookups answered from the cache. */
+    public double quoteCacheHitRate() {
+	long lookups = cacheHits + cacheMisses;
+	return lookups == 0 ? 0.0 : (double) cacheHits / lookups;
+    }
+
+    public String toString() {
+	StringBuilder text = new StringBuilder();
+	for (Map.Entry<Metrics.Phase, LatencySnapshot> entry
+		 : latencies.entrySet())
+	    text.append(entry.getKey()).append(": ")
+		.append(entry.getValue()).append('\n');
+	text.append("requests: ").append(requests)
+	    .append(", bytes read: ").append(bytesRead)
+	    .append(", errors: ").append(errors)
+	    .append(", retries: ").append(retries)
+	    .append(", hedges: ").append(hedges)
+	    .append(", poll failures: ").append(pollFailures)
+	    .append(String.format(", quote cache hit rate: %.3f",
+				  quoteCacheHitRate()));
+	return text.toString();
+    }
+}
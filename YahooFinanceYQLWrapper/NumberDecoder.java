@@ -0,0 +1,115 @@
+package YahooFinanceYQLWrapper;
+
+/**
+ * Decodes the numbers the YQL returns straight from the bytes of a
+ * response, without building a String first. Besides plain decimals it
+ * accepts a leading sign, thousands separators, a trailing percent sign
+ * and the K, M, B and T suffixes used for large amounts, so "+1.23",
+ * "-0.52%", "1,234.5" and "2.1B" decode to 1.23, -0.52, 1234.5 and
+ * 2100000000. Anything else, such as "N/A", decodes to NaN.
+ *
+ * <p>Values with up to 15 significant digits decode to exactly the double
+ * {@link Double#parseDouble(String)} would return.
+ *
+ * @author Amandeep Sarow
+ */
+final class NumberDecoder {
+    private static final double[] POWERS_OF_TEN = {
+	1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+	1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int MAX_DIGITS = 18;
+
+    private NumberDecoder() {
+    }
+
+    /**
+     * Decodes a number from a range of ASCII bytes. Surrounding whitespace
+     * is ignored.
+     *
+     * @param bytes The bytes holding the number.
+     * @param start The index of the first byte.
+     * @param end   The index after the last byte.
+     * @return      The number, or NaN if the bytes do not hold one.
+     */
+    static double decode(byte[] bytes, int start, int end) {
+	while (start < end && isWhitespace(bytes[start]))
+	    start++;
+	while (end > start && isWhitespace(bytes[end - 1]))
+	    end--;
+	if (start == end)
+	    return Double.NaN;
+
+	int i = start;
+	boolean negative = false;
+	if (bytes[i] == '-' || bytes[i] == '+') {
+	    negative = bytes[i] == '-';
+	    i++;
+	}
+
+	long mantissa = 0;
+	int digits = 0;
+	int exponent = 0;
+	boolean sawDigit = false;
+	boolean sawPoint = false;
+	for (; i < end; i++) {
+	    int c = bytes[i];
+	    if (c >= '0' && c <= '9') {
+		sawDigit = true;
+		if (digits < MAX_DIGITS) {
+		    mantissa = mantissa * 10 + (c - '0');
+		    if (mantissa != 0)
+			digits++;
+		    if (sawPoint)
+			exponent--;
+		} else if (!sawPoint) {
+		    /* Digits past the precision of a long only scale */
+		    exponent++;
+		}
+	    } else if (c == '.' && !sawPoint) {
+		sawPoint = true;
+	    } else if (c == ',' && !sawPoint && sawDigit) {
+		continue;
+	    } else {
+		break;
+	    }
+	}
+	if (!sawDigit)
+	    return Double.NaN;
+
+	if (i < end) {
+	    switch (bytes[i]) {
+	    case 'K': exponent += 3; break;
+	    case 'M': exponent += 6; break;
+	    case 'B': exponent += 9; break;
+	    case 'T': exponent += 12; break;
+	    case '%': break;
+	    default: return Double.NaN;
+	    }
+	    i++;
+	}
+	if (i != end)
+	    return Double.NaN;
+
+	double value = scale(mantissa, exponent);
+	return negative ? -value : value;
+    }
+
+    /* Multiplies by a power of ten. A mantissa and power of ten that are
+       both exact doubles give a correctly rounded result. */
+    private static double scale(long mantissa, int exponent) {
+	double value = mantissa;
+	if (exponent >= 0) {
+	    return exponent < POWERS_OF_TEN.length ?
+		value * POWERS_OF_TEN[exponent] :
+		value * Math.pow(10, exponent);
+	}
+	return -exponent < POWERS_OF_TEN.length ?
+	    value / POWERS_OF_TEN[-exponent] :
+	    value / Math.pow(10, -exponent);
+    }
+
+    private static boolean isWhitespace(int c) {
+	return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+}
@@ -0,0 +1,37 @@
+package YahooFinanceYQLWrapper;
+
+/**
+ * The reporting periods a financial statement can be retrieved for.
+ *
+ * @author Amandeep Sarow
+ */
+public enum PeriodType {
+    QUARTERLY ("quarterly"),
+    ANNUAL    ("annual");
+
+    private final String parameter;
+
+    private PeriodType(String parameter) {
+	this.parameter = parameter;
+    }
+
+    /** @return The URL parameter for this period, e.g. "annual". */
+    public String parameter() {
+	return parameter;
+    }
+
+    /**
+     * Finds the period type for a URL parameter.
+     *
+     * @param parameter The parameter, "quarterly" or "annual".
+     * @return          The matching period type.
+     * @throws IllegalArgumentException If the parameter is not recognised.
+     */
+    public static PeriodType forParameter(String parameter) {
+	for (PeriodType type : values()) {
+	    if (type.parameter.equals(parameter))
+		return type;
+	}
+	throw new IllegalArgumentException("Unknown period type: " + parameter);
+    }
+}
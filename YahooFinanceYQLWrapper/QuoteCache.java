@@ -0,0 +1,206 @@
+package YahooFinanceYQLWrapper;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, in-process cache of quote snapshots keyed by stock ticker.
+ * Intraday fields such as prices and fundamentals such as the book value
+ * have their own time-to-live, so a snapshot may be fresh enough to answer
+ * for one field but not another. A snapshot fetched with only some fields
+ * is merged into the cached one, and each field keeps the time it was
+ * last fetched. The least recently used tickers are evicted once the cache
+ * is full.
+ *
+ * <p>Tickers are compared ignoring case and surrounding whitespace, so a
+ * snapshot stored under the symbol the YQL returned, such as "AAPL", is
+ * found by a lookup for " aapl".
+ *
+ * <p>Tickers are spread across independently locked segments so readers
+ * of different tickers do not contend with each other.
+ *
+ * @author Amandeep Sarow
+ */
+public final class QuoteCache {
+    private static final int SEGMENTS = 16;
+    private static final QuoteField[] FIELDS = QuoteField.values();
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final int maxEntries;
+    private final long intradayTtlNanos;
+    private final long fundamentalTtlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a quote cache.
+     *
+     * @param maxEntries     The maximum number of tickers held, or 0 to
+     *                       disable caching.
+     * @param intradayTtl    How long intraday fields such as prices stay
+     *                       fresh.
+     * @param fundamentalTtl How long fundamental fields stay fresh.
+     * @param unit           The unit of both time-to-live values.
+     */
+    public QuoteCache(int maxEntries, long intradayTtl, long fundamentalTtl,
+		      TimeUnit unit) {
+	if (maxEntries < 0 || intradayTtl < 0 || fundamentalTtl < 0)
+	    throw new IllegalArgumentException("Negative cache bound");
+
+	this.maxEntries = maxEntries;
+	int segmentCapacity = (maxEntries + SEGMENTS - 1) / SEGMENTS;
+	for (int i = 0; i < SEGMENTS; i++)
+	    segments[i] = new Segment(segmentCapacity);
+	intradayTtlNanos = unit.toNanos(intradayTtl);
+	fundamentalTtlNanos = unit.toNanos(fundamentalTtl);
+    }
+
+    /**
+     * Retrieves a cached snapshot that holds the given field and is still
+     * fresh for it.
+     *
+     * @param ticker The stock ticker for the public corporation.
+     * @param field  The field the caller is about to read.
+     * @return       The cached snapshot, or null on a miss.
+     */
+    public QuoteSnapshot get(String ticker, QuoteField field) {
+	long ttl = field.isIntraday() ? intradayTtlNanos : fundamentalTtlNanos;
+	String key = key(ticker);
+	Entry entry = segmentFor(key).get(key);
+
+	if (entry == null || !entry.snapshot.has(field) ||
+	    System.nanoTime() - entry.fetchedAt[field.ordinal()] > ttl) {
+	    misses.increment();
+	    return null;
+	}
+	hits.increment();
+	return entry.snapshot;
+    }
+
+    /**
+     * Stores a freshly fetched snapshot under the given ticker. Fields the
+     * snapshot was not requested with are kept from the cached snapshot.
+     *
+     * @param ticker   The stock ticker the snapshot was requested for.
+     * @param snapshot The snapshot to cache.
+     */
+    public void put(String ticker, QuoteSnapshot snapshot) {
+	if (maxEntries == 0)
+	    return;
+	String key = key(ticker);
+	segmentFor(key).merge(key, snapshot, System.nanoTime());
+    }
+
+    /** Removes every cached snapshot. Counters are left untouched. */
+    public void clear() {
+	for (Segment segment : segments)
+	    segment.clear();
+    }
+
+    /** @return The number of tickers currently cached. */
+    public int size() {
+	int size = 0;
+	for (Segment segment : segments)
+	    size += segment.size();
+	return size;
+    }
+
+    /** @return The number of lookups answered from the cache. */
+    public long hitCount() {
+	return hits.sum();
+    }
+
+    /** @return The number of lookups that were absent or expired. */
+    public long missCount() {
+	return misses.sum();
+    }
+
+    /** @return The number of tickers evicted to stay within the bound. */
+    public long evictionCount() {
+	return evictions.sum();
+    }
+
+    /** @return The fraction of lookups answered from the cache. */
+    public double hitRate() {
+	long hitCount = hitCount();
+	long lookups = hitCount + missCount();
+	return lookups == 0 ? 0.0 : (double) hitCount / lookups;
+    }
+
+    /* The canonical form of a ticker, as the YQL returns it */
+    static String key(String ticker) {
+	return ticker.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private Segment segmentFor(String ticker) {
+	int h = ticker.hashCode();
+	return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    /* A cached snapshot and the time each of its fields was fetched,
+       indexed by field ordinal */
+    private static final class Entry {
+	final QuoteSnapshot snapshot;
+	final long[] fetchedAt;
+
+	Entry(QuoteSnapshot snapshot, long[] fetchedAt) {
+	    this.snapshot = snapshot;
+	    this.fetchedAt = fetchedAt;
+	}
+    }
+
+    /* A lock-guarded, access-ordered map so that the eldest entry is the
+       least recently used one */
+    private final class Segment {
+	private final Map<String, Entry> entries;
+
+	Segment(final int capacity) {
+	    entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+		    if (size() <= capacity)
+			return false;
+		    evictions.increment();
+		    return true;
+		}
+	    };
+	}
+
+	synchronized Entry get(String ticker) {
+	    return entries.get(ticker);
+	}
+
+	synchronized void merge(String ticker, QuoteSnapshot snapshot,
+				long now) {
+	    Entry cached = entries.get(ticker);
+	    long[] fetchedAt = new long[FIELDS.length];
+	    QuoteSnapshot merged = snapshot;
+
+	    if (cached != null &&
+		(cached.snapshot.fieldMask() & ~snapshot.fieldMask()) != 0) {
+		merged = QuoteSnapshot.merge(cached.snapshot, snapshot);
+		System.arraycopy(cached.fetchedAt, 0, fetchedAt, 0,
+				 FIELDS.length);
+	    }
+	    for (QuoteField field : FIELDS) {
+		if (snapshot.has(field))
+		    fetchedAt[field.ordinal()] = now;
+	    }
+	    entries.put(ticker, new Entry(merged, fetchedAt));
+	}
+
+	synchronized void clear() {
+	    entries.clear();
+	}
+
+	synchronized int size() {
+	    return entries.size();
+	}
+    }
+}
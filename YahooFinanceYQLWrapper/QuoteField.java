@@ -0,0 +1,130 @@
+package YahooFinanceYQLWrapper;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The columns of the yahoo.finance.quotes table that the wrapper reads.
+ *
+ * @author Amandeep Sarow
+ */
+public enum QuoteField {
+    FIFTY_DAY_MOVING_AVG      ("FiftydayMovingAverage",      Kind.NUMBER, false),
+    TWOHUNDRED_DAY_MOVING_AVG ("TwoHundreddayMovingAverage", Kind.NUMBER, false),
+    ASK                       ("Ask",                        Kind.NUMBER, true),
+    AVG_DAILY_VOLUME          ("AverageDailyVolume",         Kind.VOLUME, false),
+    BID                       ("Bid",                        Kind.NUMBER, true),
+    BOOK_VALUE                ("BookValue",                  Kind.NUMBER, false),
+    CHANGE                    ("Change",                     Kind.AMOUNT, true),
+    CHANGE_PERCENT            ("PercentChange",              Kind.AMOUNT, true),
+    CHANGE_YEAR_LOW           ("ChangeFromYearLow",          Kind.AMOUNT, true),
+    CLOSE                     ("PreviousClose",              Kind.NUMBER, false),
+    DAYS_HIGH                 ("DaysHigh",                   Kind.NUMBER, true),
+    DAYS_LOW                  ("DaysLow",                    Kind.NUMBER, true),
+    DIVIDEND                  ("DividendShare",              Kind.NUMBER, false),
+    EARNINGS_SHARE            ("EarningsShare",              Kind.NUMBER, false),
+    EBITDA                    ("EBITDA",                     Kind.AMOUNT, false),
+    EPS_ESTIMATE_CY           ("EPSEstimateCurrentYear",     Kind.NUMBER, false),
+    EPS_ESTIMATE_NQ           ("EPSEstimateNextQuarter",     Kind.NUMBER, false),
+    EPS_ESTIMATE_NY           ("EPSEstimateNextYear",        Kind.NUMBER, false),
+    LAST_TRADE_PRICE          ("LastTradePriceOnly",         Kind.NUMBER, true),
+    MARKETCAP                 ("MarketCapitalization",       Kind.AMOUNT, true),
+    NAME                      ("Name",                       Kind.TEXT,   false),
+    OPEN                      ("Open",                       Kind.NUMBER, true),
+    PE_RATIO                  ("PERatio",                    Kind.NUMBER, true),
+    PEG_RATIO                 ("PEGRatio",                   Kind.NUMBER, true),
+    SHORT_RATIO               ("ShortRatio",                 Kind.NUMBER, false),
+    VOLUME                    ("Volume",                     Kind.VOLUME, true),
+    YEAR_HIGH                 ("YearHigh",                   Kind.NUMBER, false),
+    YEAR_LOW                  ("YearLow",                    Kind.NUMBER, false);
+
+    /** How the value of a field is stored once it has been parsed. */
+    public enum Kind {
+	/** A decimal number such as a price or ratio. */
+	NUMBER,
+	/** A whole number of shares. */
+	VOLUME,
+	/** A figure the YQL formats as text, such as "+1.23", "-0.52%" or
+	    "2.1B", kept both as that text and as the decoded number. */
+	AMOUNT,
+	/** A value kept as the text returned by the YQL. */
+	TEXT
+    }
+
+    private static final Map<String, QuoteField> BY_TAG_NAME =
+	new HashMap<String, QuoteField>();
+
+    static {
+	for (QuoteField field : values())
+	    BY_TAG_NAME.put(field.tagName, field);
+    }
+
+    private final String tagName;
+    private final Kind kind;
+    private final boolean intraday;
+
+    private QuoteField(String tagName, Kind kind, boolean intraday) {
+	this.tagName = tagName;
+	this.kind = kind;
+	this.intraday = intraday;
+    }
+
+    /**
+     * Retrieves the name of the XML element holding this field.
+     *
+     * @return The element name, e.g. "Ask".
+     */
+    public String tagName() {
+	return tagName;
+    }
+
+    /**
+     * Retrieves how the value of this field is stored.
+     *
+     * @return The kind of value held by this field.
+     */
+    public Kind kind() {
+	return kind;
+    }
+
+    /**
+     * Whether this field has a numeric value, read with
+     * {@link QuoteSnapshot#getDouble(QuoteField)}.
+     *
+     * @return true for every kind but {@link Kind#TEXT}.
+     */
+    public boolean hasNumber() {
+	return kind != Kind.TEXT;
+    }
+
+    /**
+     * Whether this field has a text value, read with
+     * {@link QuoteSnapshot#getText(QuoteField)}.
+     *
+     * @return true for {@link Kind#AMOUNT} and {@link Kind#TEXT}.
+     */
+    public boolean hasText() {
+	return kind == Kind.AMOUNT || kind == Kind.TEXT;
+    }
+
+    /**
+     * Whether this field moves with the trade price during the day, as
+     * opposed to fundamentals that change at most once a day.
+     *
+     * @return true for intraday fields such as prices, false otherwise.
+     */
+    public boolean isIntraday() {
+	return intraday;
+    }
+
+    /**
+     * Finds the field stored in the XML element with the given name.
+     *
+     * @param tagName The element name, e.g. "Ask".
+     * @return        The matching field, or null if the wrapper does not read
+     *                that element.
+     */
+    public static QuoteField forTagName(String tagName) {
+	return BY_TAG_NAME.get(tagName);
+    }
+}
@@ -0,0 +1,15 @@
+package YahooFinanceYQLWrapper;
+
+/**
+ * Receives quote snapshots as they are fetched or replayed.
+ *
+ * @author Amandeep Sarow
+ */
+public interface QuoteListener {
+    /**
+     * Called with each new snapshot.
+     *
+     * @param snapshot The quote snapshot.
+     */
+    void onQuote(QuoteSnapshot snapshot);
+}
@@ -0,0 +1,283 @@
+package YahooFinanceYQLWrapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps a watchlist of quotes fresh within a fixed request budget. Each
+ * ticker has its own refresh interval, so e.g. held positions can refresh
+ * every few seconds and the long tail every minute. Tickers that are due
+ * are batched into shared <code>symbol in (...)</code> requests, most
+ * overdue first, and a token bucket limits how many requests are sent per
+ * second. Fetched snapshots are passed to every registered
+ * {@link QuoteListener} and refresh {@link YQLWrapper}'s quote cache.
+ * A refresh that fails is counted and its tickers are retried at their
+ * next interval.
+ *
+ * <p>A poller owns a timer thread, which {@link #close()} shuts down.
+ * Listeners are called on that thread rather than on a request thread, so
+ * a slow listener holds back this poller's refreshes but never the
+ * wrapper's other requests.
+ *
+ * @author Amandeep Sarow
+ */
+public final class QuotePoller implements AutoCloseable {
+    private static final Comparator<Watch> MOST_OVERDUE =
+	Comparator.<Watch>comparingLong(w -> w.nextDue)
+	.thenComparingLong(w -> w.intervalNanos);
+
+    private final TokenBucket budget;
+    private final Set<QuoteField> fields;
+    private final Map<String, Watch> watches = new HashMap<String, Watch>();
+    private final PriorityQueue<Watch> due =
+	new PriorityQueue<Watch>(MOST_OVERDUE);
+    private final List<QuoteListener> listeners =
+	new CopyOnWriteArrayList<QuoteListener>();
+    private final ScheduledExecutorService timer =
+	Executors.newSingleThreadScheduledExecutor(r -> {
+	    Thread thread = new Thread(r, "yql-quote-poller");
+	    thread.setDaemon(true);
+	    return thread;
+	});
+    private final LongAdder failures = new LongAdder();
+    private ScheduledFuture<?> wakeup;
+    private boolean running;
+    private boolean closed;
+
+    /**
+     * Creates a poller that fetches every quote field.
+     *
+     * @param requestsPerSecond The sustained request budget.
+     * @param burst             The number of requests that may be sent at
+     *                          once after a quiet period.
+     */
+    public QuotePoller(double requestsPerSecond, int burst) {
+	this(requestsPerSecond, burst, EnumSet.allOf(QuoteField.class));
+    }
+
+    /**
+     * Creates a poller that fetches only the given quote fields, e.g. just
+     * the prices for a poller that refreshes every few seconds.
+     *
+     * @param requestsPerSecond The sustained request budget.
+     * @param burst             The number of requests that may be sent at
+     *                          once after a quiet period.
+     * @param fields            The fields to fetch.
+     */
+    public QuotePoller(double requestsPerSecond, int burst,
+		       Set<QuoteField> fields) {
+	if (fields.isEmpty())
+	    throw new IllegalArgumentException("No quote fields requested");
+	budget = new TokenBucket(requestsPerSecond, burst);
+	this.fields = Collections.unmodifiableSet(EnumSet.copyOf(fields));
+    }
+
+    /**
+     * Adds a ticker to the watchlist, or changes its refresh interval. The
+     * ticker is due immediately when first added. Tickers are matched
+     * without regard to case or surrounding whitespace, as the quote
+     * cache matches them.
+     *
+     * @param ticker   The stock ticker for the public corporation.
+     * @param interval How often the quote should be refreshed.
+     * @param unit     The unit of the interval.
+     */
+    public synchronized void watch(String ticker, long interval, TimeUnit unit) {
+	String symbol = QuoteCache.key(ticker);
+	long intervalNanos = unit.toNanos(interval);
+	Watch watch = watches.get(symbol);
+
+	if (watch == null) {
+	    watch = new Watch(symbol, intervalNanos, System.nanoTime());
+	    watches.put(symbol, watch);
+	    due.add(watch);
+	} else if (!watch.inFlight && due.remove(watch)) {
+	    watch.nextDue += intervalNanos - watch.intervalNanos;
+	    watch.intervalNanos = intervalNanos;
+	    due.add(watch);
+	} else {
+	    watch.intervalNanos = intervalNanos;
+	}
+	reschedule(0);
+    }
+
+    /**
+     * Removes a ticker from the watchlist.
+     *
+     * @param ticker The stock ticker for the public corporation.
+     */
+    public synchronized void unwatch(String ticker) {
+	Watch watch = watches.remove(QuoteCache.key(ticker));
+	if (watch != null)
+	    due.remove(watch);
+    }
+
+    /** @return The number of tickers being watched. */
+    public synchronized int size() {
+	return watches.size();
+    }
+
+    /**
+     * Registers a listener for every snapshot fetched.
+     *
+     * @param listener The listener, called from the poller's thread.
+     */
+    public void addListener(QuoteListener listener) {
+	listeners.add(listener);
+    }
+
+    /**
+     * Removes a previously registered listener.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(QuoteListener listener) {
+	listeners.remove(listener);
+    }
+
+    /** @return The number of refresh requests that failed. */
+    public long failureCount() {
+	return failures.sum();
+    }
+
+    /**
+     * Starts polling the watchlist.
+     *
+     * @throws IllegalStateException If the poller has been closed.
+     */
+    public synchronized void start() {
+	if (closed)
+	    throw new IllegalStateException("Quote poller is closed");
+	running = true;
+	reschedule(0);
+    }
+
+    /** Stops polling. Requests already in flight still complete. */
+    public synchronized void stop() {
+	running = false;
+	if (wakeup != null)
+	    wakeup.cancel(false);
+    }
+
+    /**
+     * Stops polling and shuts down the timer thread. A closed poller cannot
+     * be started again.
+     */
+    public synchronized void close() {
+	stop();
+	closed = true;
+	timer.shutdownNow();
+    }
+
+    /* Sends as many requests for due tickers as the budget allows */
+    private synchronized void poll() {
+	wakeup = null;
+	if (!running)
+	    return;
+
+	long now = System.nanoTime();
+	List<String> ready = new ArrayList<String>();
+	while (!due.isEmpty() && due.peek().nextDue <= now)
+	    ready.add(due.poll().ticker);
+
+	List<List<String>> chunks = YQLWrapper.chunkTickers(ready, fields);
+	int sent = 0;
+	while (sent < chunks.size() && budget.tryAcquire()) {
+	    for (String ticker : chunks.get(sent))
+		watches.get(ticker).inFlight = true;
+	    fetch(chunks.get(sent++));
+	}
+
+	/* Whatever the budget did not cover stays due */
+	for (int i = sent; i < chunks.size(); i++) {
+	    for (String ticker : chunks.get(i))
+		due.add(watches.get(ticker));
+	}
+
+	if (!due.isEmpty()) {
+	    long untilDue = Math.max(0, due.peek().nextDue - now);
+	    reschedule(Math.max(untilDue, budget.nanosUntilAvailable()));
+	}
+    }
+
+    private void fetch(List<String> tickers) {
+	YQLWrapper.quotesAsync(tickers, fields)
+	    .whenCompleteAsync((quotes, error) -> {
+		try {
+		    if (error != null) {
+			failures.increment();
+			Metrics.pollFailure();
+		    } else {
+			for (QuoteSnapshot snapshot : quotes.values()) {
+			    for (QuoteListener listener : listeners)
+				listener.onQuote(snapshot);
+			}
+		    }
+		} finally {
+		    requeue(tickers);
+		}
+	    }, this::deliver);
+    }
+
+    /* Runs a completion on the timer thread. Completions that arrive
+       after the poller is closed are dropped. */
+    private void deliver(Runnable completion) {
+	try {
+	    timer.execute(completion);
+	} catch (RejectedExecutionException closed) {
+	}
+    }
+
+    /* Schedules the next refresh of tickers whose request completed */
+    private synchronized void requeue(List<String> tickers) {
+	long now = System.nanoTime();
+	for (String ticker : tickers) {
+	    Watch watch = watches.get(ticker);
+	    if (watch != null && watch.inFlight) {
+		watch.inFlight = false;
+		watch.nextDue = now + watch.intervalNanos;
+		due.add(watch);
+	    }
+	}
+	reschedule(Math.max(0, due.isEmpty() ? 0 : due.peek().nextDue - now));
+    }
+
+    /* Moves the next poll earlier if it is due sooner than scheduled */
+    private void reschedule(long delayNanos) {
+	if (!running || due.isEmpty())
+	    return;
+	if (wakeup != null && !wakeup.isDone()) {
+	    if (wakeup.getDelay(TimeUnit.NANOSECONDS) <= delayNanos)
+		return;
+	    wakeup.cancel(false);
+	}
+	wakeup = timer.schedule(this::poll, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static final class Watch {
+	final String ticker;
+	long intervalNanos;
+	long nextDue;
+	boolean inFlight;
+
+	Watch(String ticker, long intervalNanos, long nextDue) {
+	    this.ticker = ticker;
+	    this.intervalNanos = intervalNanos;
+	    this.nextDue = nextDue;
+	}
+    }
+}
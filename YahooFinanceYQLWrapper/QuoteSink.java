@@ -0,0 +1,35 @@
+package YahooFinanceYQLWrapper;
+
+/**
+ * Receives the quote fields of a YQL response as they are parsed.
+ *
+ * @author Amandeep Sarow
+ */
+interface QuoteSink {
+    /**
+     * Called when a new <code>quote</code> element begins.
+     *
+     * @param symbol The ticker held in the element's symbol attribute.
+     */
+    void beginQuote(String symbol);
+
+    /**
+     * Called for each numeric field of the current quote, and for each
+     * {@link QuoteField.Kind#AMOUNT} field after its text.
+     *
+     * @param field The field that was parsed.
+     * @param value The decoded value, NaN if it was not a number.
+     */
+    void number(QuoteField field, double value);
+
+    /**
+     * Called for each text field of the current quote.
+     *
+     * @param field The field that was parsed.
+     * @param value The text with entities decoded and whitespace trimmed.
+     */
+    void text(QuoteField field, String value);
+
+    /** Called when the current quote is complete. */
+    void endQuote();
+}
@@ -0,0 +1,374 @@
+package YahooFinanceYQLWrapper;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable set of quote values for a single stock ticker, all parsed
+ * from the same YQL response. A snapshot only holds the fields that were
+ * requested; see {@link #fields()}.
+ *
+ * @author Amandeep Sarow
+ */
+public final class QuoteSnapshot {
+    private final String symbol;
+    private final double[] numbers;
+    private final String[] text;
+    private final long fields;
+
+    /* The arrays are indexed by QuoteField ordinal and are owned by the
+       snapshot once constructed. The mask has the bit of each field's
+       ordinal set for every field that was requested. */
+    QuoteSnapshot(String symbol, double[] numbers, String[] text, long fields) {
+	this.symbol = symbol;
+	this.numbers = numbers;
+	this.text = text;
+	this.fields = fields;
+    }
+
+    /* Builds the mask of a set of fields */
+    static long mask(Collection<QuoteField> fields) {
+	long mask = 0;
+	for (QuoteField field : fields)
+	    mask |= 1L << field.ordinal();
+	return mask;
+    }
+
+    /* Combines two snapshots of the same ticker, taking each field from
+       the newer snapshot if it was requested there and from the older one
+       otherwise */
+    static QuoteSnapshot merge(QuoteSnapshot older, QuoteSnapshot newer) {
+	double[] numbers = newer.numbers.clone();
+	String[] text = newer.text.clone();
+	for (QuoteField field : QuoteField.values()) {
+	    if (newer.has(field) || !older.has(field))
+		continue;
+	    numbers[field.ordinal()] = older.numbers[field.ordinal()];
+	    text[field.ordinal()] = older.text[field.ordinal()];
+	}
+	return new QuoteSnapshot(newer.symbol, numbers, text,
+				 older.fields | newer.fields);
+    }
+
+    /* The mask of every field */
+    static long allFields() {
+	return mask(EnumSet.allOf(QuoteField.class));
+    }
+
+    /**
+     * Retrieves the stock ticker this snapshot was taken for.
+     *
+     * @return The stock ticker.
+     */
+    public String symbol() {
+	return symbol;
+    }
+
+    /**
+     * Retrieves the fields this snapshot was requested with. A requested
+     * field may still be absent if the YQL had no value for it.
+     *
+     * @return The requested fields.
+     */
+    public Set<QuoteField> fields() {
+	EnumSet<QuoteField> requested = EnumSet.noneOf(QuoteField.class);
+	for (QuoteField field : QuoteField.values()) {
+	    if (has(field))
+		requested.add(field);
+	}
+	return requested;
+    }
+
+    /**
+     * Whether a field was requested for this snapshot.
+     *
+     * @param field The field.
+     * @return      true if the field was requested.
+     */
+    public boolean has(QuoteField field) {
+	return (fields & (1L << field.ordinal())) != 0;
+    }
+
+    /* The mask of the requested fields */
+    long fieldMask() {
+	return fields;
+    }
+
+    /**
+     * Retrieves the value of a numeric field.
+     *
+     * @param field The field to read.
+     * @return      The value, or NaN if the field was absent, not requested
+     *              or not a number.
+     */
+    public double getDouble(QuoteField field) {
+	return numbers[field.ordinal()];
+    }
+
+    /**
+     * Retrieves the value of a numeric field as a whole number. A whole
+     * number has no NaN to report an absent value with, and 0 is a real
+     * volume, so an absent value is an error here just as an "N/A" amount
+     * always was; use {@link #getDouble} to test for NaN instead.
+     *
+     * @param field The field to read.
+     * @return      The value.
+     * @throws NumberFormatException If the field was absent, not requested
+     *                               or not a number.
+     */
+    public long getLong(QuoteField field) {
+	double value = numbers[field.ordinal()];
+	if (Double.isNaN(value))
+	    throw new NumberFormatException(symbol + " has no value for " +
+					    field.tagName());
+	return (long) value;
+    }
+
+    /**
+     * Retrieves the value of a text field exactly as returned by the YQL.
+     *
+     * @param field The field to read.
+     * @return      The text, or null if the field was absent or not
+     *              requested.
+     */
+    public String getText(QuoteField field) {
+	return text[field.ordinal()];
+    }
+
+    /** @return The 50-day moving average stock price. */
+    public double fiftyDayMovingAverage() {
+	return getDouble(QuoteField.FIFTY_DAY_MOVING_AVG);
+    }
+
+    /** @return The 200-day moving average stock price. */
+    public double twoHundredDayMovingAverage() {
+	return getDouble(QuoteField.TWOHUNDRED_DAY_MOVING_AVG);
+    }
+
+    /** @return The last known asking price. */
+    public double ask() {
+	return getDouble(QuoteField.ASK);
+    }
+
+    /**
+     * @return The average amount of stock traded per day.
+     * @throws NumberFormatException If the volume is not available.
+     */
+    public long averageDailyVolume() {
+	return getLong(QuoteField.AVG_DAILY_VOLUME);
+    }
+
+    /** @return The most recent "best" bid price. */
+    public double bid() {
+	return getDouble(QuoteField.BID);
+    }
+
+    /** @return The book value per share. */
+    public double bookValue() {
+	return getDouble(QuoteField.BOOK_VALUE);
+    }
+
+    /** @return The signed change in price over the day, e.g. "+1.23". */
+    public String change() {
+	return getText(QuoteField.CHANGE);
+    }
+
+    /** @return The signed change in price over the day, e.g. 1.23. */
+    public double changeValue() {
+	return getDouble(QuoteField.CHANGE);
+    }
+
+    /** @return The signed percentage change over the day, e.g. "+0.52%". */
+    public String percentChange() {
+	return getText(QuoteField.CHANGE_PERCENT);
+    }
+
+    /** @return The signed percentage change over the day, e.g. 0.52. */
+    public double percentChangeValue() {
+	return getDouble(QuoteField.CHANGE_PERCENT);
+    }
+
+    /** @return The signed change in price from the yearly low. */
+    public String changeFromYearLow() {
+	return getText(QuoteField.CHANGE_YEAR_LOW);
+    }
+
+    /** @return The signed change in price from the yearly low. */
+    public double changeFromYearLowValue() {
+	return getDouble(QuoteField.CHANGE_YEAR_LOW);
+    }
+
+    /** @return The closing price from the previous trading day. */
+    public double previousClose() {
+	return getDouble(QuoteField.CLOSE);
+    }
+
+    /** @return The highest trade price of the day. */
+    public double daysHigh() {
+	return getDouble(QuoteField.DAYS_HIGH);
+    }
+
+    /** @return The lowest trade price of the day. */
+    public double daysLow() {
+	return getDouble(QuoteField.DAYS_LOW);
+    }
+
+    /** @return The most recent dividend payout per share. */
+    public double dividendShare() {
+	return getDouble(QuoteField.DIVIDEND);
+    }
+
+    /** @return The most recently published EPS. */
+    public double earningsShare() {
+	return getDouble(QuoteField.EARNINGS_SHARE);
+    }
+
+    /** @return The EBITDA with its magnitude suffix, e.g. "2.1B". */
+    public String EBITDA() {
+	return getText(QuoteField.EBITDA);
+    }
+
+    /**
+     * @return The EBITDA in dollars, e.g. 2100000000.
+     * @throws NumberFormatException If the EBITDA is not available.
+     */
+    public long EBITDAValue() {
+	return getLong(QuoteField.EBITDA);
+    }
+
+    /** @return The EPS estimate for the current year. */
+    public double EPSEstimateCurrentYear() {
+	return getDouble(QuoteField.EPS_ESTIMATE_CY);
+    }
+
+    /** @return The EPS estimate for the next quarter. */
+    public double EPSEstimateNextQuarter() {
+	return getDouble(QuoteField.EPS_ESTIMATE_NQ);
+    }
+
+    /** @return The EPS estimate for the next year. */
+    public double EPSEstimateNextYear() {
+	return getDouble(QuoteField.EPS_ESTIMATE_NY);
+    }
+
+    /** @return The last trade price. */
+    public double lastTradePrice() {
+	return getDouble(QuoteField.LAST_TRADE_PRICE);
+    }
+
+    /** @return The market capitalization with its suffix, e.g. "640.2B". */
+    public String marketCapitalization() {
+	return getText(QuoteField.MARKETCAP);
+    }
+
+    /**
+     * @return The market capitalization in dollars.
+     * @throws NumberFormatException If the market capitalization is not
+     *                               available.
+     */
+    public long marketCapitalizationValue() {
+	return getLong(QuoteField.MARKETCAP);
+    }
+
+    /** @return The corporate name. */
+    public String name() {
+	return getText(QuoteField.NAME);
+    }
+
+    /** @return The opening price of the day. */
+    public double open() {
+	return getDouble(QuoteField.OPEN);
+    }
+
+    /** @return The Price-Earnings ratio. */
+    public double PERatio() {
+	return getDouble(QuoteField.PE_RATIO);
+    }
+
+    /** @return The Price-Earnings Growth ratio. */
+    public double PEGRatio() {
+	return getDouble(QuoteField.PEG_RATIO);
+    }
+
+    /** @return The Short-Interest ratio. */
+    public double shortRatio() {
+	return getDouble(QuoteField.SHORT_RATIO);
+    }
+
+    /**
+     * @return The number of shares traded so far today.
+     * @throws NumberFormatException If the volume is not available.
+     */
+    public long volume() {
+	return getLong(QuoteField.VOLUME);
+    }
+
+    /** @return The highest trade price in the past year. */
+    public double yearHigh() {
+	return getDouble(QuoteField.YEAR_HIGH);
+    }
+
+    /** @return The lowest trade price in the past year. */
+    public double yearLow() {
+	return getDouble(QuoteField.YEAR_LOW);
+    }
+
+    @Override
+    public String toString() {
+	StringBuilder sb = new StringBuilder(symbol).append(" {");
+	String separator = "";
+	for (QuoteField field : QuoteField.values()) {
+	    if (!has(field))
+		continue;
+	    String value = field.hasText() ?
+		getText(field) : String.valueOf(getDouble(field));
+	    sb.append(separator).append(field.tagName()).append('=')
+		.append(value);
+	    separator = ", ";
+	}
+	return sb.append('}').toString();
+    }
+
+    /* Builds a snapshot for each quote passed to it by the parser */
+    static final class Collector implements QuoteSink {
+	private static final int FIELD_COUNT = QuoteField.values().length;
+
+	private final Map<String, QuoteSnapshot> quotes;
+	private final long fields;
+	private String symbol;
+	private double[] numbers;
+	private String[] text;
+
+	Collector(Map<String, QuoteSnapshot> quotes, Set<QuoteField> fields) {
+	    this.quotes = quotes;
+	    this.fields = mask(fields);
+	}
+
+	/* The map the snapshots are collected into */
+	Map<String, QuoteSnapshot> quotes() {
+	    return quotes;
+	}
+
+	public void beginQuote(String symbol) {
+	    this.symbol = symbol;
+	    numbers = new double[FIELD_COUNT];
+	    text = new String[FIELD_COUNT];
+	    Arrays.fill(numbers, Double.NaN);
+	}
+
+	public void number(QuoteField field, double value) {
+	    numbers[field.ordinal()] = value;
+	}
+
+	public void text(QuoteField field, String value) {
+	    text[field.ordinal()] = value;
+	}
+
+	public void endQuote() {
+	    quotes.put(symbol, new QuoteSnapshot(symbol, numbers, text, fields));
+	}
+    }
+}
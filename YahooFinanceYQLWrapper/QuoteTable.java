@@ -0,0 +1,294 @@
+package YahooFinanceYQLWrapper;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A table of the latest quote values for a large universe of tickers,
+ * stored column by column. Each ticker is interned to a dense row id the
+ * first time it is seen, and each quote field is held in its own array
+ * indexed by row id, so scanning one field across the universe touches
+ * only that field's array.
+ *
+ * <p>Batch fetches through {@link YQLWrapper#quotesInto} write into the
+ * table in place. A row is updated as a whole under the table's lock, so
+ * {@link #snapshot(int)} never sees a half-written quote; the arrays
+ * returned by {@link #column(QuoteField)} are the live storage and are
+ * read without locking.
+ *
+ * @author Amandeep Sarow
+ */
+public final class QuoteTable {
+    private static final QuoteField[] FIELDS = QuoteField.values();
+
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+    private String[] symbols;
+    private volatile double[][] numbers = new double[FIELDS.length][];
+    private volatile String[][] text = new String[FIELDS.length][];
+    private volatile long[] updatedAt;
+    private long[] written;
+    private volatile int size;
+
+    /**
+     * Creates an empty table.
+     *
+     * @param initialCapacity The number of tickers to allocate room for;
+     *                        the table grows past it as needed.
+     */
+    public QuoteTable(int initialCapacity) {
+	if (initialCapacity < 0)
+	    throw new IllegalArgumentException("Negative capacity");
+
+	int capacity = Math.max(initialCapacity, 16);
+	symbols = new String[capacity];
+	updatedAt = new long[capacity];
+	written = new long[capacity];
+	for (QuoteField field : FIELDS) {
+	    if (field.hasText())
+		text[field.ordinal()] = new String[capacity];
+	    if (field.hasNumber()) {
+		numbers[field.ordinal()] = new double[capacity];
+		Arrays.fill(numbers[field.ordinal()], Double.NaN);
+	    }
+	}
+    }
+
+    /**
+     * Retrieves the row id of a ticker, adding an empty row for it if it
+     * is not in the table yet.
+     *
+     * @param symbol The stock ticker for the public corporation.
+     * @return       The ticker's row id.
+     */
+    public synchronized int intern(String symbol) {
+	Integer id = ids.get(symbol);
+	if (id != null)
+	    return id;
+
+	int row = size;
+	if (row == symbols.length)
+	    grow();
+	symbols[row] = symbol;
+	ids.put(symbol, row);
+	size = row + 1;
+	return row;
+    }
+
+    /**
+     * Retrieves the row id of a ticker.
+     *
+     * @param symbol The stock ticker for the public corporation.
+     * @return       The ticker's row id, or -1 if it is not in the table.
+     */
+    public synchronized int idOf(String symbol) {
+	Integer id = ids.get(symbol);
+	return id == null ? -1 : id;
+    }
+
+    /**
+     * Retrieves the ticker held in a row.
+     *
+     * @param id The row id.
+     * @return   The stock ticker.
+     */
+    public synchronized String symbol(int id) {
+	checkRow(id);
+	return symbols[id];
+    }
+
+    /** @return The number of tickers in the table. */
+    public int size() {
+	return size;
+    }
+
+    /**
+     * Retrieves the live array holding a numeric field for every row. Only
+     * the first {@link #size()} entries are in use and absent values are
+     * NaN. The table replaces its arrays when it grows, so fetch the
+     * column again for each scan rather than holding on to it.
+     *
+     * @param field A numeric field.
+     * @return      The field's values, indexed by row id.
+     */
+    public double[] column(QuoteField field) {
+	double[] column = numbers[field.ordinal()];
+	if (column == null)
+	    throw new IllegalArgumentException(field + " is a text field");
+	return column;
+    }
+
+    /**
+     * Retrieves the live array holding a text field for every row, on the
+     * same terms as {@link #column(QuoteField)}. Absent values are null.
+     *
+     * @param field A text field.
+     * @return      The field's values, indexed by row id.
+     */
+    public String[] textColumn(QuoteField field) {
+	String[] column = text[field.ordinal()];
+	if (column == null)
+	    throw new IllegalArgumentException(field + " is a numeric field");
+	return column;
+    }
+
+    /**
+     * Retrieves one numeric value.
+     *
+     * @param id    The row id.
+     * @param field A numeric field.
+     * @return      The value, or NaN if it is absent.
+     */
+    public double getDouble(int id, QuoteField field) {
+	checkRow(id);
+	return column(field)[id];
+    }
+
+    /**
+     * Retrieves one text value.
+     *
+     * @param id    The row id.
+     * @param field A text field.
+     * @return      The value, or null if it is absent.
+     */
+    public String getText(int id, QuoteField field) {
+	checkRow(id);
+	return textColumn(field)[id];
+    }
+
+    /**
+     * Retrieves when a row was last written.
+     *
+     * @param id The row id.
+     * @return   The time in milliseconds since the epoch, or 0 if the row
+     *           has never been written.
+     */
+    public long updatedAt(int id) {
+	checkRow(id);
+	return updatedAt[id];
+    }
+
+    /**
+     * Copies a row into a snapshot. The snapshot's fields are those that
+     * have ever been written to the row.
+     *
+     * @param id The row id.
+     * @return   The row's current values.
+     */
+    public synchronized QuoteSnapshot snapshot(int id) {
+	checkRow(id);
+	double[] rowNumbers = new double[FIELDS.length];
+	String[] rowText = new String[FIELDS.length];
+	for (int f = 0; f < FIELDS.length; f++) {
+	    rowNumbers[f] = numbers[f] != null ? numbers[f][id] : Double.NaN;
+	    if (text[f] != null)
+		rowText[f] = text[f][id];
+	}
+	return new QuoteSnapshot(symbols[id], rowNumbers, rowText, written[id]);
+    }
+
+    /**
+     * Writes the requested fields of a snapshot into its ticker's row.
+     *
+     * @param snapshot The quote values to store.
+     */
+    public synchronized void put(QuoteSnapshot snapshot) {
+	int id = intern(snapshot.symbol());
+	for (QuoteField field : FIELDS) {
+	    int f = field.ordinal();
+	    if (!snapshot.has(field))
+		continue;
+	    if (numbers[f] != null)
+		numbers[f][id] = snapshot.getDouble(field);
+	    if (text[f] != null)
+		text[f][id] = snapshot.getText(field);
+	}
+	written[id] |= snapshot.fieldMask();
+	updatedAt[id] = System.currentTimeMillis();
+    }
+
+    /* Creates a sink that writes parsed quotes into the table. Each quote
+       is staged in the writer's own buffers and copied into its row in one
+       step when it ends, so a writer allocates nothing per quote. Every
+       requested field is overwritten, so a field the response left empty
+       becomes NaN or null rather than keeping an older value. A writer
+       must only be used by one thread at a time. */
+    QuoteSink writer(Set<QuoteField> fields) {
+	return new Writer(QuoteSnapshot.mask(fields));
+    }
+
+    /* Copies the given fields of a staged quote into its row */
+    private synchronized void write(String symbol, long fields,
+				    double[] stagedNumbers,
+				    String[] stagedText, long now) {
+	int id = intern(symbol);
+	for (int f = 0; f < FIELDS.length; f++) {
+	    if ((fields & (1L << f)) == 0)
+		continue;
+	    if (numbers[f] != null)
+		numbers[f][id] = stagedNumbers[f];
+	    if (text[f] != null)
+		text[f][id] = stagedText[f];
+	}
+	written[id] |= fields;
+	updatedAt[id] = now;
+    }
+
+    /* Doubles the capacity of every column. Called with the lock held. */
+    private void grow() {
+	int capacity = symbols.length * 2;
+	double[][] newNumbers = new double[FIELDS.length][];
+	String[][] newText = new String[FIELDS.length][];
+
+	for (int f = 0; f < FIELDS.length; f++) {
+	    if (numbers[f] != null) {
+		newNumbers[f] = Arrays.copyOf(numbers[f], capacity);
+		Arrays.fill(newNumbers[f], symbols.length, capacity,
+			    Double.NaN);
+	    }
+	    if (text[f] != null)
+		newText[f] = Arrays.copyOf(text[f], capacity);
+	}
+	symbols = Arrays.copyOf(symbols, capacity);
+	updatedAt = Arrays.copyOf(updatedAt, capacity);
+	written = Arrays.copyOf(written, capacity);
+	numbers = newNumbers;
+	text = newText;
+    }
+
+    private void checkRow(int id) {
+	if (id < 0 || id >= size)
+	    throw new IndexOutOfBoundsException("No row " + id);
+    }
+
+    private final class Writer implements QuoteSink {
+	private final double[] stagedNumbers = new double[FIELDS.length];
+	private final String[] stagedText = new String[FIELDS.length];
+	private final long requested;
+	private String symbol;
+
+	Writer(long requested) {
+	    this.requested = requested;
+	}
+
+	public void beginQuote(String symbol) {
+	    this.symbol = symbol;
+	    Arrays.fill(stagedNumbers, Double.NaN);
+	    Arrays.fill(stagedText, null);
+	}
+
+	public void number(QuoteField field, double value) {
+	    stagedNumbers[field.ordinal()] = value;
+	}
+
+	public void text(QuoteField field, String value) {
+	    stagedText[field.ordinal()] = value;
+	}
+
+	public void endQuote() {
+	    write(symbol, requested, stagedNumbers, stagedText,
+		  System.currentTimeMillis());
+	}
+    }
+}
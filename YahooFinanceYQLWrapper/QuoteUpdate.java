@@ -0,0 +1,86 @@
+package YahooFinanceYQLWrapper;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The fields of a quote that changed between two successive snapshots of
+ * the same ticker.
+ *
+ * @author Amandeep Sarow
+ */
+public final class QuoteUpdate {
+    private final QuoteSnapshot previous;
+    private final QuoteSnapshot current;
+    private final Set<QuoteField> changed;
+
+    private QuoteUpdate(QuoteSnapshot previous, QuoteSnapshot current,
+			Set<QuoteField> changed) {
+	this.previous = previous;
+	this.current = current;
+	this.changed = Collections.unmodifiableSet(changed);
+    }
+
+    /**
+     * Compares two snapshots of the same ticker. Only the fields the new
+     * snapshot was requested with are compared.
+     *
+     * @param previous The earlier snapshot, or null if there was none.
+     * @param current  The new snapshot.
+     * @return         The update, or null if no field changed.
+     */
+    static QuoteUpdate between(QuoteSnapshot previous, QuoteSnapshot current) {
+	EnumSet<QuoteField> changed = EnumSet.noneOf(QuoteField.class);
+
+	for (QuoteField field : QuoteField.values()) {
+	    if (!current.has(field))
+		continue;
+	    if (field.hasText()) {
+		String now = current.getText(field);
+		if (previous == null ? now != null :
+		    !Objects.equals(previous.getText(field), now))
+		    changed.add(field);
+	    } else {
+		double now = current.getDouble(field);
+		if (previous == null ? !Double.isNaN(now) :
+		    Double.compare(previous.getDouble(field), now) != 0)
+		    changed.add(field);
+	    }
+	}
+	return changed.isEmpty() ? null :
+	    new QuoteUpdate(previous, current, changed);
+    }
+
+    /** @return The stock ticker the update is for. */
+    public String symbol() {
+	return current.symbol();
+    }
+
+    /** @return The fields whose value differs from the previous snapshot. */
+    public Set<QuoteField> changedFields() {
+	return changed;
+    }
+
+    /**
+     * Whether a field changed.
+     *
+     * @param field The field.
+     * @return      true if the field's value differs from the previous
+     *              snapshot.
+     */
+    public boolean changed(QuoteField field) {
+	return changed.contains(field);
+    }
+
+    /** @return The new snapshot. */
+    public QuoteSnapshot snapshot() {
+	return current;
+    }
+
+    /** @return The previous snapshot, or null for a ticker's first update. */
+    public QuoteSnapshot previous() {
+	return previous;
+    }
+}
@@ -0,0 +1,118 @@
+package YahooFinanceYQLWrapper;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes the changes in a watchlist's quotes as they are polled. Each
+ * snapshot is compared with the previous one for the same ticker and only
+ * the fields that differ are published; unchanged snapshots publish
+ * nothing.
+ *
+ * <p>Every subscriber has a bounded buffer. When a subscriber falls behind
+ * and its buffer is full, publishing waits a bounded time for space, which
+ * holds back the poller's next refresh, and then drops the update for that
+ * subscriber. Dropped updates are counted. Every update carries the
+ * ticker's whole snapshot, so the next update a lagging subscriber receives
+ * brings it up to date again.
+ *
+ * <p>The poller is started when the first subscriber subscribes, so the
+ * first snapshots are not published before anyone is listening.
+ *
+ * @author Amandeep Sarow
+ */
+public final class QuoteUpdatePublisher
+    implements Flow.Publisher<QuoteUpdate>, QuoteListener, AutoCloseable {
+    private final QuotePoller poller;
+    private final SubmissionPublisher<QuoteUpdate> publisher;
+    private final ConcurrentHashMap<String, QuoteSnapshot> latest =
+	new ConcurrentHashMap<String, QuoteSnapshot>();
+    private final long maxWaitNanos;
+    private final LongAdder dropped = new LongAdder();
+    private boolean started;
+    private boolean closed;
+
+    /**
+     * Creates a publisher for the snapshots of a poller that waits up to
+     * 100 milliseconds for a full subscriber buffer. The poller is started
+     * by the first {@link #subscribe subscribe}.
+     *
+     * @param poller     The poller whose watchlist is published.
+     * @param executor   The executor that delivers updates to subscribers.
+     * @param bufferSize The number of updates buffered per subscriber.
+     */
+    public QuoteUpdatePublisher(QuotePoller poller, Executor executor,
+				int bufferSize) {
+	this(poller, executor, bufferSize, 100, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a publisher for the snapshots of a poller. The poller is
+     * started by the first {@link #subscribe subscribe}.
+     *
+     * @param poller     The poller whose watchlist is published.
+     * @param executor   The executor that delivers updates to subscribers.
+     * @param bufferSize The number of updates buffered per subscriber.
+     * @param maxWait    How long to wait for space in a full subscriber
+     *                   buffer before dropping the update.
+     * @param unit       The unit of the wait.
+     */
+    public QuoteUpdatePublisher(QuotePoller poller, Executor executor,
+				int bufferSize, long maxWait, TimeUnit unit) {
+	this.poller = poller;
+	this.maxWaitNanos = unit.toNanos(maxWait);
+	this.publisher = new SubmissionPublisher<QuoteUpdate>(executor,
+							      bufferSize);
+	poller.addListener(this);
+    }
+
+    /**
+     * Subscribes to the updates, starting the poller if this is the first
+     * subscriber.
+     *
+     * @param subscriber The subscriber.
+     */
+    public synchronized void subscribe(Flow.Subscriber<? super QuoteUpdate>
+				       subscriber) {
+	publisher.subscribe(subscriber);
+	if (!started && !closed) {
+	    started = true;
+	    poller.start();
+	}
+    }
+
+    public void onQuote(QuoteSnapshot snapshot) {
+	QuoteSnapshot previous = latest.put(snapshot.symbol(), snapshot);
+	QuoteUpdate update = QuoteUpdate.between(previous, snapshot);
+	if (update != null && !publisher.isClosed())
+	    publisher.offer(update, maxWaitNanos, TimeUnit.NANOSECONDS,
+			    (subscriber, item) -> {
+				dropped.increment();
+				return false;
+			    });
+    }
+
+    /** @return The number of updates dropped for full subscriber buffers. */
+    public long droppedCount() {
+	return dropped.sum();
+    }
+
+    /** @return The number of current subscribers. */
+    public int subscriberCount() {
+	return publisher.getNumberOfSubscribers();
+    }
+
+    /**
+     * Stops the poller and completes every subscription.
+     */
+    public synchronized void close() {
+	closed = true;
+	poller.removeListener(this);
+	poller.stop();
+	publisher.close();
+    }
+}
@@ -0,0 +1,285 @@
+package YahooFinanceYQLWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * A forward-only pull parser for yahoo.finance.quotes XML responses. The
+ * response is read in fixed-size blocks and scanned byte by byte, so tags
+ * and values may be split across any whitespace or line breaks. Parsing
+ * stops as soon as every requested field of every expected quote has been
+ * seen, leaving the rest of the response unread.
+ *
+ * @author Amandeep Sarow
+ */
+final class QuoteXMLParser {
+    private static final int EOF = -1;
+    private static final byte[] QUOTE = ascii("quote");
+    private static final byte[] RESULTS = ascii("results");
+    private static final byte[] SYMBOL = ascii("symbol");
+    private static final QuoteField[] FIELDS = QuoteField.values();
+    private static final byte[][] FIELD_TAGS = new byte[FIELDS.length][];
+
+    static {
+	for (QuoteField field : FIELDS)
+	    FIELD_TAGS[field.ordinal()] = ascii(field.tagName());
+    }
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+
+    private final byte[] name = new byte[64];
+    private int nameLength;
+    private byte[] value = new byte[128];
+    private int valueLength;
+
+    QuoteXMLParser(InputStream in) {
+	this.in = in;
+    }
+
+    /**
+     * Parses quotes from the response until every wanted field of the
+     * expected number of quotes has been seen or the results end.
+     *
+     * @param sink           Receives the parsed fields.
+     * @param wanted         The fields the caller needs.
+     * @param expectedQuotes The number of quotes requested.
+     * @return               The number of quotes passed to the sink.
+     */
+    int parse(QuoteSink sink, Set<QuoteField> wanted, int expectedQuotes)
+	throws IOException {
+	boolean inQuote = false;
+	QuoteField current = null;
+	long seen = 0;
+	int seenCount = 0;
+	int quotes = 0;
+	int c;
+
+	while ((c = read()) != EOF) {
+	    if (c != '<') {
+		if (current != null)
+		    appendValue(c);
+		continue;
+	    }
+
+	    c = read();
+	    if (c == '?' || c == '!') {
+		skipMarkup(c);
+		continue;
+	    }
+
+	    boolean closing = c == '/';
+	    if (closing)
+		c = read();
+	    c = readName(c);
+
+	    if (closing) {
+		skipTo('>', c);
+		if (current != null && matches(FIELD_TAGS[current.ordinal()])) {
+		    emit(sink, current);
+		    if (wanted.contains(current) &&
+			(seen & (1L << current.ordinal())) == 0) {
+			seen |= 1L << current.ordinal();
+			seenCount++;
+		    }
+		    current = null;
+
+		    /* The last expected quote is complete once every
+		       wanted field has been seen */
+		    if (seenCount == wanted.size() && quotes == expectedQuotes) {
+			sink.endQuote();
+			return quotes;
+		    }
+		} else if (inQuote && matches(QUOTE)) {
+		    sink.endQuote();
+		    inQuote = false;
+		    if (quotes == expectedQuotes)
+			return quotes;
+		} else if (matches(RESULTS)) {
+		    return quotes;
+		}
+		continue;
+	    }
+
+	    if (!inQuote && matches(QUOTE)) {
+		String symbol = readSymbolAttribute(c);
+		if (symbol != null) {
+		    sink.beginQuote(symbol);
+		    inQuote = true;
+		    seen = 0;
+		    seenCount = 0;
+		    quotes++;
+		}
+		continue;
+	    }
+
+	    boolean selfClosing = skipTo('>', c);
+	    current = inQuote && !selfClosing ? fieldForName() : null;
+	    valueLength = 0;
+	}
+
+	if (inQuote)
+	    sink.endQuote();
+	return quotes;
+    }
+
+    private int read() throws IOException {
+	if (position == limit) {
+	    limit = in.read(buffer, 0, buffer.length);
+	    position = 0;
+	    if (limit <= 0) {
+		limit = 0;
+		return EOF;
+	    }
+	}
+	return buffer[position++] & 0xff;
+    }
+
+    /* Reads an element or attribute name starting with c and returns the
+       first character after it */
+    private int readName(int c) throws IOException {
+	nameLength = 0;
+	while (c != EOF && c != '>' && c != '/' && c != '=' &&
+	       !isWhitespace(c)) {
+	    if (nameLength < name.length)
+		name[nameLength] = (byte) c;
+	    nameLength++;
+	    c = read();
+	}
+	return c;
+    }
+
+    /* Skips to the end of the current tag, stepping over quoted attribute
+       values, and reports whether the tag was self-closing */
+    private boolean skipTo(int end, int c) throws IOException {
+	int previous = 0;
+	while (c != EOF && c != end) {
+	    if (c == '"' || c == '\'') {
+		int quote = c;
+		while ((c = read()) != EOF && c != quote)
+		    ;
+	    }
+	    previous = c;
+	    c = read();
+	}
+	return previous == '/';
+    }
+
+    /* Skips a declaration, processing instruction or comment */
+    private void skipMarkup(int c) throws IOException {
+	if (c == '?') {
+	    skipTo('>', c);
+	    return;
+	}
+	c = read();
+	if (c != '-') {
+	    skipTo('>', c);
+	    return;
+	}
+	int dashes = 0;
+	while ((c = read()) != EOF) {
+	    if (c == '>' && dashes >= 2)
+		return;
+	    dashes = c == '-' ? dashes + 1 : 0;
+	}
+    }
+
+    /* Finds the symbol="..." attribute of a quote element */
+    private String readSymbolAttribute(int c) throws IOException {
+	String symbol = null;
+
+	while (c != EOF && c != '>') {
+	    if (isWhitespace(c) || c == '/') {
+		c = read();
+		continue;
+	    }
+	    c = readName(c);
+	    boolean isSymbol = matches(SYMBOL);
+	    while (isWhitespace(c))
+		c = read();
+	    if (c != '=')
+		continue;
+	    do {
+		c = read();
+	    } while (isWhitespace(c));
+	    if (c != '"' && c != '\'')
+		continue;
+
+	    int quote = c;
+	    valueLength = 0;
+	    while ((c = read()) != EOF && c != quote)
+		appendValue(c);
+	    if (isSymbol)
+		symbol = valueString();
+	    c = read();
+	}
+	return symbol;
+    }
+
+    /* Passes the captured value to the sink. Numbers are decoded in place
+       from the value buffer. */
+    private void emit(QuoteSink sink, QuoteField field) {
+	if (field.hasText())
+	    sink.text(field, valueString());
+	if (field.hasNumber())
+	    sink.number(field, NumberDecoder.decode(value, 0, valueLength));
+    }
+
+    private void appendValue(int c) {
+	if (valueLength == value.length) {
+	    byte[] grown = new byte[value.length * 2];
+	    System.arraycopy(value, 0, grown, 0, valueLength);
+	    value = grown;
+	}
+	value[valueLength++] = (byte) c;
+    }
+
+    /* Decodes the captured value, trimming whitespace and resolving the
+       predefined XML entities */
+    private String valueString() {
+	int start = 0;
+	int end = valueLength;
+	while (start < end && isWhitespace(value[start]))
+	    start++;
+	while (end > start && isWhitespace(value[end - 1]))
+	    end--;
+
+	String text = new String(value, start, end - start,
+				 StandardCharsets.UTF_8);
+	if (text.indexOf('&') == -1)
+	    return text;
+	return text.replace("&lt;", "<").replace("&gt;", ">")
+	    .replace("&quot;", "\"").replace("&apos;", "'")
+	    .replace("&amp;", "&");
+    }
+
+    private QuoteField fieldForName() {
+	for (int i = 0; i < FIELD_TAGS.length; i++) {
+	    if (matches(FIELD_TAGS[i]))
+		return FIELDS[i];
+	}
+	return null;
+    }
+
+    private boolean matches(byte[] expected) {
+	if (nameLength != expected.length)
+	    return false;
+	for (int i = 0; i < nameLength; i++) {
+	    if (name[i] != expected[i])
+		return false;
+	}
+	return true;
+    }
+
+    private static boolean isWhitespace(int c) {
+	return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static byte[] ascii(String s) {
+	return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,124 @@
+package YahooFinanceYQLWrapper;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs blocking YQL and statement requests off the caller's thread while
+ * capping how many of them are in flight at once.
+ *
+ * <p>On runtimes that provide virtual threads every request gets its own
+ * virtual thread, so thousands of queued lookups cost no platform threads.
+ * Elsewhere a fixed pool of daemon threads, one per permitted in-flight
+ * request, is used instead.
+ *
+ * @author Amandeep Sarow
+ */
+public final class RequestExecutor {
+    private final Executor executor;
+    private final Semaphore permits;
+    private final int maxInFlight;
+
+    /**
+     * Creates an executor backed by virtual threads when available.
+     *
+     * @param maxInFlight The maximum number of concurrent requests.
+     */
+    public RequestExecutor(int maxInFlight) {
+	this(defaultExecutor(maxInFlight), maxInFlight);
+    }
+
+    /**
+     * Creates an executor that runs requests on the given executor.
+     *
+     * @param executor    The executor that runs each blocking request.
+     * @param maxInFlight The maximum number of concurrent requests.
+     */
+    public RequestExecutor(Executor executor, int maxInFlight) {
+	if (maxInFlight < 1)
+	    throw new IllegalArgumentException("maxInFlight must be positive");
+	this.executor = executor;
+	this.permits = new Semaphore(maxInFlight, true);
+	this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Runs a blocking request once an in-flight permit is available. The
+     * permit is released before the future completes, so callbacks that
+     * run on completion never hold a request slot. A request whose future
+     * is cancelled before it starts is never run.
+     *
+     * @param request The request to run.
+     * @return        A future completed with the request's result, or
+     *                exceptionally with whatever it threw.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> request) {
+	CompletableFuture<T> result = new CompletableFuture<T>();
+
+	executor.execute(() -> {
+	    try {
+		permits.acquire();
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		result.completeExceptionally(e);
+		return;
+	    }
+	    if (result.isDone()) {
+		permits.release();
+		return;
+	    }
+	    T value;
+	    try {
+		value = request.call();
+	    } catch (Throwable t) {
+		permits.release();
+		result.completeExceptionally(t);
+		return;
+	    }
+	    permits.release();
+	    result.complete(value);
+	});
+	return result;
+    }
+
+    /** @return The maximum number of concurrent requests. */
+    public int maxInFlight() {
+	return maxInFlight;
+    }
+
+    /** @return The number of requests currently running. */
+    public int inFlight() {
+	return maxInFlight - permits.availablePermits();
+    }
+
+    /* Prefers Executors.newVirtualThreadPerTaskExecutor(), looked up
+       reflectively so the wrapper still runs on older runtimes */
+    private static Executor defaultExecutor(int maxInFlight) {
+	try {
+	    Method virtual = Executors.class
+		.getMethod("newVirtualThreadPerTaskExecutor");
+	    return (ExecutorService) virtual.invoke(null);
+	} catch (ReflectiveOperationException e) {
+	    return Executors.newFixedThreadPool(maxInFlight,
+						new DaemonThreadFactory());
+	}
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+	private final AtomicInteger count = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    Thread thread = new Thread(r, "yql-request-" +
+				       count.incrementAndGet());
+	    thread.setDaemon(true);
+	    return thread;
+	}
+    }
+}
@@ -0,0 +1,150 @@
+package YahooFinanceYQLWrapper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How the wrapper bounds and retries each quote or statement request:
+ * <ul>
+ * <li>a <i>deadline</i> for the whole call, including retries, after which
+ *     whatever is still in flight is abandoned;</li>
+ * <li>up to a number of <i>attempts</i>, spaced by exponential backoff with
+ *     full jitter, for failures that may be transient such as timeouts,
+ *     refused connections and 5xx or 429 responses;</li>
+ * <li>a <i>retry budget</i> that lets retries add at most a fraction of the
+ *     request rate, plus a small reserve, so a failing upstream is not
+ *     hit with a multiple of the normal load; and</li>
+ * <li>optional <i>hedging</i>: once an attempt has been outstanding for the
+ *     95th percentile of recent response times, a duplicate is sent and
+ *     whichever answers first is used. Hedges draw on the retry budget.</li>
+ * </ul>
+ *
+ * <p>A policy is immutable; each <code>with</code> method returns a copy.
+ * Set it with {@link YQLWrapper#setRequestPolicy(RequestPolicy)}.
+ *
+ * @author Amandeep Sarow
+ */
+public final class RequestPolicy {
+    /** A 30 second deadline, 3 attempts backing off from 100 ms to 2 s, a
+	budget of 10% retries with a reserve of 10, and no hedging. */
+    public static final RequestPolicy DEFAULT =
+	new RequestPolicy(TimeUnit.SECONDS.toNanos(30), 3,
+			  TimeUnit.MILLISECONDS.toNanos(100),
+			  TimeUnit.SECONDS.toNanos(2), 0.1, 10, false);
+
+    final long deadlineNanos;
+    final int maxAttempts;
+    final long backoffNanos;
+    final long maxBackoffNanos;
+    final double budgetRatio;
+    final int budgetReserve;
+    final boolean hedging;
+
+    private RequestPolicy(long deadlineNanos, int maxAttempts,
+			  long backoffNanos, long maxBackoffNanos,
+			  double budgetRatio, int budgetReserve,
+			  boolean hedging) {
+	this.deadlineNanos = deadlineNanos;
+	this.maxAttempts = maxAttempts;
+	this.backoffNanos = backoffNanos;
+	this.maxBackoffNanos = maxBackoffNanos;
+	this.budgetRatio = budgetRatio;
+	this.budgetReserve = budgetReserve;
+	this.hedging = hedging;
+    }
+
+    /**
+     * Sets the deadline for each call.
+     *
+     * @param deadline How long a call may take, including retries.
+     * @param unit     The unit of the deadline.
+     * @return         A copy of this policy with the deadline.
+     */
+    public RequestPolicy withDeadline(long deadline, TimeUnit unit) {
+	if (deadline <= 0)
+	    throw new IllegalArgumentException("Deadline must be positive");
+	return new RequestPolicy(unit.toNanos(deadline), maxAttempts,
+				 backoffNanos, maxBackoffNanos, budgetRatio,
+				 budgetReserve, hedging);
+    }
+
+    /**
+     * Sets how often failed requests are retried. The wait before retry n
+     * is chosen at random between zero and backoff * 2^(n-1), capped at
+     * maxBackoff.
+     *
+     * @param maxAttempts The most requests sent per call, or 1 to never
+     *                    retry.
+     * @param backoff     The wait bound before the first retry.
+     * @param maxBackoff  The largest wait bound.
+     * @param unit        The unit of both waits.
+     * @return            A copy of this policy with the retries.
+     */
+    public RequestPolicy withRetries(int maxAttempts, long backoff,
+				     long maxBackoff, TimeUnit unit) {
+	if (maxAttempts < 1)
+	    throw new IllegalArgumentException("At least one attempt needed");
+	if (backoff < 0 || maxBackoff < backoff)
+	    throw new IllegalArgumentException("Invalid backoff");
+	return new RequestPolicy(deadlineNanos, maxAttempts,
+				 unit.toNanos(backoff),
+				 unit.toNanos(maxBackoff), budgetRatio,
+				 budgetReserve, hedging);
+    }
+
+    /**
+     * Sets the retry budget. Each call earns ratio of a retry and each
+     * retry or hedge spends one, with at most reserve saved up.
+     *
+     * @param ratio   The retries allowed per call over time, e.g. 0.1.
+     * @param reserve The retries that may be spent in a burst.
+     * @return        A copy of this policy with the budget.
+     */
+    public RequestPolicy withRetryBudget(double ratio, int reserve) {
+	if (ratio < 0 || reserve < 0)
+	    throw new IllegalArgumentException("Negative retry budget");
+	return new RequestPolicy(deadlineNanos, maxAttempts, backoffNanos,
+				 maxBackoffNanos, ratio, reserve, hedging);
+    }
+
+    /**
+     * Turns hedged requests on or off.
+     *
+     * @param hedging Whether to send a duplicate of slow requests.
+     * @return        A copy of this policy with hedging set.
+     */
+    public RequestPolicy withHedging(boolean hedging) {
+	return new RequestPolicy(deadlineNanos, maxAttempts, backoffNanos,
+				 maxBackoffNanos, budgetRatio, budgetReserve,
+				 hedging);
+    }
+
+    /**
+     * Retrieves the deadline for each call.
+     *
+     * @param unit The unit to express it in.
+     * @return     The deadline.
+     */
+    public long deadline(TimeUnit unit) {
+	return unit.convert(deadlineNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** @return The most requests sent per call. */
+    public int maxAttempts() {
+	return maxAttempts;
+    }
+
+    /** @return Whether slow requests are hedged. */
+    public boolean isHedging() {
+	return hedging;
+    }
+
+    public String toString() {
+	return String.format("deadline %d ms, %d attempts, backoff %d-%d ms, " +
+			     "budget %.2f+%d, hedging %s",
+			     deadline(TimeUnit.MILLISECONDS), maxAttempts,
+			     TimeUnit.NANOSECONDS.toMillis(backoffNanos),
+			     TimeUnit.NANOSECONDS.toMillis(maxBackoffNanos),
+			     budgetRatio, budgetReserve,
+			     hedging ? "on" : "off");
+    }
+}
@@ -0,0 +1,277 @@
+package YahooFinanceYQLWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends requests to one host under a {@link RequestPolicy}. Every attempt
+ * runs on a thread of its own while the caller waits, so an attempt that
+ * stalls past the deadline, or loses a hedged race, can be interrupted
+ * and abandoned without leaving the caller blocked in a read. Attempts,
+ * hedges included, share one pool with as many threads as the
+ * {@link RequestExecutor} has permits, so no more connections are open at
+ * once than the executor allows; further attempts wait for a thread. The
+ * retry budget and the response times that set the hedging delay are
+ * kept per runner.
+ *
+ * @author Amandeep Sarow
+ */
+final class RequestRunner {
+    /* Successful attempts per window of response times; the hedging
+       delay is the 95th percentile of the last complete window */
+    private static final int HEDGE_WINDOW = 200;
+    private static final double HEDGE_QUANTILE = 0.95;
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ThreadPoolExecutor attempts =
+	new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+			       new LinkedBlockingQueue<Runnable>(), r -> {
+	    Thread thread = new Thread(r, "yql-attempt-" +
+				       threadCount.incrementAndGet());
+	    thread.setDaemon(true);
+	    return thread;
+	});
+
+    static {
+	attempts.allowCoreThreadTimeOut(true);
+    }
+
+    /* Sets how many attempts may run at once, across every runner */
+    static void setConcurrency(int threads) {
+	synchronized (attempts) {
+	    if (threads < attempts.getCorePoolSize()) {
+		attempts.setCorePoolSize(threads);
+		attempts.setMaximumPoolSize(threads);
+	    } else {
+		attempts.setMaximumPoolSize(threads);
+		attempts.setCorePoolSize(threads);
+	    }
+	}
+    }
+
+    /** Reads the value a request is for from its response body. */
+    interface Parser<T> {
+	T parse(InputStream body) throws IOException;
+    }
+
+    private final LatencyHistogram responseTimes = new LatencyHistogram();
+    private int recorded;
+    private volatile long hedgeDelayNanos = -1;
+    private double budget = Double.NaN;
+
+    /**
+     * Requests a URL and parses its response, retrying and hedging as the
+     * policy allows. Each attempt parses a response of its own, so the
+     * parser must not share state between calls.
+     *
+     * @param policy The policy to apply.
+     * @param url    The URL to request.
+     * @param parser Reads the response body, which is closed afterwards.
+     * @return       What the parser returned for the first successful
+     *               attempt.
+     * @throws YQLException If no attempt succeeded before the deadline, the
+     *                      attempts ran out or a failure was not worth
+     *                      retrying.
+     */
+    <T> T fetch(RequestPolicy policy, String url, Parser<T> parser) {
+	long deadline = System.nanoTime() + policy.deadlineNanos;
+	BlockingQueue<Attempt<T>> finished =
+	    new LinkedBlockingQueue<Attempt<T>>();
+	List<Attempt<T>> running = new ArrayList<Attempt<T>>(2);
+	int sent = 0;
+	int tries = 0;
+	Attempt<T> failed = null;
+
+	earn(policy);
+	try {
+	    while (true) {
+		tries++;
+		running.add(start(url, parser, finished));
+		sent++;
+
+		/* Wait for the first success, hedging once if the attempt
+		   outlasts the usual response time */
+		boolean hedged = !policy.hedging;
+		while (!running.isEmpty()) {
+		    long now = System.nanoTime();
+		    long hedgeAt = hedged || hedgeDelayNanos < 0 ?
+			deadline : running.get(0).started + hedgeDelayNanos;
+		    if (now >= deadline)
+			throw failure(Metrics.ErrorCause.TIMEOUT, url, sent,
+				      failed);
+
+		    Attempt<T> done = finished.poll(Math.min(deadline,
+							     hedgeAt) - now,
+						    TimeUnit.NANOSECONDS);
+		    if (done == null) {
+			if (!hedged && System.nanoTime() < deadline) {
+			    hedged = true;
+			    if (spend(policy)) {
+				Metrics.hedge();
+				running.add(start(url, parser, finished));
+				sent++;
+			    }
+			}
+			continue;
+		    }
+		    running.remove(done);
+		    if (done.error != null)
+			throw error(url, sent, done.error);
+		    if (done.failure == null) {
+			recordResponseTime(done.finishedAt - done.started);
+			return done.value;
+		    }
+		    failed = done;
+		}
+
+		if (!retryable(failed) || tries >= policy.maxAttempts)
+		    break;
+		long wait = backoff(policy, tries);
+		if (System.nanoTime() + wait >= deadline || !spend(policy))
+		    break;
+		Metrics.retry();
+		TimeUnit.NANOSECONDS.sleep(wait);
+	    }
+	    throw failure(cause(failed), url, sent, failed);
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new YQLException(Metrics.ErrorCause.OTHER, url, sent,
+				   new InterruptedIOException
+				   ("Interrupted fetching " + url));
+	} finally {
+	    for (Attempt<T> attempt : running)
+		attempt.future.cancel(true);
+	}
+    }
+
+    private <T> Attempt<T> start(String url, Parser<T> parser,
+				 BlockingQueue<Attempt<T>> finished) {
+	Attempt<T> attempt = new Attempt<T>(url, parser, finished);
+	attempt.future = attempts.submit(attempt);
+	return attempt;
+    }
+
+    private static YQLException failure(Metrics.ErrorCause cause, String url,
+					int sent, Attempt<?> failed) {
+	return new YQLException(cause, url, sent,
+				failed == null ? null : failed.failure);
+    }
+
+    /* A parser or transport that failed with an unchecked exception is
+       reported as a YQLException like every other failure, keeping the
+       exception if it already is one */
+    private static YQLException error(String url, int sent,
+				      RuntimeException e) {
+	if (e instanceof YQLException)
+	    return (YQLException) e;
+	return new YQLException(Metrics.ErrorCause.OTHER, url, sent, e);
+    }
+
+    /* A failure is worth retrying only if it is transient, so another
+       attempt could succeed */
+    private static boolean retryable(Attempt<?> failed) {
+	switch (cause(failed)) {
+	case TIMEOUT:
+	case CONNECTION:
+	case READ:
+	    return true;
+	case HTTP_STATUS:
+	    int status = ((HttpStatusException) failed.failure).status();
+	    return status >= 500 || status == 429;
+	default:
+	    return false;
+	}
+    }
+
+    private static Metrics.ErrorCause cause(Attempt<?> failed) {
+	if (failed.reading)
+	    return Metrics.readFailureCause(failed.failure);
+	return Metrics.openFailureCause(failed.failure);
+    }
+
+    /* Exponential backoff with full jitter */
+    private static long backoff(RequestPolicy policy, int tries) {
+	long bound = policy.backoffNanos;
+	for (int i = 1; i < tries && bound < policy.maxBackoffNanos; i++)
+	    bound *= 2;
+	bound = Math.min(bound, policy.maxBackoffNanos);
+	return bound == 0 ? 0 : ThreadLocalRandom.current().nextLong(bound);
+    }
+
+    /* Each call earns a fraction of a retry, up to the reserve. The
+       budget starts with the reserve saved up. */
+    private synchronized void earn(RequestPolicy policy) {
+	if (Double.isNaN(budget))
+	    budget = policy.budgetReserve;
+	budget = Math.min(policy.budgetReserve, budget + policy.budgetRatio);
+    }
+
+    private synchronized boolean spend(RequestPolicy policy) {
+	if (budget < 1)
+	    return false;
+	budget--;
+	return true;
+    }
+
+    private synchronized void recordResponseTime(long nanos) {
+	responseTimes.record(nanos);
+	if (++recorded == HEDGE_WINDOW) {
+	    hedgeDelayNanos = responseTimes.percentile(HEDGE_QUANTILE);
+	    responseTimes.reset();
+	    recorded = 0;
+	}
+    }
+
+    /* One request, run on an attempt thread, that reports to the caller's
+       queue when it completes */
+    private static final class Attempt<T> implements Runnable {
+	final String url;
+	final Parser<T> parser;
+	final BlockingQueue<Attempt<T>> finished;
+	final long started = System.nanoTime();
+	volatile Future<?> future;
+	long finishedAt;
+	T value;
+	IOException failure;
+	boolean reading;
+	RuntimeException error;
+
+	Attempt(String url, Parser<T> parser,
+		BlockingQueue<Attempt<T>> finished) {
+	    this.url = url;
+	    this.parser = parser;
+	    this.finished = finished;
+	}
+
+	public void run() {
+	    try {
+		InputStream body = Metrics.open(YQLWrapper.transport(), url);
+		try {
+		    reading = true;
+		    value = parser.parse(body);
+		} finally {
+		    try {
+			body.close();
+		    } catch (IOException ignored) {
+		    }
+		}
+	    } catch (IOException e) {
+		failure = e;
+	    } catch (RuntimeException e) {
+		error = e;
+	    }
+	    finishedAt = System.nanoTime();
+	    finished.add(this);
+	}
+    }
+}
@@ -0,0 +1,323 @@
+package YahooFinanceYQLWrapper;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Screens the tickers of a {@link QuoteTable} by their latest quote
+ * values without any network requests, e.g.
+ *
+ * <pre>
+ *   Screener value = new Screener()
+ *       .below(QuoteField.PE_RATIO, 15)
+ *       .below(QuoteField.PEG_RATIO, 1)
+ *       .above(QuoteField.SHORT_RATIO, 5);
+ *   int[] rows = value.top(table, QuoteField.SHORT_RATIO, 20, true);
+ * </pre>
+ *
+ * <p>A screener is an immutable conjunction of conditions; a ticker whose
+ * value for a screened field is absent never matches. The table's columns
+ * are scanned in blocks of rows spread across a fork/join pool, testing 64
+ * rows of one column at a time, and top-N selections are made per block
+ * and then merged.
+ *
+ * @author Amandeep Sarow
+ */
+public final class Screener {
+    /* Rows scanned by one task; a multiple of 64 so that tasks never share
+       a word of the match bitmap */
+    private static final int BLOCK_ROWS = 4096;
+    private static final int[] NO_ROWS = new int[0];
+
+    private final ForkJoinPool pool;
+    private final QuoteField[] fields;
+    private final double[] lows;
+    private final double[] highs;
+
+    /** Creates a screener that matches every ticker, using the common pool. */
+    public Screener() {
+	this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a screener that matches every ticker.
+     *
+     * @param pool The pool that scans the table.
+     */
+    public Screener(ForkJoinPool pool) {
+	this(pool, new QuoteField[0], new double[0], new double[0]);
+    }
+
+    /* Each condition keeps the values strictly between lows[i] and
+       highs[i] */
+    private Screener(ForkJoinPool pool, QuoteField[] fields, double[] lows,
+		     double[] highs) {
+	this.pool = pool;
+	this.fields = fields;
+	this.lows = lows;
+	this.highs = highs;
+    }
+
+    /**
+     * Adds the condition that a field is less than a value.
+     *
+     * @param field A numeric field.
+     * @param value The exclusive upper bound.
+     * @return      A screener with this condition and all of this one's.
+     */
+    public Screener below(QuoteField field, double value) {
+	return and(field, Double.NEGATIVE_INFINITY, value);
+    }
+
+    /**
+     * Adds the condition that a field is greater than a value.
+     *
+     * @param field A numeric field.
+     * @param value The exclusive lower bound.
+     * @return      A screener with this condition and all of this one's.
+     */
+    public Screener above(QuoteField field, double value) {
+	return and(field, value, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Adds the condition that a field is within a range.
+     *
+     * @param field A numeric field.
+     * @param low   The inclusive lower bound.
+     * @param high  The inclusive upper bound.
+     * @return      A screener with this condition and all of this one's.
+     */
+    public Screener between(QuoteField field, double low, double high) {
+	return and(field, Math.nextDown(low), Math.nextUp(high));
+    }
+
+    private Screener and(QuoteField field, double low, double high) {
+	if (!field.hasNumber())
+	    throw new IllegalArgumentException(field + " is a text field");
+	int n = fields.length;
+	QuoteField[] newFields = Arrays.copyOf(fields, n + 1);
+	double[] newLows = Arrays.copyOf(lows, n + 1);
+	double[] newHighs = Arrays.copyOf(highs, n + 1);
+	newFields[n] = field;
+	newLows[n] = low;
+	newHighs[n] = high;
+	return new Screener(pool, newFields, newLows, newHighs);
+    }
+
+    /**
+     * Counts the tickers that meet every condition.
+     *
+     * @param table The table to screen.
+     * @return      The number of matching rows.
+     */
+    public int count(QuoteTable table) {
+	return matching(table).length;
+    }
+
+    /**
+     * Finds the tickers that meet every condition.
+     *
+     * @param table The table to screen.
+     * @return      The ids of the matching rows, in row order.
+     */
+    public int[] matching(QuoteTable table) {
+	return pool.invoke(new Scan(table, null, 0, false));
+    }
+
+    /**
+     * Finds the tickers that meet every condition and have the highest or
+     * lowest values of a field. Tickers with no value for the field are
+     * left out.
+     *
+     * @param table      The table to screen.
+     * @param by         The numeric field to rank by.
+     * @param n          The most rows to return.
+     * @param descending true for the highest values, false for the lowest.
+     * @return           The ids of up to n rows, best first.
+     */
+    public int[] top(QuoteTable table, QuoteField by, int n,
+		     boolean descending) {
+	if (n < 0)
+	    throw new IllegalArgumentException("Negative count");
+	if (n == 0)
+	    return NO_ROWS;
+	return pool.invoke(new Scan(table, by, n, descending));
+    }
+
+    /* Scans a range of rows, splitting it in half until it is at most one
+       block, and returns the matching rows in order or, when ranking, the
+       best n of them */
+    private final class Scan extends RecursiveTask<int[]> {
+	private static final long serialVersionUID = 1L;
+
+	private final double[][] columns;
+	private final double[] rank;
+	private final int n;
+	private final boolean descending;
+	private final int start;
+	private final int end;
+
+	/* The size is read before the columns, which the table publishes
+	   before the rows that need them, so each column covers every
+	   row scanned */
+	Scan(QuoteTable table, QuoteField by, int n, boolean descending) {
+	    end = table.size();
+	    start = 0;
+	    columns = new double[fields.length][];
+	    for (int i = 0; i < fields.length; i++)
+		columns[i] = table.column(fields[i]);
+	    rank = by == null ? null : table.column(by);
+	    this.n = n;
+	    this.descending = descending;
+	}
+
+	private Scan(Scan parent, int start, int end) {
+	    columns = parent.columns;
+	    rank = parent.rank;
+	    n = parent.n;
+	    descending = parent.descending;
+	    this.start = start;
+	    this.end = end;
+	}
+
+	@Override
+	protected int[] compute() {
+	    if (end - start <= BLOCK_ROWS)
+		return scanBlock();
+
+	    int middle = start + (end - start) / 2 / 64 * 64;
+	    Scan right = new Scan(this, middle, end);
+	    right.fork();
+	    int[] left = new Scan(this, start, middle).compute();
+	    return merge(left, right.join());
+	}
+
+	private int[] scanBlock() {
+	    int[] rows = new int[end - start];
+	    int count = 0;
+
+	    for (int base = start; base < end; base += 64) {
+		int width = Math.min(64, end - base);
+		long bits = width == 64 ? -1L : (1L << width) - 1;
+		for (int c = 0; c < columns.length && bits != 0; c++)
+		    bits &= test(columns[c], lows[c], highs[c], base, width);
+		if (rank != null)
+		    bits &= test(rank, Double.NEGATIVE_INFINITY,
+				 Double.POSITIVE_INFINITY, base, width);
+		while (bits != 0) {
+		    rows[count++] = base + Long.numberOfTrailingZeros(bits);
+		    bits &= bits - 1;
+		}
+	    }
+	    if (rank == null)
+		return Arrays.copyOf(rows, count);
+	    return best(rows, count);
+	}
+
+	/* Tests up to 64 rows of a column against a condition, returning
+	   the bit of each row that passes. NaN, the absent value, fails
+	   every test. */
+	private long test(double[] column, double low, double high,
+			  int base, int width) {
+	    long bits = 0;
+	    for (int i = 0; i < width; i++) {
+		double value = column[base + i];
+		if (value > low & value < high)
+		    bits |= 1L << i;
+	    }
+	    return bits;
+	}
+
+	/* Selects the best n rows, best first, by sorting a block's
+	   matches with a heap of the n best seen so far */
+	private int[] best(int[] rows, int count) {
+	    int size = Math.min(n, count);
+	    int[] heap = new int[size];
+	    int held = 0;
+
+	    /* The heap's root is the worst row held */
+	    for (int i = 0; i < count; i++) {
+		int row = rows[i];
+		if (held < size) {
+		    heap[held] = row;
+		    siftUp(heap, held++);
+		} else if (better(row, heap[0])) {
+		    heap[0] = row;
+		    siftDown(heap, held);
+		}
+	    }
+
+	    int[] sorted = new int[held];
+	    for (int i = held - 1; i >= 0; i--) {
+		sorted[i] = heap[0];
+		heap[0] = heap[i];
+		siftDown(heap, i);
+	    }
+	    return sorted;
+	}
+
+	private void siftUp(int[] heap, int i) {
+	    while (i > 0) {
+		int parent = (i - 1) / 2;
+		if (!better(heap[parent], heap[i]))
+		    return;
+		swap(heap, parent, i);
+		i = parent;
+	    }
+	}
+
+	private void siftDown(int[] heap, int size) {
+	    int i = 0;
+	    while (true) {
+		int worst = i;
+		int left = 2 * i + 1;
+		if (left < size && better(heap[worst], heap[left]))
+		    worst = left;
+		if (left + 1 < size && better(heap[worst], heap[left + 1]))
+		    worst = left + 1;
+		if (worst == i)
+		    return;
+		swap(heap, i, worst);
+		i = worst;
+	    }
+	}
+
+	/* Combines the results of two adjacent ranges */
+	private int[] merge(int[] left, int[] right) {
+	    if (rank == null) {
+		int[] rows = Arrays.copyOf(left, left.length + right.length);
+		System.arraycopy(right, 0, rows, left.length, right.length);
+		return rows;
+	    }
+
+	    int[] rows = new int[Math.min(n, left.length + right.length)];
+	    int l = 0;
+	    int r = 0;
+	    for (int i = 0; i < rows.length; i++) {
+		if (r == right.length ||
+		    (l < left.length && !better(right[r], left[l])))
+		    rows[i] = left[l++];
+		else
+		    rows[i] = right[r++];
+	    }
+	    return rows;
+	}
+
+	/* Whether row a ranks ahead of row b, ties going to the lower row
+	   id so results do not depend on how the scan was split */
+	private boolean better(int a, int b) {
+	    int order = Double.compare(rank[a], rank[b]);
+	    if (order == 0)
+		return a < b;
+	    return descending ? order > 0 : order < 0;
+	}
+
+	private void swap(int[] heap, int i, int j) {
+	    int row = heap[i];
+	    heap[i] = heap[j];
+	    heap[j] = row;
+	}
+    }
+}
@@ -0,0 +1,90 @@
+package YahooFinanceYQLWrapper;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent requests for the same key. The first caller for a
+ * key runs the request; callers arriving while it is in flight wait for
+ * and share its result instead of issuing a duplicate. The number of
+ * callers that were coalesced this way is counted per key.
+ *
+ * @author Amandeep Sarow
+ */
+public final class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight =
+	new ConcurrentHashMap<K, CompletableFuture<V>>();
+    private final ConcurrentHashMap<K, LongAdder> coalesced =
+	new ConcurrentHashMap<K, LongAdder>();
+
+    /**
+     * Runs the request for a key, or waits for the one already in flight.
+     *
+     * @param key     Identifies the request.
+     * @param request Produces the result when no request is in flight.
+     * @return        The result of the request that ran.
+     * @throws RuntimeException Whatever the request that ran threw.
+     */
+    public V execute(K key, Supplier<V> request) {
+	CompletableFuture<V> call = new CompletableFuture<V>();
+	CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+
+	if (existing != null) {
+	    coalesced.computeIfAbsent(key, k -> new LongAdder()).increment();
+	    try {
+		return existing.join();
+	    } catch (CompletionException e) {
+		if (e.getCause() instanceof RuntimeException)
+		    throw (RuntimeException) e.getCause();
+		if (e.getCause() instanceof Error)
+		    throw (Error) e.getCause();
+		throw e;
+	    }
+	}
+
+	try {
+	    V result = request.get();
+	    call.complete(result);
+	    return result;
+	} catch (RuntimeException | Error e) {
+	    call.completeExceptionally(e);
+	    throw e;
+	} finally {
+	    inFlight.remove(key, call);
+	}
+    }
+
+    /**
+     * Retrieves how many callers of a key shared another caller's request.
+     *
+     * @param key Identifies the request.
+     * @return    The number of coalesced callers.
+     */
+    public long coalescedCount(K key) {
+	LongAdder count = coalesced.get(key);
+	return count == null ? 0 : count.sum();
+    }
+
+    /** @return The number of coalesced callers of every key that had any. */
+    public Map<K, Long> coalescedCounts() {
+	Map<K, Long> counts = new HashMap<K, Long>();
+	for (Map.Entry<K, LongAdder> entry : coalesced.entrySet())
+	    counts.put(entry.getKey(), entry.getValue().sum());
+	return counts;
+    }
+
+    /** @return The number of requests currently in flight. */
+    public int inFlightCount() {
+	return inFlight.size();
+    }
+
+    /** Resets every coalesced caller count. */
+    public void resetCounts() {
+	coalesced.clear();
+    }
+}
@@ -0,0 +1,151 @@
+package YahooFinanceYQLWrapper;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Fetches and parses many financial statements concurrently. Every
+ * combination of ticker, statement type and period type is scheduled on a
+ * {@link RequestExecutor}, with a separate cap on how many requests may be
+ * outstanding against any one host. Each company is handed to the caller
+ * as soon as all of its statements are done, rather than after the whole
+ * batch. Companies are handed over on a common pool thread, so a slow
+ * caller never holds a request slot.
+ *
+ * <p>The host limit applies to every batch fetched through one fetcher,
+ * so concurrent batches should share a fetcher.
+ *
+ * @author Amandeep Sarow
+ */
+public final class StatementFetcher {
+    private final RequestExecutor executor;
+    private final int maxPerHost;
+    private final Map<String, HostQueue> hosts =
+	new ConcurrentHashMap<String, HostQueue>();
+
+    /**
+     * Creates a fetcher.
+     *
+     * @param executor   The executor that runs each request.
+     * @param maxPerHost The maximum number of concurrent requests to a
+     *                   single host.
+     */
+    public StatementFetcher(RequestExecutor executor, int maxPerHost) {
+	if (maxPerHost < 1)
+	    throw new IllegalArgumentException("maxPerHost must be positive");
+	this.executor = executor;
+	this.maxPerHost = maxPerHost;
+    }
+
+    /**
+     * Fetches every requested statement for every ticker.
+     *
+     * @param tickers     The stock tickers of the public corporations.
+     * @param types       The statements to fetch for each ticker.
+     * @param periodTypes The statement periods to fetch for each statement.
+     * @param onCompany   Called, from a common pool thread, with each
+     *                    company once all of its statements have
+     *                    completed.
+     * @return            A future completed once every company has been
+     *                    passed to onCompany.
+     */
+    public CompletableFuture<Void> fetch(Collection<String> tickers,
+					 Set<StatementType> types,
+					 Set<PeriodType> periodTypes,
+					 Consumer<CompanyStatements> onCompany) {
+	List<CompletableFuture<Void>> companies =
+	    new ArrayList<CompletableFuture<Void>>();
+
+	for (String ticker : tickers) {
+	    CompanyStatements company = new CompanyStatements(ticker);
+	    CompletableFuture<Void> done = new CompletableFuture<Void>();
+	    AtomicInteger remaining =
+		new AtomicInteger(types.size() * periodTypes.size());
+	    companies.add(done);
+
+	    if (remaining.get() == 0) {
+		complete(company, onCompany, done);
+		continue;
+	    }
+
+	    for (StatementType type : types) {
+		for (PeriodType periodType : periodTypes) {
+		    String url = YQLWrapper.statementURL(ticker, type,
+							 periodType);
+		    hostQueue(url).submit(() -> {
+			FinancialStatement statement = null;
+			try {
+			    statement = YQLWrapper.financialStatement
+				(ticker, type, periodType);
+			} catch (YQLException e) {
+			    /* Counted as a failure of the company */
+			} finally {
+			    company.add(type, periodType, statement);
+			    if (remaining.decrementAndGet() == 0)
+				complete(company, onCompany, done);
+			}
+			return null;
+		    });
+		}
+	    }
+	}
+	return CompletableFuture.allOf(companies.toArray
+				       (new CompletableFuture<?>[0]));
+    }
+
+    /* Hands a company to the caller off the request thread */
+    private static void complete(CompanyStatements company,
+				 Consumer<CompanyStatements> onCompany,
+				 CompletableFuture<Void> done) {
+	CompletableFuture.runAsync(() -> onCompany.accept(company))
+	    .whenComplete((ignored, error) -> {
+		if (error == null)
+		    done.complete(null);
+		else
+		    done.completeExceptionally(error);
+	    });
+    }
+
+    private HostQueue hostQueue(String url) {
+	String host = URI.create(url).getHost();
+	return hosts.computeIfAbsent(host == null ? "" : host,
+				     h -> new HostQueue());
+    }
+
+    /* Holds back requests to one host while maxPerHost are in flight, so
+       queued requests do not tie up executor threads */
+    private final class HostQueue {
+	private final Queue<Callable<Void>> pending =
+	    new ArrayDeque<Callable<Void>>();
+	private int active;
+
+	synchronized void submit(Callable<Void> request) {
+	    pending.add(request);
+	    drain();
+	}
+
+	private synchronized void finished() {
+	    active--;
+	    drain();
+	}
+
+	private void drain() {
+	    while (active < maxPerHost && !pending.isEmpty()) {
+		active++;
+		executor.submit(pending.poll())
+		    .whenComplete((result, error) -> finished());
+	    }
+	}
+    }
+}
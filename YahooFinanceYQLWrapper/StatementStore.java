@@ -0,0 +1,403 @@
+package YahooFinanceYQLWrapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent store of parsed financial statements in a single, compact,
+ * append-only binary file. On open the file is memory-mapped and only the
+ * small header of each record is read to build an index; a statement's
+ * periods, names and values are decoded when it is looked up. A newer
+ * record for the same ticker, statement type and period type supersedes
+ * older ones until the file is compacted. A record left incomplete by a
+ * crash is discarded on open. A store is limited to 2 GB, the most a
+ * single mapping can address.
+ *
+ * <p>A stored statement is considered stale once it is older than the
+ * maximum age for its period type, or once the filing for the period after
+ * its most recent one is due and the statement was stored before then.
+ *
+ * <pre>
+ * file    := magic:int version:int record*
+ * record  := length:int type:byte period:byte storedAt:long
+ *            tickerLength:short ticker:utf8
+ *            periodCount:short lineItemCount:int
+ *            periodEnd:int[periodCount]
+ *            (nameLength:short name:utf8)[lineItemCount]
+ *            value:long[periodCount * lineItemCount]
+ * </pre>
+ *
+ * @author Amandeep Sarow
+ */
+public final class StatementStore implements Closeable {
+    private static final int MAGIC = 0x59514c53;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER = 8;
+
+    /* Days after a period ends before its statement is expected */
+    private static final int QUARTERLY_FILING_LAG = 45;
+    private static final int ANNUAL_FILING_LAG = 90;
+
+    private final Path file;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    /* Key to { offset, storedAt, end } of the latest record */
+    private final Map<String, long[]> index = new HashMap<String, long[]>();
+    private long quarterlyMaxAge = TimeUnit.DAYS.toMillis(30);
+    private long annualMaxAge = TimeUnit.DAYS.toMillis(90);
+
+    private StatementStore(Path file, FileChannel channel) {
+	this.file = file;
+	this.channel = channel;
+    }
+
+    /**
+     * Opens a store, creating the file if it does not exist.
+     *
+     * @param file The store file.
+     * @return     The opened store.
+     * @throws IOException If the file cannot be read or is not a store.
+     */
+    public static StatementStore open(Path file) throws IOException {
+	FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+					       StandardOpenOption.READ,
+					       StandardOpenOption.WRITE);
+	StatementStore store = new StatementStore(file, channel);
+	try {
+	    store.load();
+	} catch (IOException | RuntimeException e) {
+	    channel.close();
+	    throw e;
+	}
+	return store;
+    }
+
+    /**
+     * Sets how long stored statements of a period type stay fresh. By
+     * default quarterly statements are refreshed after 30 days and annual
+     * statements after 90.
+     *
+     * @param periodType The type of statement period.
+     * @param maxAge     The maximum age.
+     * @param unit       The unit of the maximum age.
+     */
+    public synchronized void setMaxAge(PeriodType periodType, long maxAge,
+				       TimeUnit unit) {
+	if (periodType == PeriodType.QUARTERLY)
+	    quarterlyMaxAge = unit.toMillis(maxAge);
+	else
+	    annualMaxAge = unit.toMillis(maxAge);
+    }
+
+    /**
+     * Retrieves a stored statement, whether or not it is stale.
+     *
+     * @param ticker     The stock ticker for the public corporation.
+     * @param type       The statement.
+     * @param periodType The type of statement period.
+     * @return           The statement, or null if none is stored.
+     */
+    public synchronized FinancialStatement get(String ticker, StatementType type,
+					       PeriodType periodType) {
+	long[] entry = index.get(key(ticker, type, periodType));
+	return entry == null ? null : decode(entry);
+    }
+
+    /**
+     * Retrieves a stored statement only if it is not stale.
+     *
+     * @param ticker     The stock ticker for the public corporation.
+     * @param type       The statement.
+     * @param periodType The type of statement period.
+     * @return           The statement, or null if none is stored or the
+     *                   stored one should be fetched again.
+     */
+    public synchronized FinancialStatement getFresh(String ticker,
+						    StatementType type,
+						    PeriodType periodType) {
+	long[] entry = index.get(key(ticker, type, periodType));
+	if (entry == null)
+	    return null;
+
+	FinancialStatement statement = decode(entry);
+	return isStale(statement, entry[1], System.currentTimeMillis()) ?
+	    null : statement;
+    }
+
+    /**
+     * Appends a statement, superseding any stored for the same ticker,
+     * statement type and period type.
+     *
+     * @param statement The statement to store.
+     * @throws IOException If the statement could not be written, or would
+     *                     grow the store past 2 GB.
+     */
+    public synchronized void put(FinancialStatement statement)
+	throws IOException {
+	ByteBuffer record = encode(statement, System.currentTimeMillis());
+	long offset = channel.size();
+	long end = offset + record.remaining();
+	if (end > Integer.MAX_VALUE)
+	    throw new IOException(file + " is full; compact it or use another"
+				  + " store");
+
+	while (record.hasRemaining())
+	    channel.write(record, offset + record.position());
+	index.put(key(statement.ticker(), statement.type(),
+		      statement.periodType()),
+		  new long[] { offset, record.getLong(6), end });
+    }
+
+    /** @return The number of distinct statements stored. */
+    public synchronized int size() {
+	return index.size();
+    }
+
+    /**
+     * Rewrites the file with only the latest record of each statement.
+     *
+     * @throws IOException If the file could not be rewritten.
+     */
+    public synchronized void compact() throws IOException {
+	Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+	Map<String, long[]> compactedIndex = new HashMap<String, long[]>();
+
+	try (FileChannel out = FileChannel.open
+	     (compacted, StandardOpenOption.CREATE,
+	      StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+	    writeFully(out, fileHeader());
+	    ByteBuffer buffer = map(channel.size());
+	    for (Map.Entry<String, long[]> entry : index.entrySet()) {
+		long[] location = entry.getValue();
+		ByteBuffer record = buffer.duplicate();
+		record.limit((int) location[2]).position((int) location[0]);
+		long offset = out.position();
+		compactedIndex.put(entry.getKey(), new long[] {
+			offset, location[1], offset + record.remaining() });
+		writeFully(out, record);
+	    }
+	    out.force(true);
+	}
+
+	channel.close();
+	mapped = null;
+	try {
+	    Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING,
+		       StandardCopyOption.ATOMIC_MOVE);
+	} catch (IOException e) {
+	    /* The original file is untouched, so keep using it */
+	    try {
+		Files.deleteIfExists(compacted);
+		channel = FileChannel.open(file, StandardOpenOption.READ,
+					   StandardOpenOption.WRITE);
+	    } catch (IOException reopen) {
+		e.addSuppressed(reopen);
+	    }
+	    throw e;
+	}
+	channel = FileChannel.open(file, StandardOpenOption.READ,
+				   StandardOpenOption.WRITE);
+	index.clear();
+	index.putAll(compactedIndex);
+    }
+
+    /**
+     * Flushes written statements to the storage device and closes the file.
+     *
+     * @throws IOException If the file could not be flushed or closed.
+     */
+    public synchronized void close() throws IOException {
+	mapped = null;
+	channel.force(true);
+	channel.close();
+    }
+
+    /* Decides whether a statement stored at the given time should be
+       fetched again */
+    boolean isStale(FinancialStatement statement, long storedAt, long now) {
+	boolean quarterly = statement.periodType() == PeriodType.QUARTERLY;
+	if (now - storedAt > (quarterly ? quarterlyMaxAge : annualMaxAge))
+	    return true;
+	if (statement.periodCount() == 0)
+	    return true;
+
+	int latest = statement.periodEnd(0);
+	LocalDate nextFilingDue = LocalDate.of(latest / 10000,
+					       latest / 100 % 100,
+					       latest % 100)
+	    .plusMonths(quarterly ? 3 : 12)
+	    .plusDays(quarterly ? QUARTERLY_FILING_LAG : ANNUAL_FILING_LAG);
+	long due = nextFilingDue.atStartOfDay(ZoneOffset.UTC).toInstant()
+	    .toEpochMilli();
+	return now >= due && storedAt < due;
+    }
+
+    /* Reads the header of every record to rebuild the index */
+    private void load() throws IOException {
+	if (channel.size() == 0) {
+	    writeFully(channel, fileHeader());
+	    return;
+	}
+
+	if (channel.size() > Integer.MAX_VALUE)
+	    throw new IOException(file + " is larger than 2 GB");
+	ByteBuffer buffer = map(channel.size());
+	if (buffer.limit() < FILE_HEADER || buffer.getInt(0) != MAGIC)
+	    throw new IOException(file + " is not a statement store");
+	if (buffer.getInt(4) != VERSION)
+	    throw new IOException(file + " has unsupported version " +
+				  buffer.getInt(4));
+
+	int offset = FILE_HEADER;
+	while (offset + 4 <= buffer.limit()) {
+	    int length = buffer.getInt(offset);
+	    if (length <= 0 || offset + 4 + length > buffer.limit())
+		break;
+
+	    StatementType type = constant(StatementType.values(),
+					  buffer.get(offset + 4), offset);
+	    PeriodType periodType = constant(PeriodType.values(),
+					     buffer.get(offset + 5), offset);
+	    long storedAt = buffer.getLong(offset + 6);
+	    String ticker = readString(buffer, offset + 14);
+	    index.put(key(ticker, type, periodType),
+		      new long[] { offset, storedAt, offset + 4 + length });
+	    offset += 4 + length;
+	}
+
+	/* Drop a record torn by a crash, so the next one is appended where
+	   it can be read back */
+	if (offset < buffer.limit()) {
+	    mapped = null;
+	    channel.truncate(offset);
+	}
+    }
+
+    /* Reads an enum constant stored as its ordinal */
+    private <E> E constant(E[] values, int ordinal, int offset)
+	throws IOException {
+	if (ordinal < 0 || ordinal >= values.length)
+	    throw new IOException(file + " is corrupt: record at " + offset +
+				  " has no " +
+				  values.getClass().getComponentType()
+				  .getSimpleName() + " " + ordinal);
+	return values[ordinal];
+    }
+
+    /* Decodes a record whose type and period type were checked when it
+       was loaded or written */
+    private FinancialStatement decode(long[] entry) {
+	ByteBuffer buffer = map(entry[2]).duplicate();
+	buffer.position((int) entry[0] + 4);
+
+	StatementType type = StatementType.values()[buffer.get()];
+	PeriodType periodType = PeriodType.values()[buffer.get()];
+	buffer.getLong();
+	String ticker = readString(buffer);
+	int periodCount = buffer.getShort();
+	int lineItemCount = buffer.getInt();
+
+	int[] periodEnds = new int[periodCount];
+	buffer.asIntBuffer().get(periodEnds);
+	buffer.position(buffer.position() + 4 * periodCount);
+
+	String[] lineItems = new String[lineItemCount];
+	for (int i = 0; i < lineItemCount; i++)
+	    lineItems[i] = readString(buffer).intern();
+
+	long[] values = new long[periodCount * lineItemCount];
+	buffer.asLongBuffer().get(values);
+	return new FinancialStatement(ticker, type, periodType, periodEnds,
+				      lineItems, values);
+    }
+
+    private static ByteBuffer encode(FinancialStatement statement,
+				     long storedAt) {
+	byte[] ticker = statement.ticker().getBytes(StandardCharsets.UTF_8);
+	String[] lineItemNames = statement.lineItems();
+	byte[][] lineItems = new byte[lineItemNames.length][];
+	int namesLength = 0;
+	for (int i = 0; i < lineItems.length; i++) {
+	    lineItems[i] = lineItemNames[i].getBytes(StandardCharsets.UTF_8);
+	    namesLength += 2 + lineItems[i].length;
+	}
+
+	int[] periodEnds = statement.periodEnds();
+	long[] values = statement.values();
+	int length = 1 + 1 + 8 + 2 + ticker.length + 2 + 4 +
+	    4 * periodEnds.length + namesLength + 8 * values.length;
+
+	ByteBuffer record = ByteBuffer.allocate(4 + length);
+	record.putInt(length)
+	    .put((byte) statement.type().ordinal())
+	    .put((byte) statement.periodType().ordinal())
+	    .putLong(storedAt)
+	    .putShort((short) ticker.length).put(ticker)
+	    .putShort((short) periodEnds.length)
+	    .putInt(lineItems.length);
+	for (int periodEnd : periodEnds)
+	    record.putInt(periodEnd);
+	for (byte[] name : lineItems)
+	    record.putShort((short) name.length).put(name);
+	for (long value : values)
+	    record.putLong(value);
+	record.flip();
+	return record;
+    }
+
+    /* Maps the file up to at least end. The file is only remapped when a
+       record appended since the last mapping is read. */
+    private ByteBuffer map(long end) {
+	if (mapped == null || mapped.limit() < end) {
+	    try {
+		mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+				     channel.size());
+	    } catch (IOException e) {
+		throw new IllegalStateException("Cannot map " + file, e);
+	    }
+	}
+	return mapped;
+    }
+
+    private static ByteBuffer fileHeader() {
+	ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+	header.putInt(MAGIC).putInt(VERSION).flip();
+	return header;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer)
+	throws IOException {
+	while (buffer.hasRemaining())
+	    out.write(buffer);
+    }
+
+    private static String readString(ByteBuffer buffer, int offset) {
+	ByteBuffer view = buffer.duplicate();
+	view.position(offset);
+	return readString(view);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+	byte[] bytes = new byte[buffer.getShort()];
+	buffer.get(bytes);
+	return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String key(String ticker, StatementType type,
+			      PeriodType periodType) {
+	return ticker + '/' + type.code() + '/' + periodType.parameter();
+    }
+}
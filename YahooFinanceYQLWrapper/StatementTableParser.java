@@ -0,0 +1,263 @@
+package YahooFinanceYQLWrapper;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A streaming parser for the table of a Yahoo! Finance statement page. The
+ * page is read in blocks into a reused buffer and handled a line at a time
+ * by a small state machine, so no line of raw HTML is ever copied into a
+ * string.
+ *
+ * <p>Lines before the one holding "Period Ending" are only searched for
+ * it. From there on each line has its tags stripped, its character
+ * entities decoded and its whitespace collapsed in a single pass, and is
+ * passed to the handler as soon as it ends if anything is left. Parsing
+ * stops after the line holding the statement's last line item, leaving
+ * the rest of the page unread so the connection can be closed.
+ *
+ * @author Amandeep Sarow
+ */
+final class StatementTableParser {
+    private static final char[] TABLE_START = "Period Ending".toCharArray();
+    /* The most characters between '&' and ';' of an entity */
+    private static final int MAX_ENTITY = 10;
+
+    private enum State {
+	/* Before the line holding "Period Ending" */
+	SEEKING_TABLE,
+	/* Passing lines to the handler until the last line item */
+	IN_TABLE,
+	/* The table is complete */
+	DONE
+    }
+
+    private final Reader in;
+    private char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private int lineEnd;
+    private boolean eof;
+
+    private char[] text = new char[256];
+    private int textLength;
+    private boolean inTag;
+    private State state = State.SEEKING_TABLE;
+
+    StatementTableParser(Reader in) {
+	this.in = in;
+    }
+
+    /**
+     * Passes each non-empty line of the statement table, with its HTML
+     * removed, to the handler.
+     *
+     * @param lastLineItem The name of the table's last line item, e.g.
+     *                     "Net Tangible Assets".
+     * @param handler      Receives each line as it is parsed.
+     * @return             true if the table was read to its last line
+     *                     item, false if the page has no table.
+     * @throws EOFException If the page ended inside the table.
+     */
+    boolean parse(String lastLineItem, Consumer<String> handler)
+	throws IOException {
+	char[] last = lastLineItem.toCharArray();
+
+	while (state != State.DONE && nextLine()) {
+	    int start = position;
+	    int end = lineEnd;
+	    position = end < limit ? end + 1 : end;
+
+	    /* A tag may continue onto the next line, so even the lines
+	       that are skipped are checked for one left open */
+	    if (state == State.SEEKING_TABLE) {
+		if (indexOf(buffer, start, end, TABLE_START) == -1) {
+		    inTag = endsInTag(start, end);
+		    continue;
+		}
+		state = State.IN_TABLE;
+	    }
+
+	    strip(start, end);
+	    if (textLength == 0)
+		continue;
+	    handler.accept(new String(text, 0, textLength));
+	    if (indexOf(text, 0, textLength, last) != -1)
+		state = State.DONE;
+	}
+
+	if (state == State.IN_TABLE)
+	    throw new EOFException("The page ended inside the statement table");
+	return state == State.DONE;
+    }
+
+    /* Makes the next line available in the buffer from position up to
+       lineEnd, which holds its '\n' unless the page ended first. Returns
+       false once the page is exhausted. */
+    private boolean nextLine() throws IOException {
+	int scanned = position;
+	while (true) {
+	    for (int i = scanned; i < limit; i++) {
+		if (buffer[i] == '\n') {
+		    lineEnd = i;
+		    return true;
+		}
+	    }
+	    if (eof) {
+		lineEnd = limit;
+		return position < limit;
+	    }
+
+	    /* Keep the unread part of the line, growing the buffer if the
+	       line fills it */
+	    scanned = limit - position;
+	    System.arraycopy(buffer, position, buffer, 0, scanned);
+	    limit = scanned;
+	    position = 0;
+	    if (limit == buffer.length)
+		buffer = Arrays.copyOf(buffer, buffer.length * 2);
+	    int n = in.read(buffer, limit, buffer.length - limit);
+	    if (n == -1)
+		eof = true;
+	    else
+		limit += n;
+	}
+    }
+
+    /* Whether a tag is still open at the end of a line that is skipped */
+    private boolean endsInTag(int start, int end) {
+	for (int i = end - 1; i >= start; i--) {
+	    if (buffer[i] == '>')
+		return false;
+	    if (buffer[i] == '<')
+		return true;
+	}
+	return inTag;
+    }
+
+    /* Strips a line into the text buffer, dropping tags, decoding
+       entities and collapsing runs of whitespace into single spaces */
+    private void strip(int start, int end) {
+	if (text.length < end - start)
+	    text = new char[Math.max(end - start, text.length * 2)];
+	textLength = 0;
+	boolean pendingSpace = false;
+
+	for (int i = start; i < end; i++) {
+	    int c = buffer[i];
+	    if (inTag) {
+		if (c == '>')
+		    inTag = false;
+		continue;
+	    }
+	    if (c == '<') {
+		inTag = true;
+		pendingSpace = true;
+		continue;
+	    }
+
+	    if (c == '&') {
+		int semicolon = entityEnd(i + 1, end);
+		int decoded = semicolon == -1 ? -1 :
+		    decodeEntity(i + 1, semicolon);
+		if (decoded != -1) {
+		    c = decoded;
+		    i = semicolon;
+		}
+	    }
+	    if (Character.isWhitespace(c) || c == '\u00a0') {
+		pendingSpace = true;
+		continue;
+	    }
+	    if (pendingSpace && textLength > 0)
+		text[textLength++] = ' ';
+	    pendingSpace = false;
+	    if (Character.isSupplementaryCodePoint(c)) {
+		if (text.length < textLength + 2 + end - i)
+		    text = Arrays.copyOf(text, text.length * 2 + end - i);
+		textLength += Character.toChars(c, text, textLength);
+	    } else {
+		text[textLength++] = (char) c;
+	    }
+	}
+    }
+
+    /* Finds the ';' ending an entity that starts at the given index */
+    private int entityEnd(int start, int end) {
+	int max = Math.min(end, start + MAX_ENTITY);
+	for (int i = start; i < max; i++) {
+	    if (buffer[i] == ';')
+		return i;
+	}
+	return -1;
+    }
+
+    /* Decodes the entity between '&' and ';', returning -1 when it is not
+       recognised */
+    private int decodeEntity(int start, int end) {
+	if (start == end)
+	    return -1;
+	if (buffer[start] == '#') {
+	    boolean hex = start + 1 < end &&
+		(buffer[start + 1] == 'x' || buffer[start + 1] == 'X');
+	    int radix = hex ? 16 : 10;
+	    int i = hex ? start + 2 : start + 1;
+	    if (i == end)
+		return -1;
+	    int value = 0;
+	    for (; i < end; i++) {
+		int digit = Character.digit(buffer[i], radix);
+		if (digit == -1)
+		    return -1;
+		value = value * radix + digit;
+		if (value > Character.MAX_CODE_POINT)
+		    return -1;
+	    }
+	    return value;
+	}
+
+	if (matches("nbsp", start, end))
+	    return ' ';
+	if (matches("amp", start, end))
+	    return '&';
+	if (matches("lt", start, end))
+	    return '<';
+	if (matches("gt", start, end))
+	    return '>';
+	if (matches("quot", start, end))
+	    return '"';
+	if (matches("apos", start, end))
+	    return '\'';
+	return -1;
+    }
+
+    private boolean matches(String name, int start, int end) {
+	if (end - start != name.length())
+	    return false;
+	for (int i = 0; i < name.length(); i++) {
+	    if (buffer[start + i] != name.charAt(i))
+		return false;
+	}
+	return true;
+    }
+
+    /* Finds a run of characters within part of an array */
+    private static int indexOf(char[] chars, int start, int end,
+			       char[] target) {
+	char first = target[0];
+	int max = end - target.length;
+	for (int i = start; i <= max; i++) {
+	    if (chars[i] != first)
+		continue;
+	    int j = 1;
+	    while (j < target.length && chars[i + j] == target[j])
+		j++;
+	    if (j == target.length)
+		return i;
+	}
+	return -1;
+    }
+}
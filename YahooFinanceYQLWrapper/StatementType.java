@@ -0,0 +1,54 @@
+package YahooFinanceYQLWrapper;
+
+/**
+ * The financial statements published for a public corporation.
+ *
+ * @author Amandeep Sarow
+ */
+public enum StatementType {
+    INCOME_STATEMENT ("is", "Income Statement",
+		      "Net Income Applicable To Common Shares"),
+    BALANCE_SHEET    ("bs", "Balance Sheet", "Net Tangible Assets"),
+    CASH_FLOW        ("cf", "Statement of Cash Flows",
+		      "Change In Cash and Cash Equivalents");
+
+    private final String code;
+    private final String title;
+    private final String lastLineItem;
+
+    private StatementType(String code, String title, String lastLineItem) {
+	this.code = code;
+	this.title = title;
+	this.lastLineItem = lastLineItem;
+    }
+
+    /** @return The page code used in the statement URL, e.g. "is". */
+    public String code() {
+	return code;
+    }
+
+    /** @return The statement's title, e.g. "Income Statement". */
+    public String title() {
+	return title;
+    }
+
+    /** @return The name of the final line item of the statement table. */
+    public String lastLineItem() {
+	return lastLineItem;
+    }
+
+    /**
+     * Finds the statement type for a page code.
+     *
+     * @param code The page code, e.g. "bs".
+     * @return     The matching statement type.
+     * @throws IllegalArgumentException If the code is not recognised.
+     */
+    public static StatementType forCode(String code) {
+	for (StatementType type : values()) {
+	    if (type.code.equals(code))
+		return type;
+	}
+	throw new IllegalArgumentException("Unknown statement code: " + code);
+    }
+}
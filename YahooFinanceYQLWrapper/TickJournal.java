@@ -0,0 +1,289 @@
+package YahooFinanceYQLWrapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records quote snapshots as timestamped, fixed-width binary records in a
+ * directory of rolling segment files, for later replay with
+ * {@link TickReplay}. A journal is a {@link QuoteListener}, so it can be
+ * added to a {@link QuotePoller} to record everything the poller fetches.
+ *
+ * <p>Every record of a segment has the same size, so a reader can find a
+ * point in time by binary search and walk records with no parsing. Each
+ * segment names its fields in its header, so segments written before a
+ * field was added can still be read. Each record also holds which of
+ * those fields its snapshot was requested with, so a replayed snapshot
+ * reports the same {@link QuoteSnapshot#fields()} as the original. Text
+ * values longer than their slot are truncated.
+ *
+ * <p>A snapshot that cannot be written is counted by
+ * {@link #failureCount()} and in {@link Metrics} under
+ * {@link Metrics.ErrorCause#STORAGE}.
+ *
+ * <pre>
+ * segment := magic:int version:int headerLength:int recordSize:int
+ *            fieldCount:short
+ *            (tagLength:short tag:utf8 width:short)[fieldCount]
+ *            record*
+ * record  := timestamp:long requested:long symbol:text[16] field*
+ * field   := value:double            for numeric fields
+ *          | length:byte utf8 pad    for text and amount fields, length 255
+ *                                    if absent
+ *
+ * requested has bit i set if the i-th field of the header was requested.
+ * Version 1 segments have no requested mask.
+ * </pre>
+ *
+ * @author Amandeep Sarow
+ */
+public final class TickJournal implements QuoteListener, Closeable {
+    static final int MAGIC = 0x59514c54;
+    static final int VERSION = 2;
+    static final int TIMESTAMP_WIDTH = 8;
+    static final int REQUESTED_WIDTH = 8;
+    static final int SYMBOL_WIDTH = 16;
+    static final int NUMBER_WIDTH = 8;
+    static final int TEXT_WIDTH = 24;
+    static final int NAME_WIDTH = 64;
+    static final int ABSENT = 0xFF;
+    static final String SEGMENT_PREFIX = "ticks-";
+    static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final QuoteField[] FIELDS = QuoteField.values();
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final int recordSize;
+    private final ByteBuffer header;
+    private final ByteBuffer buffer;
+    private FileChannel segment;
+    private long segmentSize;
+    private int nextSequence;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private long recordCount;
+    private final LongAdder failures = new LongAdder();
+
+    private TickJournal(Path directory, long segmentBytes, int nextSequence) {
+	this.directory = directory;
+	this.nextSequence = nextSequence;
+
+	int size = TIMESTAMP_WIDTH + REQUESTED_WIDTH + SYMBOL_WIDTH;
+	int headerLength = 4 + 4 + 4 + 4 + 2;
+	for (QuoteField field : FIELDS) {
+	    size += width(field);
+	    headerLength += 2 + tag(field).length + 2;
+	}
+	recordSize = size;
+	/* Replay addresses a mapped segment with int offsets */
+	this.segmentBytes = Math.min(Math.max(segmentBytes,
+					      headerLength + size),
+				     Integer.MAX_VALUE);
+
+	header = ByteBuffer.allocate(headerLength);
+	header.putInt(MAGIC).putInt(VERSION).putInt(headerLength)
+	    .putInt(recordSize).putShort((short) FIELDS.length);
+	for (QuoteField field : FIELDS) {
+	    byte[] tag = tag(field);
+	    header.putShort((short) tag.length).put(tag)
+		.putShort((short) width(field));
+	}
+	header.flip();
+
+	buffer = ByteBuffer.allocateDirect(BUFFER_SIZE / recordSize
+					   * recordSize);
+    }
+
+    /**
+     * Opens a journal in a directory, creating the directory if needed.
+     * Recording always begins a new segment after any already present.
+     *
+     * @param directory    The directory holding the segment files.
+     * @param segmentBytes The size at which a segment is closed and the
+     *                     next one started, at most 2 GB.
+     * @return             The opened journal.
+     * @throws IOException If the directory cannot be created or listed.
+     */
+    public static TickJournal open(Path directory, long segmentBytes)
+	throws IOException {
+	Files.createDirectories(directory);
+	List<Path> existing = segments(directory);
+	int next = existing.isEmpty() ? 0 :
+	    sequenceOf(existing.get(existing.size() - 1)) + 1;
+	return new TickJournal(directory, segmentBytes, next);
+    }
+
+    /**
+     * Records a snapshot, timestamped with the current time. If the clock
+     * has been set back since the last record, the snapshot is given the
+     * last record's time instead. A listener cannot throw checked
+     * exceptions, so a snapshot that cannot be written is counted by
+     * {@link #failureCount()} and in {@link Metrics} instead.
+     *
+     * @param snapshot The snapshot to record.
+     */
+    public synchronized void onQuote(QuoteSnapshot snapshot) {
+	try {
+	    append(snapshot, Math.max(System.currentTimeMillis(),
+				      lastTimestamp));
+	} catch (IOException e) {
+	    failures.increment();
+	    Metrics.error(Metrics.ErrorCause.STORAGE);
+	}
+    }
+
+    /**
+     * Records a snapshot with a given timestamp. Timestamps must not go
+     * backwards, so that replay can search by time.
+     *
+     * @param snapshot  The snapshot to record.
+     * @param timestamp When the snapshot was taken, in milliseconds since
+     *                  the epoch.
+     * @throws IOException If the record cannot be written.
+     */
+    public synchronized void append(QuoteSnapshot snapshot, long timestamp)
+	throws IOException {
+	if (timestamp < lastTimestamp)
+	    throw new IllegalArgumentException("Timestamp " + timestamp +
+					       " precedes " + lastTimestamp);
+	if (segment == null || segmentSize + recordSize > segmentBytes)
+	    roll();
+
+	if (buffer.remaining() < recordSize)
+	    drain();
+	/* The header lists the fields in ordinal order, so the snapshot's
+	   mask is already indexed by header position */
+	buffer.putLong(timestamp);
+	buffer.putLong(snapshot.fieldMask());
+	putText(snapshot.symbol(), SYMBOL_WIDTH);
+	for (QuoteField field : FIELDS) {
+	    if (field.hasText())
+		putText(snapshot.getText(field), width(field));
+	    else
+		buffer.putDouble(snapshot.getDouble(field));
+	}
+	segmentSize += recordSize;
+	lastTimestamp = timestamp;
+	recordCount++;
+    }
+
+    /** @return The number of snapshots recorded since the journal opened. */
+    public synchronized long recordCount() {
+	return recordCount;
+    }
+
+    /**
+     * Retrieves how many snapshots passed to {@link #onQuote} could not be
+     * written and were lost.
+     *
+     * @return The number of failed writes since the journal opened.
+     */
+    public long failureCount() {
+	return failures.sum();
+    }
+
+    /**
+     * Writes buffered records to the current segment file.
+     *
+     * @throws IOException If the records cannot be written.
+     */
+    public synchronized void flush() throws IOException {
+	if (segment != null)
+	    drain();
+    }
+
+    /**
+     * Flushes buffered records and closes the current segment.
+     *
+     * @throws IOException If the records cannot be written.
+     */
+    public synchronized void close() throws IOException {
+	if (segment != null) {
+	    drain();
+	    segment.close();
+	    segment = null;
+	}
+    }
+
+    /* Lists the segment files of a directory in the order written */
+    static List<Path> segments(Path directory) throws IOException {
+	List<Path> segments = new ArrayList<Path>();
+	if (!Files.isDirectory(directory))
+	    return segments;
+	try (DirectoryStream<Path> stream =
+	     Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*"
+				      + SEGMENT_SUFFIX)) {
+	    for (Path path : stream)
+		segments.add(path);
+	}
+	Collections.sort(segments);
+	return segments;
+    }
+
+    static int width(QuoteField field) {
+	if (!field.hasText())
+	    return NUMBER_WIDTH;
+	return field == QuoteField.NAME ? NAME_WIDTH : TEXT_WIDTH;
+    }
+
+    private static byte[] tag(QuoteField field) {
+	return field.tagName().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int sequenceOf(Path segment) {
+	String name = segment.getFileName().toString();
+	return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+					       name.length()
+					       - SEGMENT_SUFFIX.length()));
+    }
+
+    /* Closes the current segment and starts the next */
+    private void roll() throws IOException {
+	close();
+	Path path = directory.resolve(String.format("%s%08d%s",
+						    SEGMENT_PREFIX,
+						    nextSequence++,
+						    SEGMENT_SUFFIX));
+	segment = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+				   StandardOpenOption.WRITE);
+	ByteBuffer segmentHeader = header.duplicate();
+	while (segmentHeader.hasRemaining())
+	    segment.write(segmentHeader);
+	segmentSize = header.limit();
+    }
+
+    private void drain() throws IOException {
+	buffer.flip();
+	while (buffer.hasRemaining())
+	    segment.write(buffer);
+	buffer.clear();
+    }
+
+    /* Writes text into a fixed-width slot, truncating it at a character
+       boundary if it does not fit */
+    private void putText(String value, int width) {
+	int start = buffer.position();
+	if (value == null) {
+	    buffer.put((byte) ABSENT);
+	} else {
+	    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+	    int length = Math.min(bytes.length, width - 1);
+	    while (length < bytes.length && (bytes[length] & 0xC0) == 0x80)
+		length--;
+	    buffer.put((byte) length).put(bytes, 0, length);
+	}
+	buffer.position(start + width);
+    }
+}
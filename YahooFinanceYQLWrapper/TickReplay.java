@@ -0,0 +1,206 @@
+package YahooFinanceYQLWrapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Replays the snapshots recorded by a {@link TickJournal}. Each segment
+ * that overlaps the requested time range is memory-mapped, the first
+ * record in range is found by binary search and the records are then read
+ * sequentially and delivered to a {@link QuoteListener} in the order they
+ * were recorded, just as a poller delivers live quotes.
+ *
+ * @author Amandeep Sarow
+ */
+public final class TickReplay {
+    private static final int FIELD_COUNT = QuoteField.values().length;
+    private static final Charset UTF_8 = StandardCharsets.UTF_8;
+
+    private final Path directory;
+    private long timestamp;
+
+    /**
+     * Creates a replay of the journal in a directory.
+     *
+     * @param directory The directory holding the segment files.
+     */
+    public TickReplay(Path directory) {
+	this.directory = directory;
+    }
+
+    /**
+     * Retrieves the recorded time of the snapshot being delivered, so a
+     * listener can tell when a replayed quote was taken.
+     *
+     * @return The time in milliseconds since the epoch.
+     */
+    public long timestamp() {
+	return timestamp;
+    }
+
+    /**
+     * Delivers every snapshot recorded in a time range, oldest first.
+     *
+     * @param from     The start of the range in milliseconds since the
+     *                 epoch, inclusive.
+     * @param to       The end of the range, exclusive.
+     * @param listener The listener to deliver the snapshots to.
+     * @return         The number of snapshots delivered.
+     * @throws IOException If a segment cannot be read or is not a journal
+     *                     segment.
+     */
+    public long replay(long from, long to, QuoteListener listener)
+	throws IOException {
+	List<Path> segments = TickJournal.segments(directory);
+	long delivered = 0;
+
+	for (int s = 0; s < segments.size(); s++) {
+	    Segment segment = Segment.map(segments.get(s));
+	    if (segment.count == 0 || segment.timestamp(0) >= to)
+		continue;
+	    if (segment.timestamp(segment.count - 1) < from)
+		continue;
+
+	    for (int r = segment.firstAtOrAfter(from); r < segment.count;
+		 r++) {
+		long recorded = segment.timestamp(r);
+		if (recorded >= to)
+		    break;
+		timestamp = recorded;
+		listener.onQuote(segment.decode(r));
+		delivered++;
+	    }
+	}
+	return delivered;
+    }
+
+    /* A mapped segment and the position of each of its fields within a
+       record */
+    private static final class Segment {
+	final ByteBuffer buffer;
+	final int version;
+	final int headerLength;
+	final int recordSize;
+	final int symbolOffset;
+	final int count;
+	final QuoteField[] fields;
+	final int[] offsets;
+	final int[] widths;
+	private final byte[] slot = new byte[TickJournal.ABSENT];
+
+	private Segment(ByteBuffer buffer, Path path) throws IOException {
+	    this.buffer = buffer;
+	    if (buffer.limit() < 18 || buffer.getInt(0) != TickJournal.MAGIC)
+		throw new IOException(path + " is not a tick journal segment");
+	    version = buffer.getInt(4);
+	    if (version < 1 || version > TickJournal.VERSION)
+		throw new IOException(path + " has unsupported version " +
+				      version);
+
+	    headerLength = buffer.getInt(8);
+	    recordSize = buffer.getInt(12);
+	    int fieldCount = buffer.getShort(16);
+	    fields = new QuoteField[fieldCount];
+	    offsets = new int[fieldCount];
+	    widths = new int[fieldCount];
+
+	    ByteBuffer header = buffer.duplicate();
+	    header.position(18);
+	    symbolOffset = TickJournal.TIMESTAMP_WIDTH +
+		(version == 1 ? 0 : TickJournal.REQUESTED_WIDTH);
+	    int offset = symbolOffset + TickJournal.SYMBOL_WIDTH;
+	    for (int f = 0; f < fieldCount; f++) {
+		byte[] tag = new byte[header.getShort()];
+		header.get(tag);
+		fields[f] = QuoteField.forTagName(new String(tag, UTF_8));
+		widths[f] = header.getShort();
+		offsets[f] = offset;
+		offset += widths[f];
+	    }
+
+	    /* A record cut short by a crash is ignored */
+	    count = (buffer.limit() - headerLength) / recordSize;
+	}
+
+	static Segment map(Path path) throws IOException {
+	    try (FileChannel channel =
+		 FileChannel.open(path, StandardOpenOption.READ)) {
+		return new Segment(channel.map(FileChannel.MapMode.READ_ONLY,
+					       0, channel.size()), path);
+	    }
+	}
+
+	long timestamp(int record) {
+	    return buffer.getLong(headerLength + record * recordSize);
+	}
+
+	/* Binary searches for the first record at or after a time */
+	int firstAtOrAfter(long time) {
+	    int low = 0;
+	    int high = count;
+	    while (low < high) {
+		int mid = (low + high) >>> 1;
+		if (timestamp(mid) < time)
+		    low = mid + 1;
+		else
+		    high = mid;
+	    }
+	    return low;
+	}
+
+	QuoteSnapshot decode(int record) {
+	    int base = headerLength + record * recordSize;
+	    double[] numbers = new double[FIELD_COUNT];
+	    String[] text = new String[FIELD_COUNT];
+	    Arrays.fill(numbers, Double.NaN);
+	    /* Version 1 records do not say which fields were requested, so
+	       every field in the header is taken to have been */
+	    long requested = version == 1 ? -1L :
+		buffer.getLong(base + TickJournal.TIMESTAMP_WIDTH);
+	    long mask = 0;
+
+	    for (int f = 0; f < fields.length; f++) {
+		QuoteField field = fields[f];
+		if (field == null || (requested & (1L << f)) == 0)
+		    continue;
+		mask |= 1L << field.ordinal();
+		int at = base + offsets[f];
+		if (!field.hasText()) {
+		    numbers[field.ordinal()] = buffer.getDouble(at);
+		    continue;
+		}
+
+		/* Amounts are recorded as text and decoded again */
+		int length = readSlot(at);
+		if (length < 0)
+		    continue;
+		text[field.ordinal()] = new String(slot, 0, length, UTF_8);
+		if (field.hasNumber())
+		    numbers[field.ordinal()] =
+			NumberDecoder.decode(slot, 0, length);
+	    }
+
+	    int length = readSlot(base + symbolOffset);
+	    String symbol = new String(slot, 0, Math.max(length, 0), UTF_8);
+	    return new QuoteSnapshot(symbol, numbers, text, mask);
+	}
+
+	/* Copies a text slot into the slot buffer and returns its length,
+	   or -1 if the value was absent */
+	private int readSlot(int at) {
+	    int length = buffer.get(at) & 0xFF;
+	    if (length == TickJournal.ABSENT)
+		return -1;
+	    for (int i = 0; i < length; i++)
+		slot[i] = buffer.get(at + 1 + i);
+	    return length;
+	}
+    }
+}
@@ -0,0 +1,44 @@
+package YahooFinanceYQLWrapper;
+
+/**
+ * A token bucket that refills continuously at a fixed rate up to a burst
+ * capacity. Each token permits one request.
+ *
+ * @author Amandeep Sarow
+ */
+final class TokenBucket {
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(double tokensPerSecond, double capacity) {
+	if (tokensPerSecond <= 0 || capacity < 1)
+	    throw new IllegalArgumentException("Invalid token bucket rate");
+	this.tokensPerNano = tokensPerSecond / 1e9;
+	this.capacity = capacity;
+	this.tokens = capacity;
+	this.refilledAt = System.nanoTime();
+    }
+
+    /* Takes a token if one is available */
+    synchronized boolean tryAcquire() {
+	refill();
+	if (tokens < 1)
+	    return false;
+	tokens -= 1;
+	return true;
+    }
+
+    /* The time until the next token is available, 0 if one already is */
+    synchronized long nanosUntilAvailable() {
+	refill();
+	return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    private void refill() {
+	long now = System.nanoTime();
+	tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+	refilledAt = now;
+    }
+}
@@ -0,0 +1,51 @@
+package YahooFinanceYQLWrapper;
+
+/**
+ * Thrown when a quote or financial statement could not be retrieved, in
+ * place of a null or placeholder value that could be mistaken for real
+ * data. The {@link #errorCause()} tells a missing ticker apart from an
+ * upstream failure that outlasted every retry.
+ *
+ * @author Amandeep Sarow
+ */
+public class YQLException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final Metrics.ErrorCause errorCause;
+    private final String url;
+    private final int attempts;
+
+    /**
+     * Creates the exception for a failed retrieval.
+     *
+     * @param errorCause Why the last attempt failed.
+     * @param url        The URL that was requested.
+     * @param attempts   The number of requests sent, including retries and
+     *                   hedged duplicates.
+     * @param cause      The failure of the last attempt, or null.
+     */
+    public YQLException(Metrics.ErrorCause errorCause, String url,
+			int attempts, Throwable cause) {
+	super(errorCause + " after " + attempts +
+	      (attempts == 1 ? " attempt" : " attempts") + " fetching " + url,
+	      cause);
+	this.errorCause = errorCause;
+	this.url = url;
+	this.attempts = attempts;
+    }
+
+    /** @return Why the last attempt failed. */
+    public Metrics.ErrorCause errorCause() {
+	return errorCause;
+    }
+
+    /** @return The URL that was requested. */
+    public String url() {
+	return url;
+    }
+
+    /** @return The number of requests sent. */
+    public int attempts() {
+	return attempts;
+    }
+}
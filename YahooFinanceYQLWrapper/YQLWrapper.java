@@ -1,63 +1,100 @@
 package YahooFinanceYQLWrapper;
 
-import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.io.UnsupportedEncodingException;
 
+import java.net.URLEncoder;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * A wrapper for the Yahoo! Query Language Finance database.
+ *
+ * <p>Every request is bounded, retried and optionally hedged as set by
+ * {@link #setRequestPolicy(RequestPolicy)}. A quote or statement that
+ * cannot be retrieved raises a {@link YQLException} rather than returning
+ * a value that could be mistaken for real data.
  * 
  * @author Amandeep Sarow
  */
 public class YQLWrapper {
-    private static final String YQL_BEGIN = 
-	"https://query.yahooapis.com/v1/public/" +
-        "yql?q=select%20*%20from%20yahoo.finance.quotes%20where%20" +	
+    private static final String DEFAULT_QUOTE_BASE_URL =
+	"https://query.yahooapis.com/v1/public/yql";
+    private static final String DEFAULT_STATEMENT_BASE_URL =
+	"https://finance.yahoo.com/q/";
+    private static final String YQL_BEGIN = "?q=select%20";
+    private static final String YQL_FROM =
+	"%20from%20yahoo.finance.quotes%20where%20" +
 	"symbol%20in%20(%22";
     private static final String YQL_END = 
-	"%22)&diagnostics=true&env=store%3A%" +
+	"%22)&env=store%3A%" +
         "2F%2Fdatatables.org%2Falltableswithkeys";
-    private static final String YQL_STATEMENT_BEGIN =
-	"https://finance.yahoo.com/q/";
+    private static final String YQL_DIAGNOSTICS = "&diagnostics=true";
+    private static final String YQL_SYMBOL_SEPARATOR = "%22%2C%22";
+    private static final String YQL_COLUMN_SEPARATOR = "%2C";
+    private static final int MAX_QUERY_URL_LENGTH = 2000;
+    private static final Set<QuoteField> ALL_QUOTE_FIELDS =
+	Collections.unmodifiableSet(EnumSet.allOf(QuoteField.class));
     private static final String YQL_STATEMENT_MID =
 	"?s=";
 
+    private static volatile QuoteCache quoteCache =
+	new QuoteCache(10000, 5, 3600, TimeUnit.SECONDS);
+
+    private static volatile HttpTransport transport = new JdkHttpTransport();
+
+    private static volatile String quoteBaseURL = DEFAULT_QUOTE_BASE_URL;
+    private static volatile String statementBaseURL =
+	DEFAULT_STATEMENT_BASE_URL;
+
+    private static volatile boolean diagnostics = false;
+
+    private static volatile StatementStore statementStore;
+
+    private static final SingleFlight<String, QuoteSnapshot> quoteFlights =
+	new SingleFlight<String, QuoteSnapshot>();
+    private static final SingleFlight<String, FinancialStatement>
+	statementFlights = new SingleFlight<String, FinancialStatement>();
+    private static final SingleFlight<String, ArrayList<ArrayList<String>>>
+	statementPageFlights =
+	new SingleFlight<String, ArrayList<ArrayList<String>>>();
+
+    private static volatile RequestExecutor requestExecutor =
+	new RequestExecutor(64);
+
+    /* Shared by every financialStatements call, so the per-host limit
+       holds across callers */
+    private static volatile StatementFetcher statementFetcher =
+	new StatementFetcher(requestExecutor, 8);
+
+    static {
+	RequestRunner.setConcurrency(requestExecutor.maxInFlight());
+    }
+
+    private static volatile RequestPolicy requestPolicy =
+	RequestPolicy.DEFAULT;
+    private static final RequestRunner quoteRequests = new RequestRunner();
+    private static final RequestRunner statementRequests =
+	new RequestRunner();
+
     private static final String 
-	FIFTY_DAY_MOVING_AVG      = "<FiftydayMovingAverage>",
-	TWOHUNDRED_DAY_MOVING_AVG = "<TwoHundreddayMovingAverage>",
-	ASK                       = "<Ask>",
-	AVG_DAILY_VOLUME          = "<AverageDailyVolume>",	
-	BID                       = "<Bid>",
-	BOOK_VALUE                = "<BookValue>",
-	CHANGE                    = "<Change>", 
-	CHANGE_PERCENT            = "<PercentChange>",
-	CHANGE_YEAR_LOW           = "<ChangeFromYearLow>",
-	CLOSE                     = "<PreviousClose>",
-	DAYS_HIGH                 = "<DaysHigh>",
-	DAYS_LOW                  = "<DaysLow>",
-	DIVIDEND                  = "<DividendShare>",
-	EARNINGS_SHARE            = "<EarningsShare>",
-	EBITDA                    = "<EBITDA>",
-	EPS_ESTIMATE_CY           = "<EPSEstimateCurrentYear>",
-	EPS_ESTIMATE_NQ           = "<EPSEstimateNextQuarter>",
-	EPS_ESTIMATE_NY           = "<EPSEstimateNextYear>",
-	LAST_TRADE_PRICE          = "<LastTradePriceOnly>",
-	MARKETCAP                 = "<MarketCapitalization>",
-	NAME                      = "<Name>",
-	OPEN                      = "<Open>",
-	PE_RATIO                  = "<PERatio>",
-	PEG_RATIO                 = "<PEGRatio>",
-	SHORT_RATIO               = "<ShortRatio>",
-	YEAR_HIGH                 = "<YearHigh>",
-	YEAR_LOW                  = "<YearLow>",
 	BS                        = "bs",
 	IS                        = "is",
 	CF                        = "cf";
@@ -69,7 +106,8 @@ public class YQLWrapper {
      * @return       The last known asking price for a given stock.
      */
     public static double askPrice(String ticker) {
-        return Double.parseDouble(findDataInXML(ASK, ticker));
+        return cachedQuote(ticker, QuoteField.ASK)
+	    .getDouble(QuoteField.ASK);
     }
     
     /** 
@@ -78,9 +116,14 @@ public class YQLWrapper {
      * @param ticker The stock ticker for the public corporation.
      * @return       The average amount of stock traded in the most previous 
      *               day.
+     * @throws NumberFormatException If the volume is not available.
+     * @throws ArithmeticException   If the volume does not fit in an int;
+     *                               {@link QuoteSnapshot#averageDailyVolume()}
+     *                               returns it as a long.
      */
     public static int averageDailyVolume(String ticker) {
-	return Integer.parseInt(findDataInXML(AVG_DAILY_VOLUME, ticker));
+	return Math.toIntExact(cachedQuote(ticker, QuoteField.AVG_DAILY_VOLUME)
+			       .getLong(QuoteField.AVG_DAILY_VOLUME));
     }
 
     /** 
@@ -90,11 +133,13 @@ public class YQLWrapper {
      * @return       The most recent "best" bid price.
      */
     public static double bidPrice(String ticker) {
-	return Double.parseDouble(findDataInXML(BID, ticker));
+	return cachedQuote(ticker, QuoteField.BID)
+	    .getDouble(QuoteField.BID);
     }
     
     public static double bookValue(String ticker) {
-	return Double.parseDouble(findDataInXML(BOOK_VALUE, ticker));
+	return cachedQuote(ticker, QuoteField.BOOK_VALUE)
+	    .getDouble(QuoteField.BOOK_VALUE);
     }
 
     /** 
@@ -106,7 +151,34 @@ public class YQLWrapper {
      * @return       The change in stock price over a day.
      */
     public static String changeInPrice(String ticker) {
-	return findDataInXML(CHANGE, ticker);
+	return cachedQuote(ticker, QuoteField.CHANGE)
+	    .getText(QuoteField.CHANGE);
+    }
+
+    /** 
+     * Retrieves the dollar amount change in the price of a stock over the
+     * day as a signed number.
+     *
+     * @param ticker The stock ticker for the public corporation.
+     * @return       The change in stock price over a day, or NaN if it is
+     *               not available.
+     */
+    public static double changeInPriceValue(String ticker) {
+	return cachedQuote(ticker, QuoteField.CHANGE)
+	    .getDouble(QuoteField.CHANGE);
+    }
+
+    /** 
+     * Retrieves the percentage change in the price of a stock over the day
+     * as a signed number, e.g. -1.35 for "-1.35%".
+     *
+     * @param ticker The stock ticker for the public corporation.
+     * @return       The percentage change over a day, or NaN if it is not
+     *               available.
+     */
+    public static double percentChangeValue(String ticker) {
+	return cachedQuote(ticker, QuoteField.CHANGE_PERCENT)
+	    .getDouble(QuoteField.CHANGE_PERCENT);
     }
     
     /** 
@@ -118,7 +190,21 @@ public class YQLWrapper {
      * @return       The change in stock price over a single year.
      */
     public static String changeFromYearLow(String ticker) {
-	return findDataInXML(CHANGE_YEAR_LOW, ticker);
+	return cachedQuote(ticker, QuoteField.CHANGE_YEAR_LOW)
+	    .getText(QuoteField.CHANGE_YEAR_LOW);
+    }
+
+    /** 
+     * Retrieves the dollar amount change in the price of a stock from its
+     * yearly low as a signed number.
+     *
+     * @param ticker The stock ticker for the public corporation.
+     * @return       The change from the yearly low, or NaN if it is not
+     *               available.
+     */
+    public static double changeFromYearLowValue(String ticker) {
+	return cachedQuote(ticker, QuoteField.CHANGE_YEAR_LOW)
+	    .getDouble(QuoteField.CHANGE_YEAR_LOW);
     }
 
     /** 
@@ -128,7 +214,8 @@ public class YQLWrapper {
      * @return       The price of the last stock traded.
      */
     public static double close(String ticker) {
-	return Double.parseDouble(findDataInXML(CLOSE, ticker));
+	return cachedQuote(ticker, QuoteField.CLOSE)
+	    .getDouble(QuoteField.CLOSE);
     }
 
     /** 
@@ -138,7 +225,8 @@ public class YQLWrapper {
      * @return       The highest priced stock trade in a given day.
      */
     public static double dayHigh(String ticker) {
-	return Double.parseDouble(findDataInXML(DAYS_HIGH, ticker));
+	return cachedQuote(ticker, QuoteField.DAYS_HIGH)
+	    .getDouble(QuoteField.DAYS_HIGH);
     }
 
     /** 
@@ -148,7 +236,8 @@ public class YQLWrapper {
      * @return       The lowest priced stock trade in a given day.
      */
     public static double dayLow(String ticker) {
-	return Double.parseDouble(findDataInXML(DAYS_LOW, ticker));
+	return cachedQuote(ticker, QuoteField.DAYS_LOW)
+	    .getDouble(QuoteField.DAYS_LOW);
     }
     
     /** 
@@ -158,7 +247,8 @@ public class YQLWrapper {
      * @return       The most recent dividend payout to shareholders.
      */
     public static double dividend(String ticker) {
-	return Double.parseDouble(findDataInXML(DIVIDEND, ticker));
+	return cachedQuote(ticker, QuoteField.DIVIDEND)
+	    .getDouble(QuoteField.DIVIDEND);
     }
     
     /** 
@@ -168,7 +258,8 @@ public class YQLWrapper {
      * @return       The most recently published EPS.
      */
     public static double earningsShare(String ticker) {
-	return Double.parseDouble(findDataInXML(EARNINGS_SHARE, ticker));
+	return cachedQuote(ticker, QuoteField.EARNINGS_SHARE)
+	    .getDouble(QuoteField.EARNINGS_SHARE);
     } 
 
     /** 
@@ -180,7 +271,21 @@ public class YQLWrapper {
      * @return       The calculated EBITDA for the public corporation.
      */
     public static String EBITDA(String ticker) {
-	return findDataInXML(EBITDA, ticker);
+	return cachedQuote(ticker, QuoteField.EBITDA)
+	    .getText(QuoteField.EBITDA);
+    }
+
+    /** 
+     * Retrieves the most recent calculated EBITDA in dollars, with the
+     * millions(M) or billions(B) suffix applied.
+     *
+     * @param ticker The stock ticker for the public corporation.
+     * @return       The calculated EBITDA.
+     * @throws NumberFormatException If the EBITDA is not available.
+     */
+    public static long EBITDAValue(String ticker) {
+	return cachedQuote(ticker, QuoteField.EBITDA)
+	    .getLong(QuoteField.EBITDA);
     }
 
     /** 
@@ -191,7 +296,8 @@ public class YQLWrapper {
      *               year.
      */
     public static double EPSEstimateCurrentYear(String ticker) {
-	return Double.parseDouble(findDataInXML(EPS_ESTIMATE_CY, ticker));
+	return cachedQuote(ticker, QuoteField.EPS_ESTIMATE_CY)
+	    .getDouble(QuoteField.EPS_ESTIMATE_CY);
     }
 
     /** 
@@ -202,7 +308,8 @@ public class YQLWrapper {
      *               quarter.
      */
     public static double EPSEstimateNextQuarter(String ticker) {
-	return Double.parseDouble(findDataInXML(EPS_ESTIMATE_NQ, ticker));
+	return cachedQuote(ticker, QuoteField.EPS_ESTIMATE_NQ)
+	    .getDouble(QuoteField.EPS_ESTIMATE_NQ);
     }
 
     /** 
@@ -212,7 +319,8 @@ public class YQLWrapper {
      * @return       The most recent published EPS estimate for the next year.
      */
     public static double EPSEstimateNextYear(String ticker) {
-	return Double.parseDouble(findDataInXML(EPS_ESTIMATE_NY, ticker));
+	return cachedQuote(ticker, QuoteField.EPS_ESTIMATE_NY)
+	    .getDouble(QuoteField.EPS_ESTIMATE_NY);
     }
 
     /** 
@@ -222,7 +330,8 @@ public class YQLWrapper {
      * @return       The 50-day moving average stock price.
      */
     public static double fiftyDayMovingAverage(String ticker) {
-	return Double.parseDouble(findDataInXML(FIFTY_DAY_MOVING_AVG, ticker));
+	return cachedQuote(ticker, QuoteField.FIFTY_DAY_MOVING_AVG)
+	    .getDouble(QuoteField.FIFTY_DAY_MOVING_AVG);
     }
 
     /** 
@@ -233,7 +342,22 @@ public class YQLWrapper {
      * @return       The market capitalization of the public corporation.
      */
     public static String marketCap(String ticker) {
-	return findDataInXML(MARKETCAP, ticker);
+	return cachedQuote(ticker, QuoteField.MARKETCAP)
+	    .getText(QuoteField.MARKETCAP);
+    }
+
+    /** 
+     * Retrieves the most recent calculated market capitalization in
+     * dollars, with its magnitude suffix applied.
+     *
+     * @param ticker The stock ticker for the public corporation.
+     * @return       The market capitalization.
+     * @throws NumberFormatException If the market capitalization is not
+     *                               available.
+     */
+    public static long marketCapValue(String ticker) {
+	return cachedQuote(ticker, QuoteField.MARKETCAP)
+	    .getLong(QuoteField.MARKETCAP);
     }
 
     /** 
@@ -243,7 +367,8 @@ public class YQLWrapper {
      * @return       The corporate name.
      */
     public static String companyName(String ticker) {
-	return findDataInXML(NAME, ticker);
+	return cachedQuote(ticker, QuoteField.NAME)
+	    .getText(QuoteField.NAME);
     }
 
     /** 
@@ -253,7 +378,8 @@ public class YQLWrapper {
      * @return       The opening stock price from the trading day.
      */
     public static double open(String ticker) {
-	return Double.parseDouble(findDataInXML(OPEN, ticker));
+	return cachedQuote(ticker, QuoteField.OPEN)
+	    .getDouble(QuoteField.OPEN);
     }
 
     /** 
@@ -263,7 +389,8 @@ public class YQLWrapper {
      * @return       The Price-Earnings ratio.
      */
     public static double PERatio(String ticker) {
-	return Double.parseDouble(findDataInXML(PE_RATIO, ticker));
+	return cachedQuote(ticker, QuoteField.PE_RATIO)
+	    .getDouble(QuoteField.PE_RATIO);
     }
 
     /** 
@@ -273,7 +400,8 @@ public class YQLWrapper {
      * @return       The Price-Earnings Growth ratio.
      */
     public static double PEGRatio(String ticker) {
-	return Double.parseDouble(findDataInXML(PEG_RATIO, ticker));
+	return cachedQuote(ticker, QuoteField.PEG_RATIO)
+	    .getDouble(QuoteField.PEG_RATIO);
     }
 
     /** 
@@ -283,7 +411,8 @@ public class YQLWrapper {
      * @return       The Short-Interest ratio.
      */
     public static double shortRatio(String ticker) {
-	return Double.parseDouble(findDataInXML(SHORT_RATIO, ticker));
+	return cachedQuote(ticker, QuoteField.SHORT_RATIO)
+	    .getDouble(QuoteField.SHORT_RATIO);
     }
 
     /** 
@@ -293,7 +422,8 @@ public class YQLWrapper {
      * @return       The last trade price for the given stock ticker.
      */
     public static double stockPrice(String ticker) {
-	return Double.parseDouble(findDataInXML(LAST_TRADE_PRICE, ticker));
+	return cachedQuote(ticker, QuoteField.LAST_TRADE_PRICE)
+	    .getDouble(QuoteField.LAST_TRADE_PRICE);
     }
 
     /** 
@@ -303,8 +433,20 @@ public class YQLWrapper {
      * @return       The 200-day moving average stock price.
      */
     public static double twoHundredDayMovingAverage(String ticker) {
-	return Double.parseDouble(findDataInXML(TWOHUNDRED_DAY_MOVING_AVG,
-						ticker));
+	return cachedQuote(ticker, QuoteField.TWOHUNDRED_DAY_MOVING_AVG)
+	    .getDouble(QuoteField.TWOHUNDRED_DAY_MOVING_AVG);
+    }
+
+    /** 
+     * Retrieves the number of shares traded today for a given stock ticker.
+     *
+     * @param ticker The stock ticker for the public corporation.
+     * @return       The volume traded since the market opened.
+     * @throws NumberFormatException If the volume is not available.
+     */
+    public static long volume(String ticker) {
+	return cachedQuote(ticker, QuoteField.VOLUME)
+	    .getLong(QuoteField.VOLUME);
     }
 
     /** 
@@ -314,7 +456,8 @@ public class YQLWrapper {
      * @return       The highest trade price YTD.
      */
     public static double yearHigh(String ticker) {
-	return Double.parseDouble(findDataInXML(YEAR_HIGH, ticker));
+	return cachedQuote(ticker, QuoteField.YEAR_HIGH)
+	    .getDouble(QuoteField.YEAR_HIGH);
     }
 
     /** 
@@ -324,7 +467,180 @@ public class YQLWrapper {
      * @return       The lowest trade price YTD.
      */
     public static double yearLow(String ticker) {
-	return Double.parseDouble(findDataInXML(YEAR_LOW, ticker));
+	return cachedQuote(ticker, QuoteField.YEAR_LOW)
+	    .getDouble(QuoteField.YEAR_LOW);
+    }
+
+    /**
+     * Retrieves every quote field for a given stock ticker from a single
+     * YQL response.
+     *
+     * @param ticker The stock ticker for the public corporation.
+     * @return       The quote snapshot.
+     * @throws YQLException If the quote could not be retrieved or the
+     *                      response held no quote for the ticker.
+     */
+    public static QuoteSnapshot quote(String ticker) {
+	return quote(ticker, ALL_QUOTE_FIELDS);
+    }
+
+    /**
+     * Retrieves only the given quote fields for a stock ticker.
+     *
+     * @param ticker The stock ticker for the public corporation.
+     * @param fields The fields to retrieve.
+     * @return       The quote snapshot.
+     * @throws YQLException If the quote could not be retrieved or the
+     *                      response held no quote for the ticker.
+     */
+    public static QuoteSnapshot quote(String ticker, Set<QuoteField> fields) {
+	String key = fields.equals(ALL_QUOTE_FIELDS) ? QuoteCache.key(ticker) :
+	    QuoteCache.key(ticker) + fields;
+	return quoteFlights.execute(key, () -> {
+	    List<String> tickers = Collections.singletonList(ticker.trim());
+	    Map<String, QuoteSnapshot> quote = quotes(tickers, fields);
+	    if (quote.isEmpty())
+		throw new YQLException(Metrics.ErrorCause.NOT_FOUND,
+				       buildQuoteURL(tickers, fields), 1, null);
+	    return quote.values().iterator().next();
+	});
+    }
+
+    /**
+     * Retrieves the quotes for a collection of stock tickers. Rather than
+     * making one request per ticker, the tickers are grouped into as few
+     * YQL <code>symbol in (...)</code> requests as the URL length allows.
+     *
+     * @param tickers The stock tickers for the public corporations.
+     * @return        The quote snapshots keyed by ticker. Tickers the YQL
+     *                returned no quote for are absent from the map.
+     * @throws YQLException If a chunk of tickers could not be retrieved.
+     */
+    public static Map<String, QuoteSnapshot> quotes(Collection<String> tickers) {
+	return quotes(tickers, ALL_QUOTE_FIELDS);
+    }
+
+    /**
+     * Retrieves only the given quote fields for a collection of stock
+     * tickers. The YQL query selects just those columns, so a price-only
+     * request downloads and parses a fraction of a full quote.
+     *
+     * @param tickers The stock tickers for the public corporations.
+     * @param fields  The fields to retrieve.
+     * @return        The quote snapshots keyed by ticker. Tickers the YQL
+     *                returned no quote for are absent from the map.
+     * @throws YQLException If a chunk of tickers could not be retrieved.
+     */
+    public static Map<String, QuoteSnapshot> quotes(Collection<String> tickers,
+						    Set<QuoteField> fields) {
+	Map<String, QuoteSnapshot> quotesToReturn =
+	    new LinkedHashMap<String, QuoteSnapshot>();
+
+	for (List<String> chunk : chunkTickers(tickers, fields))
+	    quotesToReturn.putAll(findQuotes(chunk, fields));
+
+	QuoteCache cache = quoteCache;
+	for (QuoteSnapshot snapshot : quotesToReturn.values())
+	    cache.put(snapshot.symbol(), snapshot);
+	return quotesToReturn;
+    }
+
+    /**
+     * Retrieves the quotes for a group of stock tickers and writes them in
+     * place into a quote table. Every field of each returned quote is
+     * overwritten, with NaN or null where the response left it empty, and
+     * the quote cache is not consulted or filled.
+     *
+     * @param tickers The stock tickers for the public corporations.
+     * @param table   The table to write the quotes into.
+     * @throws YQLException If a chunk of tickers could not be retrieved.
+     */
+    public static void quotesInto(Collection<String> tickers, QuoteTable table) {
+	quotesInto(tickers, ALL_QUOTE_FIELDS, table);
+    }
+
+    /**
+     * Retrieves only the given quote fields for a group of stock tickers
+     * and writes them in place into a quote table. A requested field the
+     * response left empty becomes NaN or null; the table's other fields
+     * are left as they were.
+     *
+     * @param tickers The stock tickers for the public corporations.
+     * @param fields  The fields to retrieve.
+     * @param table   The table to write the quotes into.
+     * @throws YQLException If a chunk of tickers could not be retrieved.
+     */
+    public static void quotesInto(Collection<String> tickers,
+				  Set<QuoteField> fields, QuoteTable table) {
+	for (List<String> chunk : chunkTickers(tickers, fields))
+	    findQuotesInXML(chunk, fields, () -> table.writer(fields));
+    }
+
+    /**
+     * Replaces the cache consulted by the single-field accessors such as
+     * {@link #stockPrice(String)}. By default up to 10,000 tickers are cached,
+     * with prices fresh for 5 seconds and fundamentals for an hour.
+     *
+     * @param maxEntries     The maximum number of tickers held, or 0 to
+     *                       disable caching.
+     * @param intradayTtl    How long intraday fields such as prices stay
+     *                       fresh.
+     * @param fundamentalTtl How long fundamental fields such as the book
+     *                       value stay fresh.
+     * @param unit           The unit of both time-to-live values.
+     */
+    public static void configureCache(int maxEntries, long intradayTtl,
+				      long fundamentalTtl, TimeUnit unit) {
+	quoteCache = new QuoteCache(maxEntries, intradayTtl, fundamentalTtl, unit);
+    }
+
+    /**
+     * Retrieves the quote cache, e.g. to read its hit, miss and eviction
+     * counters.
+     *
+     * @return The cache in use.
+     */
+    public static QuoteCache quoteCache() {
+	return quoteCache;
+    }
+
+    /**
+     * Sets whether quote queries ask the YQL for its diagnostics block.
+     * Diagnostics are off by default, as they are not used by the wrapper
+     * and add to every response.
+     *
+     * @param enabled Whether to request diagnostics.
+     */
+    public static void setDiagnostics(boolean enabled) {
+	diagnostics = enabled;
+    }
+
+    /**
+     * Retrieves, per ticker, how many single-quote lookups waited on a
+     * request already in flight for the same ticker instead of issuing
+     * their own.
+     *
+     * @return The coalesced lookup counts keyed by upper-case ticker.
+     *         Lookups through {@link #quote(String, Set)} for only some
+     *         fields are keyed by the ticker followed by the fields.
+     */
+    public static Map<String, Long> coalescedQuoteCounts() {
+	return quoteFlights.coalescedCounts();
+    }
+
+    /**
+     * Retrieves, per statement page URL, how many statement lookups waited
+     * on a request already in flight for the same page instead of issuing
+     * their own.
+     *
+     * @return The coalesced lookup counts keyed by URL.
+     */
+    public static Map<String, Long> coalescedStatementCounts() {
+	Map<String, Long> counts = statementPageFlights.coalescedCounts();
+	for (Map.Entry<String, Long> entry :
+		 statementFlights.coalescedCounts().entrySet())
+	    counts.merge(entry.getKey(), entry.getValue(), Long::sum);
+	return counts;
     }
 
     /**
@@ -333,14 +649,15 @@ public class YQLWrapper {
      * @param ticker     The stock ticker for the public corporation.
      * @param periodType The type of statement period (quarterly, annual).
      * @return           The income statement in a two-dimensional ArrayList.
+     * @throws YQLException If the statement could not be retrieved.
      */
     public static ArrayList<ArrayList<String>> incomeStatement(String ticker, String periodType)
     {
         ArrayList<ArrayList<String>> incomeStatementData;
-	String urlToPass = YQL_STATEMENT_BEGIN + IS + YQL_STATEMENT_MID + ticker
+	String urlToPass = statementBaseURL + IS + YQL_STATEMENT_MID + ticker
 	    + "&" + periodType;
 	
-        incomeStatementData = retrieveFinancialStatementData(urlToPass, periodType, IS);
+        incomeStatementData = retrieveFinancialStatementData(urlToPass, IS);
 	return incomeStatementData;
     }
 
@@ -350,12 +667,13 @@ public class YQLWrapper {
      * @param ticker     The stock ticker for the public corporation.
      * @param periodType The type of statement period (quarterly, annual).
      * @return           The balance statement in a two-dimensional ArrayList.
+     * @throws YQLException If the statement could not be retrieved.
      */
     public static ArrayList<ArrayList<String>> balanceSheet(String ticker, String periodType) {
 	ArrayList<ArrayList<String>> balanceSheetData;
-	String urlToPass = YQL_STATEMENT_BEGIN + BS + YQL_STATEMENT_MID + ticker
+	String urlToPass = statementBaseURL + BS + YQL_STATEMENT_MID + ticker
 	    + "&" + periodType;	
-	balanceSheetData = retrieveFinancialStatementData(urlToPass, periodType, BS);
+	balanceSheetData = retrieveFinancialStatementData(urlToPass, BS);
 	return balanceSheetData;
     }
     
@@ -365,164 +683,506 @@ public class YQLWrapper {
      * @param ticker     The stock ticker for the public corporation.
      * @param periodType The type of statement period (quarterly, annual).
      * @return           The cash flows statement in a two-dimensional ArrayList.
+     * @throws YQLException If the statement could not be retrieved.
      */
     public static ArrayList<ArrayList<String>> statementOfCashFlows(String ticker, String
 						    periodType) {
 	ArrayList<ArrayList<String>> statementOfCashFlowsData;
-	String urlToPass = YQL_STATEMENT_BEGIN + CF + YQL_STATEMENT_MID + ticker
+	String urlToPass = statementBaseURL + CF + YQL_STATEMENT_MID + ticker
 	    + "&" + periodType;
-	statementOfCashFlowsData = retrieveFinancialStatementData(urlToPass, periodType, CF);
+	statementOfCashFlowsData = retrieveFinancialStatementData(urlToPass, CF);
 	return statementOfCashFlowsData;
     }
     
-    /* BEGIN PRIVATE METHODS */
+    /**
+     * Retrieves a financial statement as typed, per-period columns of
+     * values rather than rows of strings.
+     *
+     * @param ticker     The stock ticker for the public corporation.
+     * @param type       The statement to retrieve.
+     * @param periodType The type of statement period.
+     * @return           The statement.
+     * @throws YQLException If the statement could not be retrieved or the
+     *                      page held no statement table.
+     */
+    public static FinancialStatement financialStatement(String ticker,
+							StatementType type,
+							PeriodType periodType) {
+	StatementStore store = statementStore;
+	FinancialStatement statement;
 
-    /* Obtains data through the Yahoo! Query Language */
-    private static String findDataInXML(String dataToExtract, 
-					String stockTicker) {
-	URL url;
-	InputStream is = null;
-	BufferedReader br;
-	String XMLDataLine;
-	String dataToReturn = "0.00";
-       
-	try {
-	    url = new URL(YQL_BEGIN + stockTicker + YQL_END);
+	if (store != null) {
+	    statement = store.getFresh(ticker, type, periodType);
+	    if (statement != null)
+		return statement;
+	}
 
+	statement = retrieveFinancialStatement(ticker, type, periodType);
+	if (store != null && statement != null) {
+	    /* The statement is still returned; a failed write only means
+	       it is fetched again next time */
 	    try {
-		is = url.openStream();
-	    } catch (IOException io) {
-		System.out.println("The URL failed to retireve the" +
-				   "stock ticker from the API");
-		io.printStackTrace();
-		return null;
-	    }
-	    
-	    br = new BufferedReader(new InputStreamReader(is));
-	    
-	    while ((XMLDataLine = br.readLine()) != null) {
-		if (XMLDataLine.contains(dataToExtract)) {
-		    dataToReturn = XMLDataToScrape(dataToExtract, XMLDataLine);
-		}
+		store.put(statement);
+	    } catch (IOException e) {
+		Metrics.error(Metrics.ErrorCause.STORAGE);
 	    }
-	} catch (MalformedURLException mue) {
-	    mue.printStackTrace();
-	    return null;
-	} catch (IOException ioe) {
-	    ioe.printStackTrace();
 	}
-	
-	return dataToReturn;
+	return statement;
     }
 
-    /* Scrapes the specified data from the XML page returned by the YQL */
-    private static String XMLDataToScrape(String dataToExtract, 
-						 String XMLDataLine) {
-	int firstIndex;
-	int lastIndex;
+    /**
+     * Sets the persistent store that {@link #financialStatement} reads
+     * statements from while they are fresh, and writes newly retrieved
+     * statements to. There is no store by default. A statement that
+     * cannot be written to the store is still returned, and the failure
+     * is counted in {@link Metrics} under
+     * {@link Metrics.ErrorCause#STORAGE}.
+     *
+     * @param store The store to use, or null to always fetch.
+     */
+    public static void setStatementStore(StatementStore store) {
+	statementStore = store;
+    }
 
-	firstIndex = XMLDataLine.indexOf(dataToExtract) + 
-	    dataToExtract.length();
-	dataToExtract = dataToExtract.substring(0,1) + "/" +
-	    dataToExtract.substring(1,dataToExtract.length());
-	lastIndex = XMLDataLine.indexOf(dataToExtract);
-	return XMLDataLine.substring(firstIndex, lastIndex);
+    /**
+     * Retrieves financial statements for many public corporations at once.
+     * The pages are fetched and parsed concurrently on the asynchronous
+     * request executor, with at most 8 requests to the statement host in
+     * flight across all callers, and each company is passed back as soon
+     * as its statements are complete.
+     *
+     * @param tickers     The stock tickers for the public corporations.
+     * @param types       The statements to retrieve for each ticker.
+     * @param periodTypes The statement periods to retrieve.
+     * @param onCompany   Called, from a common pool thread, with each
+     *                    company once all of its statements have been
+     *                    retrieved.
+     * @return            A future completed once every company has been
+     *                    passed to onCompany.
+     */
+    public static CompletableFuture<Void> financialStatements(Collection<String> tickers,
+							      Set<StatementType> types,
+							      Set<PeriodType> periodTypes,
+							      Consumer<CompanyStatements> onCompany) {
+	return statementFetcher.fetch(tickers, types, periodTypes, onCompany);
     }
 
-    /* Scrapes the HTML page for lines of relevant financial data */
-    private static ArrayList<ArrayList<String>> retrieveFinancialStatementData(String urlToOpen,
-							       String periodType,
-							       String statementType) {
-	URL url;
-	InputStream istream = null;
-	BufferedReader reader;
-	ArrayList<ArrayList<String>> statementDataToReturn = new ArrayList<ArrayList<String>>();
-	String lineOfHTMLData;
-	boolean startScraping = false;
-	boolean startIncrement = false;
-	int i = 0;
+    /**
+     * Asynchronously retrieves every quote field for a given stock ticker.
+     *
+     * @param ticker The stock ticker for the public corporation.
+     * @return       A future completed with the quote snapshot, or
+     *               exceptionally with a {@link YQLException} if the quote
+     *               could not be retrieved.
+     */
+    public static CompletableFuture<QuoteSnapshot> quoteAsync(String ticker) {
+	return requestExecutor.submit(() -> quote(ticker));
+    }
 
-	try {
-	    url = new URL(urlToOpen);
-	    try {
-		istream = url.openStream();
-	    } catch (IOException e) {
-		System.out.println("Failed to retrieve URL.");
-		e.printStackTrace();
-	    }
+    /**
+     * Asynchronously retrieves the quotes for a collection of stock tickers.
+     * Each chunk of the <code>symbol in (...)</code> query is requested
+     * concurrently.
+     *
+     * @param tickers The stock tickers for the public corporations.
+     * @return        A future completed with the quote snapshots keyed by
+     *                ticker, as returned by {@link #quotes(Collection)}.
+     */
+    public static CompletableFuture<Map<String, QuoteSnapshot>>
+	quotesAsync(Collection<String> tickers) {
+	return quotesAsync(tickers, ALL_QUOTE_FIELDS);
+    }
 
-	    reader = new BufferedReader(new InputStreamReader(istream));
+    /**
+     * Asynchronously retrieves only the given quote fields for a
+     * collection of stock tickers, fetching each chunk of tickers in
+     * parallel.
+     *
+     * @param tickers The stock tickers for the public corporations.
+     * @param fields  The fields to retrieve.
+     * @return        A future completed with the quote snapshots keyed by
+     *                ticker, as returned by
+     *                {@link #quotes(Collection, Set)}.
+     */
+    public static CompletableFuture<Map<String, QuoteSnapshot>>
+	quotesAsync(Collection<String> tickers, Set<QuoteField> fields) {
+	RequestExecutor executor = requestExecutor;
+	List<CompletableFuture<Map<String, QuoteSnapshot>>> chunks =
+	    new ArrayList<CompletableFuture<Map<String, QuoteSnapshot>>>();
 
-	    try {
-		while((lineOfHTMLData = reader.readLine()) != null &&
-		      (periodType.equals("quarterly") && i != 17) ||
-		      (periodType.equals("annual") && i != 14)) {
-
-		    /*Start scraping at either the 14th or 17th line of
-		      HTML */
-		    if (lineOfHTMLData.contains("Period Ending"))
-			startScraping = true;
-		    
-		    if (statementType == IS) {
-			if (lineOfHTMLData.contains("Net Income Applicable To Common Shares"))
-			    startIncrement = true;
-		    } else if (statementType == BS) {
-			if (lineOfHTMLData.contains("Net Tangible Assets"))
-			    startIncrement = true;
-		    } else {
-			if (lineOfHTMLData.contains("Change In Cash and Cash Equivalents"))
-			    startIncrement = true;
-		    }
+	for (List<String> tickerChunk : chunkTickers(tickers, fields))
+	    chunks.add(executor.submit(() -> findQuotes(tickerChunk, fields)));
 
-		    if (startScraping == true) {
-			String returnedHTML = scrapeExcessHTML(lineOfHTMLData);
-			if (returnedHTML.length() > 0 ) {
-			    ArrayList<String> newList = buildFinancialDataList(returnedHTML.split(" "),
-									       statementType);
-			    if (newList.size() > 0)
-				statementDataToReturn.add(newList);
-			}
-		    }
+	return CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0]))
+	    .thenApply(done -> {
+		Map<String, QuoteSnapshot> quotesToReturn =
+		    new LinkedHashMap<String, QuoteSnapshot>();
+		QuoteCache cache = quoteCache;
+		for (CompletableFuture<Map<String, QuoteSnapshot>> chunk : chunks)
+		    quotesToReturn.putAll(chunk.join());
+		for (QuoteSnapshot snapshot : quotesToReturn.values())
+		    cache.put(snapshot.symbol(), snapshot);
+		return quotesToReturn;
+	    });
+    }
 
-		    if (startIncrement == true)
-			i++;
-		}// end While loop
-	    } catch (IOException e) {
-		System.out.println("Failed to read from the URL.");
-		e.printStackTrace();
+    /**
+     * Asynchronously retrieves the quotes for a group of stock tickers and
+     * writes them in place into a quote table, fetching each chunk of
+     * tickers in parallel.
+     *
+     * @param tickers The stock tickers for the public corporations.
+     * @param table   The table to write the quotes into.
+     * @return        A future completed once every chunk has been written.
+     */
+    public static CompletableFuture<Void> quotesIntoAsync(Collection<String> tickers,
+							   QuoteTable table) {
+	return quotesIntoAsync(tickers, ALL_QUOTE_FIELDS, table);
+    }
+
+    /**
+     * Asynchronously retrieves only the given quote fields for a group of
+     * stock tickers and writes them in place into a quote table.
+     *
+     * @param tickers The stock tickers for the public corporations.
+     * @param fields  The fields to retrieve.
+     * @param table   The table to write the quotes into.
+     * @return        A future completed once every chunk has been written.
+     */
+    public static CompletableFuture<Void> quotesIntoAsync(Collection<String> tickers,
+							   Set<QuoteField> fields,
+							   QuoteTable table) {
+	RequestExecutor executor = requestExecutor;
+	List<CompletableFuture<Void>> chunks =
+	    new ArrayList<CompletableFuture<Void>>();
+
+	for (List<String> tickerChunk : chunkTickers(tickers, fields)) {
+	    chunks.add(executor.submit(() -> {
+		findQuotesInXML(tickerChunk, fields,
+				() -> table.writer(fields));
+		return null;
+	    }));
+	}
+	return CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Asynchronously retrieves the complete income statement for a public
+     * corporation.
+     *
+     * @param ticker     The stock ticker for the public corporation.
+     * @param periodType The type of statement period (quarterly, annual).
+     * @return           A future completed with the income statement.
+     */
+    public static CompletableFuture<ArrayList<ArrayList<String>>>
+	incomeStatementAsync(String ticker, String periodType) {
+	return requestExecutor.submit(() -> incomeStatement(ticker, periodType));
+    }
+
+    /**
+     * Asynchronously retrieves the complete balance sheet for a public
+     * corporation.
+     *
+     * @param ticker     The stock ticker for the public corporation.
+     * @param periodType The type of statement period (quarterly, annual).
+     * @return           A future completed with the balance sheet.
+     */
+    public static CompletableFuture<ArrayList<ArrayList<String>>>
+	balanceSheetAsync(String ticker, String periodType) {
+	return requestExecutor.submit(() -> balanceSheet(ticker, periodType));
+    }
+
+    /**
+     * Asynchronously retrieves the complete cash flows statement for a
+     * public corporation.
+     *
+     * @param ticker     The stock ticker for the public corporation.
+     * @param periodType The type of statement period (quarterly, annual).
+     * @return           A future completed with the cash flows statement.
+     */
+    public static CompletableFuture<ArrayList<ArrayList<String>>>
+	statementOfCashFlowsAsync(String ticker, String periodType) {
+	return requestExecutor.submit(() -> statementOfCashFlows(ticker,
+								 periodType));
+    }
+
+    /**
+     * Replaces the executor that runs the asynchronous methods, e.g. to
+     * change how many requests may be in flight at once. By default up to
+     * 64 requests run concurrently. The executor's limit also caps the
+     * connections opened by synchronous calls, retries and hedges.
+     *
+     * @param executor The executor to run asynchronous requests on.
+     */
+    public static void setRequestExecutor(RequestExecutor executor) {
+	if (executor == null)
+	    throw new NullPointerException("executor");
+	requestExecutor = executor;
+	statementFetcher = new StatementFetcher(executor, 8);
+	RequestRunner.setConcurrency(executor.maxInFlight());
+    }
+
+    /**
+     * Retrieves the executor that runs the asynchronous methods.
+     *
+     * @return The executor in use.
+     */
+    public static RequestExecutor requestExecutor() {
+	return requestExecutor;
+    }
+
+    /**
+     * Replaces the deadline, retry and hedging policy applied to every
+     * quote and statement request. By default calls have a 30 second
+     * deadline and are tried up to 3 times; see
+     * {@link RequestPolicy#DEFAULT}.
+     *
+     * @param policy The policy to apply.
+     */
+    public static void setRequestPolicy(RequestPolicy policy) {
+	if (policy == null)
+	    throw new NullPointerException("policy");
+	requestPolicy = policy;
+    }
+
+    /**
+     * Retrieves the policy applied to every request.
+     *
+     * @return The policy in use.
+     */
+    public static RequestPolicy requestPolicy() {
+	return requestPolicy;
+    }
+
+    /**
+     * Points the wrapper at other endpoints, e.g. a local stub server for
+     * load tests. Quote queries are sent to the YQL endpoint with the
+     * query in its <code>q</code> parameter, and statement pages are
+     * fetched from the statement base followed by "is", "bs" or "cf".
+     *
+     * @param quoteBase     The YQL endpoint, by default
+     *                      https://query.yahooapis.com/v1/public/yql
+     * @param statementBase The base of the statement pages, by default
+     *                      https://finance.yahoo.com/q/
+     */
+    public static void setBaseURLs(String quoteBase, String statementBase) {
+	if (quoteBase == null || statementBase == null)
+	    throw new NullPointerException("base URL");
+	quoteBaseURL = quoteBase;
+	statementBaseURL = statementBase.endsWith("/") ? statementBase :
+	    statementBase + "/";
+    }
+
+    /**
+     * Points the wrapper back at the Yahoo! endpoints.
+     */
+    public static void resetBaseURLs() {
+	setBaseURLs(DEFAULT_QUOTE_BASE_URL, DEFAULT_STATEMENT_BASE_URL);
+    }
+
+    /**
+     * Replaces the transport through which every quote and statement page
+     * is fetched, e.g. with an {@link InMemoryTransport} for offline tests.
+     *
+     * @param newTransport The transport to fetch through.
+     */
+    public static void setTransport(HttpTransport newTransport) {
+	if (newTransport == null)
+	    throw new NullPointerException("transport");
+	transport = newTransport;
+    }
+
+    /**
+     * Retrieves the transport every request is fetched through.
+     *
+     * @return The transport in use.
+     */
+    public static HttpTransport transport() {
+	return transport;
+    }
+
+    /* BEGIN PRIVATE METHODS */
+
+    /* Answers a single-field lookup from the cache when the cached
+       snapshot is still fresh for that field, and otherwise fetches every
+       field at once, so reading several accessors for a ticker costs one
+       request and concurrent lookups share one flight per ticker */
+    private static QuoteSnapshot cachedQuote(String ticker, QuoteField field) {
+	QuoteSnapshot snapshot = quoteCache.get(ticker, field);
+
+	if (snapshot == null)
+	    snapshot = quote(ticker);
+	return snapshot;
+    }
+
+    /* Splits the tickers into chunks whose YQL query URLs stay under the
+       URL length limit */
+    static List<List<String>> chunkTickers(Collection<String> tickers,
+					   Set<QuoteField> fields) {
+	if (fields.isEmpty())
+	    throw new IllegalArgumentException("No quote fields requested");
+
+	List<List<String>> chunks = new ArrayList<List<String>>();
+	List<String> chunk = new ArrayList<String>();
+	int fixedLength = quoteURLPrefix(fields).length()
+	    + quoteURLSuffix().length();
+	int chunkLength = 0;
+
+	for (String ticker : tickers) {
+	    String trimmedTicker = ticker.trim();
+	    if (trimmedTicker.isEmpty())
+		continue;
+
+	    int tickerLength = encodeTicker(trimmedTicker).length();
+	    if (!chunk.isEmpty() &&
+		fixedLength + chunkLength + YQL_SYMBOL_SEPARATOR.length()
+		+ tickerLength > MAX_QUERY_URL_LENGTH) {
+		chunks.add(chunk);
+		chunk = new ArrayList<String>();
+		chunkLength = 0;
 	    }
-	} catch (MalformedURLException e) {
-	    System.out.println("Invalid URL provided.");
-	    e.printStackTrace();
-	    return null;
+	    if (!chunk.isEmpty())
+		chunkLength += YQL_SYMBOL_SEPARATOR.length();
+	    chunkLength += tickerLength;
+	    chunk.add(trimmedTicker);
 	}
-	return statementDataToReturn;
-
-    }
-
-    /* Removes excess HTML characters/code from a given String */
-    private static String scrapeExcessHTML(String lineOfHTMLData) {
-	String lineToModify = lineOfHTMLData;
-	while (lineToModify.contains("<") || lineOfHTMLData.contains(">")) {
-	    int firstIndex = lineToModify.indexOf("<");
-	    int nextIndex = lineToModify.indexOf(">")+1;
-	    if (firstIndex == -1 || nextIndex == -1)
-		break;
-	    
-	    String lineToRemove = lineToModify.substring(firstIndex, nextIndex);
-	    lineToModify = lineToModify.replace(lineToRemove, " ");
-	    lineToModify.trim();
+
+	if (!chunk.isEmpty())
+	    chunks.add(chunk);
+	return chunks;
+    }
+
+    /* Builds the YQL query URL for a chunk of tickers */
+    private static String buildQuoteURL(List<String> tickers,
+					Set<QuoteField> fields) {
+	StringBuilder url = new StringBuilder(quoteURLPrefix(fields));
+	for (int i = 0; i < tickers.size(); i++) {
+	    if (i > 0)
+		url.append(YQL_SYMBOL_SEPARATOR);
+	    url.append(encodeTicker(tickers.get(i)));
 	}
-	
-	while(lineToModify.contains("&nbsp;")) {
-	    lineToModify = lineToModify.replaceAll("&nbsp", "").replaceAll
-		(";", "");
+	return url.append(quoteURLSuffix()).toString();
+    }
+
+    /* The query up to the first ticker, selecting every column when every
+       field is wanted and otherwise only the symbol and the wanted
+       columns */
+    private static String quoteURLPrefix(Set<QuoteField> fields) {
+	if (fields.equals(ALL_QUOTE_FIELDS))
+	    return quoteBaseURL + YQL_BEGIN + "*" + YQL_FROM;
+
+	StringBuilder prefix = new StringBuilder(quoteBaseURL)
+	    .append(YQL_BEGIN).append("symbol");
+	for (QuoteField field : fields)
+	    prefix.append(YQL_COLUMN_SEPARATOR).append(field.tagName());
+	return prefix.append(YQL_FROM).toString();
+    }
+
+    private static String quoteURLSuffix() {
+	return diagnostics ? YQL_END + YQL_DIAGNOSTICS : YQL_END;
+    }
+
+    private static String encodeTicker(String ticker) {
+	try {
+	    return URLEncoder.encode(ticker, "UTF-8");
+	} catch (UnsupportedEncodingException e) {
+	    throw new IllegalStateException(e);
 	}
-	return lineToModify.trim();
+    }
+
+    /* Obtains every quote for a chunk of tickers from one YQL response.
+       Each attempt parses its response into a new sink, and the sink of
+       the attempt that succeeded is returned. */
+    private static <S extends QuoteSink> S findQuotesInXML(List<String> tickers,
+							   Set<QuoteField> fields,
+							   Supplier<S> sinks) {
+	return quoteRequests.fetch(requestPolicy, buildQuoteURL(tickers, fields),
+				   is -> {
+	    S sink = sinks.get();
+	    new QuoteXMLParser(is).parse(sink, fields, tickers.size());
+	    return sink;
+	});
+    }
+
+    /* Obtains the snapshots for a chunk of tickers */
+    static Map<String, QuoteSnapshot> findQuotes(List<String> tickers,
+						 Set<QuoteField> fields) {
+	return findQuotesInXML(tickers, fields, () -> new QuoteSnapshot.Collector
+			       (new LinkedHashMap<String, QuoteSnapshot>(),
+				fields)).quotes();
+    }
+
+    /* Scrapes the HTML page for lines of relevant financial data */
+    static ArrayList<ArrayList<String>> retrieveFinancialStatementData(String urlToOpen,
+						       String statementType) {
+	/* Concurrent callers for the same page share one fetch, each getting
+	   its own copy of the rows */
+	ArrayList<ArrayList<String>> sharedData =
+	    statementPageFlights.execute(urlToOpen, () ->
+		scrapeStatementTable(urlToOpen, statementType,
+				     ArrayList<ArrayList<String>>::new,
+				     (statementDataToReturn, returnedHTML) -> {
+		    ArrayList<String> newList = buildFinancialDataList(returnedHTML.split(" "),
+								       statementType);
+		    if (newList.size() > 0)
+			statementDataToReturn.add(newList);
+		}));
+
+	ArrayList<ArrayList<String>> statementData =
+	    new ArrayList<ArrayList<String>>(sharedData.size());
+	for (ArrayList<String> row : sharedData)
+	    statementData.add(new ArrayList<String>(row));
+	return statementData;
+    }
+
+    /* Scrapes the HTML page into a columnar statement */
+    private static FinancialStatement retrieveFinancialStatement(String ticker,
+								 StatementType type,
+								 PeriodType periodType) {
+	String urlToOpen = statementURL(ticker, type, periodType);
+
+	return statementFlights.execute(urlToOpen, () -> {
+	    FinancialStatement.Builder builder =
+		scrapeStatementTable(urlToOpen, type.code(),
+				     () -> new FinancialStatement.Builder
+				     (ticker, type, periodType),
+				     FinancialStatement.Builder::addLine);
+	    if (!builder.hasPeriods())
+		throw new YQLException(Metrics.ErrorCause.NOT_FOUND, urlToOpen,
+				       1, null);
+	    return builder.build();
+	});
+    }
+
+    /* Builds the URL of a statement page */
+    static String statementURL(String ticker, StatementType type,
+			       PeriodType periodType) {
+	return statementBaseURL + type.code() + YQL_STATEMENT_MID + ticker
+	    + "&" + periodType.parameter();
+    }
+
+    /* Passes each non-empty line of the statement table, with its HTML
+       removed, to the handler along with the result being built. Each
+       attempt builds a new result, and the result of the attempt that
+       succeeded is returned. Reading stops at the statement's last line
+       item, so the rest of the page is never downloaded. */
+    private static <T> T scrapeStatementTable(String urlToOpen,
+					      String statementType,
+					      Supplier<T> results,
+					      BiConsumer<T, String> handler) {
+	String lastLineItem = StatementType.forCode(statementType).lastLineItem();
+
+	return statementRequests.fetch(requestPolicy, urlToOpen, istream -> {
+	    T result = results.get();
+	    new StatementTableParser(new InputStreamReader
+				     (istream, StandardCharsets.UTF_8))
+		.parse(lastLineItem, line -> handler.accept(result, line));
+	    return result;
+	});
     }
 
     /* Builds an ArrayList containing a financial statement */
-    private static ArrayList<String> buildFinancialDataList(String[] line, String statementType) {
+    static ArrayList<String> buildFinancialDataList(String[] line, String statementType) {
 	ArrayList<String> dataToReturn = new ArrayList<String>();
 
 	/* Empty lines do not contain any
@@ -643,7 +1303,7 @@ public class YQLWrapper {
      *
      * @return true if there is a match, false otherwise.
      */
-    private static boolean checkIfHeader(String currentHeaderWord) {
+    static boolean checkIfHeader(String currentHeaderWord) {
 	String[] headerWords = {"Assets", "Liabilities", "Stockholders' Equity",
 		 "Operating Activities, Cash Flows Provided By or Used In",
 	         "Investing Activities, Cash Flows Provided By or Used In",
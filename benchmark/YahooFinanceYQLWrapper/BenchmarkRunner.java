@@ -0,0 +1,108 @@
+package YahooFinanceYQLWrapper;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A small, dependency-free micro-benchmark harness. Each benchmark is
+ * warmed up, then measured over several fixed-length iterations, reporting
+ * throughput, bytes allocated per operation and per-operation latency
+ * percentiles. Allocation is read from the per-thread allocation counters,
+ * as <code>-prof gc</code> does, and summed over every live thread, so the
+ * work an operation hands to the wrapper's request threads is counted
+ * too.
+ *
+ * @author Amandeep Sarow
+ */
+final class BenchmarkRunner {
+    /** A single benchmarked operation. */
+    interface Operation {
+	/**
+	 * Runs the operation once.
+	 *
+	 * @return A value derived from the result, so the work cannot be
+	 *         eliminated as dead code.
+	 */
+	long run() throws Exception;
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+	(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final long warmupNanos;
+    private final long iterationNanos;
+    private final int iterations;
+    private volatile long sink;
+
+    BenchmarkRunner(long warmupMillis, long iterationMillis, int iterations) {
+	this.warmupNanos = warmupMillis * 1000000L;
+	this.iterationNanos = iterationMillis * 1000000L;
+	this.iterations = iterations;
+    }
+
+    static void printHeader() {
+	System.out.printf("%-34s %14s %14s %10s %10s %10s%n", "Benchmark",
+			  "ops/s", "B/op", "p50 us", "p99 us", "max us");
+    }
+
+    /* Runs one benchmark and prints a row of the results table */
+    void run(String name, Operation operation) throws Exception {
+	long deadline = System.nanoTime() + warmupNanos;
+	while (System.nanoTime() < deadline)
+	    sink += operation.run();
+
+	long[] latencies = new long[1 << 16];
+	int samples = 0;
+	long operations = 0;
+	long elapsed = 0;
+	Map<Long, Long> allocatedBefore = allocatedBytes();
+
+	for (int i = 0; i < iterations; i++) {
+	    long start = System.nanoTime();
+	    long end = start + iterationNanos;
+	    long now = start;
+	    while (now < end) {
+		long before = now;
+		sink += operation.run();
+		now = System.nanoTime();
+		if (samples == latencies.length)
+		    latencies = Arrays.copyOf(latencies, samples * 2);
+		latencies[samples++] = now - before;
+		operations++;
+	    }
+	    elapsed += now - start;
+	}
+
+	long allocated = 0;
+	for (Map.Entry<Long, Long> thread : allocatedBytes().entrySet())
+	    allocated += thread.getValue() -
+		allocatedBefore.getOrDefault(thread.getKey(), 0L);
+	Arrays.sort(latencies, 0, samples);
+	System.out.printf("%-34s %14.1f %14d %10.2f %10.2f %10.2f%n", name,
+			  operations * 1e9 / elapsed,
+			  allocated / operations,
+			  percentile(latencies, samples, 0.50) / 1e3,
+			  percentile(latencies, samples, 0.99) / 1e3,
+			  latencies[samples - 1] / 1e3);
+    }
+
+    /* The bytes allocated so far by each live thread, by thread id.
+       Threads that end during a run take their counts with them, but the
+       request threads outlive a measurement. */
+    private static Map<Long, Long> allocatedBytes() {
+	long[] ids = THREADS.getAllThreadIds();
+	long[] bytes = THREADS.getThreadAllocatedBytes(ids);
+	Map<Long, Long> allocated = new HashMap<Long, Long>();
+	for (int i = 0; i < ids.length; i++) {
+	    if (bytes[i] >= 0)
+		allocated.put(ids[i], bytes[i]);
+	}
+	return allocated;
+    }
+
+    private static long percentile(long[] sorted, int samples, double p) {
+	return sorted[Math.min(samples - 1, (int) (samples * p))];
+    }
+}
@@ -0,0 +1,208 @@
+package YahooFinanceYQLWrapper;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives the wrapper's public quote and statement APIs against a
+ * {@link StubYQLServer} from a fixed number of threads, each issuing one
+ * call after another, and reports end-to-end throughput and latency
+ * percentiles per API. The quote cache is disabled and every call uses a
+ * different ticker, so each call makes its own request.
+ *
+ * <pre>
+ *   java -cp out YahooFinanceYQLWrapper.LoadDriver [options]
+ *     --fixtures DIR     recorded responses (benchmark/fixtures)
+ *     --api NAME         quote, quotes, prices, statement or all (all)
+ *     --concurrency N    calling threads (32)
+ *     --seconds N        measured seconds per API (10)
+ *     --latency MS       server latency (20)
+ *     --jitter MS        most extra server latency (10)
+ *     --error-rate F     fraction of requests the server fails (0)
+ *     --stall-rate F     fraction of requests the server stalls (0)
+ *     --stall MS         how long a stalled request waits (1000)
+ *     --deadline MS      deadline of each call (30000)
+ *     --attempts N       most requests per call (3)
+ *     --hedge on|off     whether to hedge slow requests (off)
+ * </pre>
+ *
+ * @author Amandeep Sarow
+ */
+public final class LoadDriver {
+    private static final String[] APIS = {
+	"quote", "quotes", "prices", "statement"
+    };
+    private static final int BATCH_SIZE = 200;
+    private static final Set<QuoteField> PRICE_FIELDS =
+	EnumSet.of(QuoteField.LAST_TRADE_PRICE, QuoteField.BID, QuoteField.ASK);
+
+    private final int concurrency;
+    private final long measureNanos;
+    private final AtomicLong nextTicker = new AtomicLong();
+
+    private LoadDriver(int concurrency, long measureNanos) {
+	this.concurrency = concurrency;
+	this.measureNanos = measureNanos;
+    }
+
+    public static void main(String[] args) throws Exception {
+	Path fixtures = Paths.get("benchmark/fixtures");
+	String api = "all";
+	int concurrency = 32;
+	int seconds = 10;
+	long latency = 20;
+	long jitter = 10;
+	double errorRate = 0;
+	double stallRate = 0;
+	long stall = 1000;
+	RequestPolicy policy = RequestPolicy.DEFAULT;
+
+	for (int i = 0; i + 1 < args.length; i += 2) {
+	    String value = args[i + 1];
+	    switch (args[i]) {
+	    case "--fixtures": fixtures = Paths.get(value); break;
+	    case "--api": api = value; break;
+	    case "--concurrency": concurrency = Integer.parseInt(value); break;
+	    case "--seconds": seconds = Integer.parseInt(value); break;
+	    case "--latency": latency = Long.parseLong(value); break;
+	    case "--jitter": jitter = Long.parseLong(value); break;
+	    case "--error-rate": errorRate = Double.parseDouble(value); break;
+	    case "--stall-rate": stallRate = Double.parseDouble(value); break;
+	    case "--stall": stall = Long.parseLong(value); break;
+	    case "--deadline":
+		policy = policy.withDeadline(Long.parseLong(value),
+					     TimeUnit.MILLISECONDS);
+		break;
+	    case "--attempts":
+		policy = policy.withRetries(Integer.parseInt(value), 100, 2000,
+					    TimeUnit.MILLISECONDS);
+		break;
+	    case "--hedge":
+		policy = policy.withHedging(value.equals("on"));
+		break;
+	    default:
+		throw new IllegalArgumentException("Unknown option " + args[i]);
+	    }
+	}
+
+	try (StubYQLServer server = new StubYQLServer(fixtures, 0, latency,
+						      jitter,
+						      TimeUnit.MILLISECONDS,
+						      errorRate)) {
+	    server.stall(stallRate, stall, TimeUnit.MILLISECONDS);
+	    YQLWrapper.setBaseURLs(server.quoteBaseURL(),
+				   server.statementBaseURL());
+	    YQLWrapper.configureCache(0, 0, 0, TimeUnit.SECONDS);
+	    YQLWrapper.setRequestPolicy(policy);
+	    Metrics.enable();
+
+	    System.out.printf("concurrency %d, server latency %d+%d ms, " +
+			      "error rate %.3f, stall rate %.3f%n", concurrency,
+			      latency, jitter, errorRate, stallRate);
+	    System.out.println(policy);
+	    System.out.printf("%-10s %10s %10s %10s %10s %10s %10s %8s%n",
+			      "API", "calls", "calls/s", "p50 ms", "p99 ms",
+			      "p999 ms", "max ms", "errors");
+
+	    LoadDriver driver =
+		new LoadDriver(concurrency, TimeUnit.SECONDS.toNanos(seconds));
+	    for (String name : APIS) {
+		if (api.equals("all") || api.equals(name))
+		    driver.run(name);
+	    }
+	    System.out.println();
+	    System.out.println(Metrics.snapshot());
+	} finally {
+	    YQLWrapper.resetBaseURLs();
+	    YQLWrapper.setRequestPolicy(RequestPolicy.DEFAULT);
+	}
+    }
+
+    /* Runs one API from every thread, first to warm up and then measured,
+       and prints its row of the results */
+    private void run(String api) throws InterruptedException {
+	drive(api, measureNanos / 5, new LatencyHistogram(), new LongAdder());
+	LatencyHistogram latencies = new LatencyHistogram();
+	LongAdder errors = new LongAdder();
+	long elapsed = drive(api, measureNanos, latencies, errors);
+
+	LatencySnapshot snapshot = latencies.snapshot();
+	System.out.printf("%-10s %10d %10.1f %10.2f %10.2f %10.2f %10.2f %8d%n",
+			  api, snapshot.getCount(),
+			  snapshot.getCount() * 1e9 / elapsed,
+			  snapshot.getP50Nanos() / 1e6,
+			  snapshot.getP99Nanos() / 1e6,
+			  snapshot.getP999Nanos() / 1e6,
+			  snapshot.getMaxNanos() / 1e6, errors.sum());
+    }
+
+    /* Calls the API from every thread until the time is up and returns
+       how long that took */
+    private long drive(String api, long durationNanos,
+		       LatencyHistogram latencies, LongAdder errors)
+	throws InterruptedException {
+	long start = System.nanoTime();
+	long deadline = start + durationNanos;
+	List<Thread> threads = new ArrayList<Thread>();
+
+	for (int i = 0; i < concurrency; i++) {
+	    Thread thread = new Thread(() -> {
+		while (System.nanoTime() < deadline) {
+		    long before = System.nanoTime();
+		    boolean succeeded = call(api);
+		    latencies.record(System.nanoTime() - before);
+		    if (!succeeded)
+			errors.increment();
+		}
+	    }, "load-driver-" + i);
+	    threads.add(thread);
+	    thread.start();
+	}
+	for (Thread thread : threads)
+	    thread.join();
+	return System.nanoTime() - start;
+    }
+
+    /* Makes one call and reports whether it returned a result */
+    private boolean call(String api) {
+	try {
+	    return callOrThrow(api);
+	} catch (YQLException e) {
+	    return false;
+	}
+    }
+
+    private boolean callOrThrow(String api) {
+	switch (api) {
+	case "quote":
+	    return YQLWrapper.quote(ticker()) != null;
+	case "quotes":
+	    return !YQLWrapper.quotes(tickers()).isEmpty();
+	case "prices":
+	    return !YQLWrapper.quotes(tickers(), PRICE_FIELDS).isEmpty();
+	default:
+	    return YQLWrapper.financialStatement
+		(ticker(), StatementType.INCOME_STATEMENT,
+		 PeriodType.ANNUAL) != null;
+	}
+    }
+
+    private String ticker() {
+	return "T" + nextTicker.getAndIncrement();
+    }
+
+    private List<String> tickers() {
+	List<String> tickers = new ArrayList<String>(BATCH_SIZE);
+	for (int i = 0; i < BATCH_SIZE; i++)
+	    tickers.add(ticker());
+	return Collections.unmodifiableList(tickers);
+    }
+}
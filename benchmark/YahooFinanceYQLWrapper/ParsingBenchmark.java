@@ -0,0 +1,251 @@
+package YahooFinanceYQLWrapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Replays recorded YQL quote XML and financial statement HTML through the
+ * wrapper's parsing hot paths.
+ *
+ * <p>Compile the wrapper and benchmarks together and run from the project
+ * root:
+ * <pre>
+ *   javac -d out YahooFinanceYQLWrapper/*.java benchmark/YahooFinanceYQLWrapper/*.java
+ *   java -cp out YahooFinanceYQLWrapper.ParsingBenchmark [fixtures dir] [name filter]
+ * </pre>
+ *
+ * @author Amandeep Sarow
+ */
+public final class ParsingBenchmark {
+    private static final String STATEMENT_URL = "https://finance.yahoo.com/q/";
+    private static final Set<QuoteField> ALL_FIELDS =
+	EnumSet.allOf(QuoteField.class);
+    private static final Set<QuoteField> PRICE_FIELDS =
+	EnumSet.of(QuoteField.LAST_TRADE_PRICE, QuoteField.BID, QuoteField.ASK);
+    private static final String[] HEADER_WORDS = {
+	"Total Revenue ", "Assets ", "Operating Expenses ", "Liabilities ",
+	"Stockholders' Equity ", "Net Income Applicable To Common Shares ",
+	"Financing Activities, Cash Flows Provided By or Used In "
+    };
+
+    public static void main(String[] args) throws Exception {
+	Path fixtures = Paths.get(args.length > 0 ? args[0] : "benchmark/fixtures");
+	String filter = args.length > 1 ? args[1] : "";
+	BenchmarkRunner runner = new BenchmarkRunner(2000, 1000, 5);
+
+	byte[] quote = Files.readAllBytes(fixtures.resolve("quote-AAPL.xml"));
+	byte[] batch = Files.readAllBytes(fixtures.resolve("quotes-batch-200.xml"));
+	byte[] prices =
+	    Files.readAllBytes(fixtures.resolve("quotes-batch-200-prices.xml"));
+	String[][] statements = {
+	    { "is", "annual", "is-AAPL-annual.html" },
+	    { "bs", "quarterly", "bs-AAPL-quarterly.html" },
+	    { "cf", "annual", "cf-AAPL-annual.html" }
+	};
+
+	InMemoryTransport transport = new InMemoryTransport();
+	YQLWrapper.setTransport(transport);
+
+	BenchmarkRunner.printHeader();
+	if ("quoteXML.single".contains(filter))
+	    runner.run("quoteXML.single", () -> parseQuotes(quote, 1));
+	if ("quoteXML.batch200".contains(filter))
+	    runner.run("quoteXML.batch200", () -> parseQuotes(batch, 200));
+	if ("quoteXML.batch200.prices".contains(filter))
+	    runner.run("quoteXML.batch200.prices",
+		       () -> parseQuotes(prices, PRICE_FIELDS, 200));
+	QuoteTable table = new QuoteTable(200);
+	if ("quoteXML.batch200.table".contains(filter))
+	    runner.run("quoteXML.batch200.table",
+		       () -> parseQuotesInto(batch, 200, table));
+
+	if ("indicators.10k".contains(filter)) {
+	    IndicatorEngine indicators = new IndicatorEngine(390);
+	    String[] symbols = new String[10000];
+	    for (int i = 0; i < symbols.length; i++)
+		symbols[i] = "S" + i;
+	    long[] ticks = new long[1];
+	    runner.run("indicators.10k",
+		       () -> updateIndicators(indicators, symbols, ticks[0]++));
+	}
+
+	if ("screen.10k.top20".contains(filter)) {
+	    QuoteTable universe = universe(10000);
+	    Screener value = new Screener()
+		.below(QuoteField.PE_RATIO, 15)
+		.below(QuoteField.PEG_RATIO, 1)
+		.above(QuoteField.SHORT_RATIO, 5);
+	    if ("screen.10k".contains(filter))
+		runner.run("screen.10k",
+			   () -> value.count(universe));
+	    runner.run("screen.10k.top20",
+		       () -> value.top(universe, QuoteField.SHORT_RATIO, 20,
+				       true).length);
+	}
+
+	if ("export.10k.csv".contains(filter)
+	    || "export.10k.columnar".contains(filter)) {
+	    List<QuoteSnapshot> snapshots = new ArrayList<QuoteSnapshot>();
+	    for (int i = 0; i < 50; i++)
+		snapshots.addAll(snapshots(batch, 200));
+	    Path file = Files.createTempFile("export", ".out");
+	    file.toFile().deleteOnExit();
+	    for (ExportFormat format : ExportFormat.values()) {
+		String name = "export.10k." + format.name().toLowerCase();
+		if (name.contains(filter))
+		    runner.run(name, () -> export(snapshots, format, file));
+	    }
+	}
+
+	for (String[] statement : statements) {
+	    String type = statement[0];
+	    String period = statement[1];
+	    byte[] page = Files.readAllBytes(fixtures.resolve(statement[2]));
+	    String lastLineItem = StatementType.forCode(type).lastLineItem();
+	    List<String[]> tableTokens = new ArrayList<String[]>();
+	    parser(page).parse(lastLineItem,
+			       line -> tableTokens.add(line.split(" ")));
+	    transport.respond(STATEMENT_URL + type, page);
+
+	    String name = "buildFinancialDataList." + type;
+	    if (name.contains(filter)) {
+		runner.run(name, () -> {
+		    long size = 0;
+		    for (String[] tokens : tableTokens) {
+			List<String> row = YQLWrapper.buildFinancialDataList
+			    (tokens, type);
+			size += row == null ? 0 : row.size();
+		    }
+		    return size;
+		});
+	    }
+
+	    name = "statementParser." + type;
+	    if (name.contains(filter)) {
+		long[] length = new long[1];
+		runner.run(name, () -> {
+		    length[0] = 0;
+		    parser(page).parse(lastLineItem,
+				       line -> length[0] += line.length());
+		    return length[0];
+		});
+	    }
+
+	    name = "statementDocument." + type + "." + period;
+	    if (name.contains(filter)) {
+		String url = STATEMENT_URL + type + "?s=AAPL&" + period;
+		runner.run(name, () -> YQLWrapper.retrieveFinancialStatementData
+			   (url, type).size());
+	    }
+	}
+
+	if ("checkIfHeader".contains(filter)) {
+	    runner.run("checkIfHeader", () -> {
+		long matches = 0;
+		for (String word : HEADER_WORDS) {
+		    if (YQLWrapper.checkIfHeader(word))
+			matches++;
+		}
+		return matches;
+	    });
+	}
+    }
+
+    private static long parseQuotes(byte[] xml, int expected)
+	throws IOException {
+	return parseQuotes(xml, ALL_FIELDS, expected);
+    }
+
+    private static long parseQuotes(byte[] xml, Set<QuoteField> fields,
+				    int expected) throws IOException {
+	Map<String, QuoteSnapshot> quotes =
+	    new LinkedHashMap<String, QuoteSnapshot>();
+	new QuoteXMLParser(new ByteArrayInputStream(xml))
+	    .parse(new QuoteSnapshot.Collector(quotes, fields), fields, expected);
+	return quotes.size();
+    }
+
+    private static long parseQuotesInto(byte[] xml, int expected,
+					QuoteTable table) throws IOException {
+	new QuoteXMLParser(new ByteArrayInputStream(xml))
+	    .parse(table.writer(ALL_FIELDS), ALL_FIELDS, expected);
+	return table.size();
+    }
+
+    private static List<QuoteSnapshot> snapshots(byte[] xml, int expected)
+	throws IOException {
+	Map<String, QuoteSnapshot> quotes =
+	    new LinkedHashMap<String, QuoteSnapshot>();
+	new QuoteXMLParser(new ByteArrayInputStream(xml))
+	    .parse(new QuoteSnapshot.Collector(quotes, ALL_FIELDS), ALL_FIELDS,
+		   expected);
+	return new ArrayList<QuoteSnapshot>(quotes.values());
+    }
+
+    /* Writes every snapshot to the file, replacing its contents */
+    private static long export(List<QuoteSnapshot> snapshots,
+			       ExportFormat format, Path file)
+	throws IOException {
+	ExportChannel channel = ExportChannel.create(file);
+	try (ExportWriter<QuoteSnapshot> writer = format == ExportFormat.CSV ?
+	     CsvExport.quotes(channel, ALL_FIELDS) :
+	     ColumnarExport.quotes(channel, ALL_FIELDS)) {
+	    for (QuoteSnapshot snapshot : snapshots)
+		writer.write(snapshot);
+	    return writer.rowCount();
+	}
+    }
+
+    /* Feeds one tick of a slowly rising price to every ticker */
+    private static long updateIndicators(IndicatorEngine indicators,
+					 String[] symbols, long tick) {
+	long updated = 0;
+	for (int i = 0; i < symbols.length; i++) {
+	    double price = 100 + i % 50 + (tick % 200) * 0.01;
+	    if (indicators.update(symbols[i], price, Double.NaN, Double.NaN,
+				  tick * 100))
+		updated++;
+	}
+	return updated;
+    }
+
+    /* A table of tickers with random ratios */
+    private static QuoteTable universe(int size) {
+	QuoteTable table = new QuoteTable(size);
+	Random random = new Random(42);
+	long fields = QuoteSnapshot.mask(EnumSet.of(QuoteField.PE_RATIO,
+						    QuoteField.PEG_RATIO,
+						    QuoteField.SHORT_RATIO));
+	for (int i = 0; i < size; i++) {
+	    double[] numbers = new double[QuoteField.values().length];
+	    Arrays.fill(numbers, Double.NaN);
+	    numbers[QuoteField.PE_RATIO.ordinal()] = random.nextDouble() * 60;
+	    numbers[QuoteField.PEG_RATIO.ordinal()] = random.nextDouble() * 4;
+	    numbers[QuoteField.SHORT_RATIO.ordinal()] =
+		random.nextDouble() * 10;
+	    table.put(new QuoteSnapshot("S" + i, numbers,
+					new String[numbers.length], fields));
+	}
+	return table;
+    }
+
+    /* A statement parser reading a recorded page */
+    private static StatementTableParser parser(byte[] page) {
+	return new StatementTableParser(new InputStreamReader
+					(new ByteArrayInputStream(page),
+					 StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,218 @@
+package YahooFinanceYQLWrapper;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A local stand-in for the YQL and Yahoo! Finance endpoints that serves the
+ * recorded fixtures, for load-testing the wrapper offline. Every response
+ * is delayed by a fixed latency plus a uniformly distributed jitter, a
+ * configurable fraction of requests fail with HTTP 503, and another
+ * fraction can be set to stall for much longer to model a slow upstream.
+ *
+ * <p>Quote queries for a single ticker are answered with the single quote
+ * fixture and larger ones with the 200-quote batch; queries that select
+ * only some columns get the price-only batch. Statement pages are answered
+ * with the fixture for their statement type, whatever the ticker.
+ *
+ * <p>Point the wrapper at the server with
+ * {@link YQLWrapper#setBaseURLs(String, String)}, or run it on its own:
+ * <pre>
+ *   java -cp out YahooFinanceYQLWrapper.StubYQLServer [fixtures dir] [port]
+ *        [latency ms] [jitter ms] [error rate]
+ * </pre>
+ *
+ * @author Amandeep Sarow
+ */
+final class StubYQLServer implements Closeable {
+    private static final String QUOTE_PATH = "/v1/public/yql";
+    private static final String STATEMENT_PATH = "/q/";
+    private static final String SELECT_ALL = "select%20*";
+    private static final String SYMBOL_SEPARATOR = "%22%2C%22";
+
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final byte[] quote;
+    private final byte[] batch;
+    private final byte[] prices;
+    private final byte[][] statements =
+	new byte[StatementType.values().length][];
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final double errorRate;
+    private volatile double stallRate;
+    private volatile long stallNanos;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Starts a server on the loopback interface.
+     *
+     * @param fixtures  The directory holding the recorded responses.
+     * @param port      The port to listen on, or 0 for any free port.
+     * @param latency   The delay added to every response.
+     * @param jitter    The most extra delay added at random.
+     * @param unit      The unit of the latency and jitter.
+     * @param errorRate The fraction of requests to fail, from 0 to 1.
+     * @throws IOException If a fixture cannot be read or the port bound.
+     */
+    StubYQLServer(Path fixtures, int port, long latency, long jitter,
+		  TimeUnit unit, double errorRate) throws IOException {
+	quote = Files.readAllBytes(fixtures.resolve("quote-AAPL.xml"));
+	batch = Files.readAllBytes(fixtures.resolve("quotes-batch-200.xml"));
+	prices = Files.readAllBytes(fixtures.resolve(
+					"quotes-batch-200-prices.xml"));
+	statements[StatementType.INCOME_STATEMENT.ordinal()] =
+	    Files.readAllBytes(fixtures.resolve("is-AAPL-annual.html"));
+	statements[StatementType.BALANCE_SHEET.ordinal()] =
+	    Files.readAllBytes(fixtures.resolve("bs-AAPL-quarterly.html"));
+	statements[StatementType.CASH_FLOW.ordinal()] =
+	    Files.readAllBytes(fixtures.resolve("cf-AAPL-annual.html"));
+	latencyNanos = unit.toNanos(latency);
+	jitterNanos = unit.toNanos(jitter);
+	this.errorRate = errorRate;
+
+	workers = Executors.newCachedThreadPool(r -> {
+	    Thread thread = new Thread(r, "stub-yql-server");
+	    thread.setDaemon(true);
+	    return thread;
+	});
+	InetSocketAddress address =
+	    new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+	server = HttpServer.create(address, 1024);
+	server.setExecutor(workers);
+	server.createContext("/", this::handle);
+	server.start();
+    }
+
+    /**
+     * Makes a fraction of responses stall for an extra delay.
+     *
+     * @param rate  The fraction of requests to stall, from 0 to 1.
+     * @param delay The extra delay.
+     * @param unit  The unit of the delay.
+     */
+    void stall(double rate, long delay, TimeUnit unit) {
+	stallNanos = unit.toNanos(delay);
+	stallRate = rate;
+    }
+
+    /** @return The base URL to pass for quote queries. */
+    String quoteBaseURL() {
+	return "http://127.0.0.1:" + port() + QUOTE_PATH;
+    }
+
+    /** @return The base URL to pass for statement pages. */
+    String statementBaseURL() {
+	return "http://127.0.0.1:" + port() + STATEMENT_PATH;
+    }
+
+    /** @return The port the server is listening on. */
+    int port() {
+	return server.getAddress().getPort();
+    }
+
+    /** @return The number of requests received. */
+    long requestCount() {
+	return requests.sum();
+    }
+
+    /** @return The number of requests failed on purpose. */
+    long failureCount() {
+	return failures.sum();
+    }
+
+    /** Stops the server, abandoning requests still being delayed. */
+    public void close() {
+	server.stop(0);
+	workers.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+	requests.increment();
+	try {
+	    ThreadLocalRandom random = ThreadLocalRandom.current();
+	    long delay = latencyNanos +
+		(jitterNanos > 0 ? random.nextLong(jitterNanos + 1) : 0);
+	    if (random.nextDouble() < stallRate)
+		delay += stallNanos;
+	    if (delay > 0)
+		TimeUnit.NANOSECONDS.sleep(delay);
+
+	    if (random.nextDouble() < errorRate) {
+		failures.increment();
+		exchange.sendResponseHeaders(503, -1);
+		return;
+	    }
+
+	    String path = exchange.getRequestURI().getPath();
+	    byte[] body = route(path, exchange.getRequestURI().getRawQuery());
+	    if (body == null) {
+		exchange.sendResponseHeaders(404, -1);
+		return;
+	    }
+	    exchange.getResponseHeaders()
+		.set("Content-Type", path.startsWith(QUOTE_PATH) ?
+		     "text/xml; charset=UTF-8" : "text/html; charset=UTF-8");
+	    exchange.sendResponseHeaders(200, body.length);
+	    try (OutputStream out = exchange.getResponseBody()) {
+		out.write(body);
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	} finally {
+	    exchange.close();
+	}
+    }
+
+    /* Picks the recorded response for a request, or null if there is
+       none */
+    private byte[] route(String path, String query) {
+	if (path.startsWith(QUOTE_PATH)) {
+	    if (query == null)
+		return null;
+	    if (!query.contains(SELECT_ALL))
+		return prices;
+	    return query.contains(SYMBOL_SEPARATOR) ? batch : quote;
+	}
+	if (path.startsWith(STATEMENT_PATH)) {
+	    try {
+		String code = path.substring(STATEMENT_PATH.length());
+		return statements[StatementType.forCode(code).ordinal()];
+	    } catch (IllegalArgumentException e) {
+		return null;
+	    }
+	}
+	return null;
+    }
+
+    public static void main(String[] args) throws Exception {
+	Path fixtures =
+	    Paths.get(args.length > 0 ? args[0] : "benchmark/fixtures");
+	int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+	long latency = args.length > 2 ? Long.parseLong(args[2]) : 20;
+	long jitter = args.length > 3 ? Long.parseLong(args[3]) : 10;
+	double errorRate = args.length > 4 ? Double.parseDouble(args[4]) : 0;
+
+	StubYQLServer server = new StubYQLServer(fixtures, port, latency,
+						 jitter, TimeUnit.MILLISECONDS,
+						 errorRate);
+	System.out.println("Serving " + fixtures + " on port " + server.port());
+	System.out.println("  quotes:     " + server.quoteBaseURL());
+	System.out.println("  statements: " + server.statementBaseURL());
+	Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,82 @@
+package YahooFinanceYQLWrapper;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The checks the tests make. Each throws an {@link AssertionError}
+ * describing the mismatch when it does not hold.
+ *
+ * @author Amandeep Sarow
+ */
+final class Assert {
+    /** A block of code that is expected to throw. */
+    interface Block {
+	void run() throws Exception;
+    }
+
+    private Assert() {
+    }
+
+    static void assertTrue(String message, boolean condition) {
+	if (!condition)
+	    throw new AssertionError(message);
+    }
+
+    static void assertEquals(long expected, long actual) {
+	if (expected != actual)
+	    fail("expected " + expected + " but was " + actual);
+    }
+
+    /* Doubles are compared exactly, and NaN equals NaN */
+    static void assertEquals(double expected, double actual) {
+	if (Double.compare(expected, actual) != 0)
+	    fail("expected " + expected + " but was " + actual);
+    }
+
+    static void assertEquals(Object expected, Object actual) {
+	if (!Objects.equals(expected, actual))
+	    fail("expected " + expected + " but was " + actual);
+    }
+
+    static void assertArrayEquals(int[] expected, int[] actual) {
+	if (!Arrays.equals(expected, actual))
+	    fail("expected " + Arrays.toString(expected) + " but was " +
+		 Arrays.toString(actual));
+    }
+
+    static void assertNull(Object actual) {
+	if (actual != null)
+	    fail("expected null but was " + actual);
+    }
+
+    static void assertNotNull(Object actual) {
+	if (actual == null)
+	    fail("expected a value but was null");
+    }
+
+    /**
+     * Checks that a block throws an exception of the given type.
+     *
+     * @param expected The type of exception expected.
+     * @param block    The code expected to throw it.
+     * @return         The exception thrown.
+     */
+    static <T extends Throwable> T assertThrows(Class<T> expected,
+						Block block) {
+	try {
+	    block.run();
+	} catch (Throwable e) {
+	    if (expected.isInstance(e))
+		return expected.cast(e);
+	    throw new AssertionError("expected " + expected.getSimpleName() +
+				     " but " + e + " was thrown", e);
+	}
+	throw new AssertionError("expected " + expected.getSimpleName() +
+				 " but nothing was thrown");
+    }
+
+    static void fail(String message) {
+	throw new AssertionError(message);
+    }
+}
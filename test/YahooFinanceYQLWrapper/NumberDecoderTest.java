@@ -0,0 +1,77 @@
+package YahooFinanceYQLWrapper;
+
+import static YahooFinanceYQLWrapper.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Tests {@link NumberDecoder} on the number formats the YQL returns.
+ *
+ * @author Amandeep Sarow
+ */
+public final class NumberDecoderTest {
+    public void testPlainDecimals() {
+	assertEquals(197.68, decode("197.68"));
+	assertEquals(42.0, decode(" 42 "));
+	assertEquals(0.5, decode(".5"));
+	assertEquals(1.23, decode("+1.23"));
+	assertEquals(-0.52, decode("-0.52"));
+	assertEquals(0.0, decode("0"));
+    }
+
+    public void testSeparatorsAndPercentSign() {
+	assertEquals(1234.5, decode("1,234.5"));
+	assertEquals(1234567.0, decode("1,234,567"));
+	assertEquals(-0.52, decode("-0.52%"));
+	assertEquals(12.0, decode("+12%"));
+    }
+
+    public void testLargeAmountSuffixes() {
+	assertEquals(12500.0, decode("12.5K"));
+	assertEquals(3400000.0, decode("3.4M"));
+	assertEquals(2100000000.0, decode("2.1B"));
+	assertEquals(640200000000.0, decode("640.2B"));
+	assertEquals(-1500000000.0, decode("-1.5B"));
+	assertEquals(1200000000000.0, decode("1.2T"));
+    }
+
+    public void testMalformedInputIsNaN() {
+	String[] malformed = {
+	    "", "   ", "N/A", "-", "+", ".", "%", "B", "abc", "1.2.3",
+	    "1.2X", "1B%", "1BB", "--1", "1-", "12 34", "1e5"
+	};
+	for (String s : malformed)
+	    assertTrue("\"" + s + "\" decoded to " + decode(s),
+		       Double.isNaN(decode(s)));
+    }
+
+    public void testAgreesWithParseDouble() {
+	Random random = new Random(42);
+	for (int i = 0; i < 100000; i++) {
+	    long digits = random.nextLong() % 1000000000000000L;
+	    int scale = random.nextInt(16);
+	    StringBuilder sb =
+		new StringBuilder(Long.toString(Math.abs(digits)));
+	    while (sb.length() <= scale)
+		sb.insert(0, '0');
+	    if (scale > 0)
+		sb.insert(sb.length() - scale, '.');
+	    if (digits < 0)
+		sb.insert(0, '-');
+	    String s = sb.toString();
+	    assertTrue(s + " decoded to " + decode(s),
+		       decode(s) == Double.parseDouble(s));
+	}
+    }
+
+    public void testDecodesOnlyTheGivenRange() {
+	byte[] bytes = "<Ask>197.70</Ask>".getBytes(StandardCharsets.US_ASCII);
+	assertEquals(197.70, NumberDecoder.decode(bytes, 5, 11));
+    }
+
+    private static double decode(String s) {
+	byte[] bytes = s.getBytes(StandardCharsets.US_ASCII);
+	return NumberDecoder.decode(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,105 @@
+package YahooFinanceYQLWrapper;
+
+import static YahooFinanceYQLWrapper.Assert.*;
+import static YahooFinanceYQLWrapper.Quotes.snapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the expiry and eviction of {@link QuoteCache}.
+ *
+ * @author Amandeep Sarow
+ */
+public final class QuoteCacheTest {
+    private static final long INTRADAY_TTL = 50;
+
+    private final QuoteCache cache =
+	new QuoteCache(1000, INTRADAY_TTL, 3600000, TimeUnit.MILLISECONDS);
+
+    public void testIntradayFieldsExpireBeforeFundamentalOnes()
+	throws InterruptedException {
+	cache.put("AAPL", snapshot("AAPL", QuoteField.ASK, 197.70,
+				   QuoteField.BOOK_VALUE, 25.1));
+	assertNotNull(cache.get("AAPL", QuoteField.ASK));
+
+	Thread.sleep(2 * INTRADAY_TTL);
+	assertNull(cache.get("AAPL", QuoteField.ASK));
+	assertEquals(25.1, cache.get("AAPL", QuoteField.BOOK_VALUE)
+		     .getDouble(QuoteField.BOOK_VALUE));
+	assertEquals(2, cache.hitCount());
+	assertEquals(1, cache.missCount());
+    }
+
+    public void testEachFieldKeepsItsOwnFetchTime()
+	throws InterruptedException {
+	cache.put("AAPL", snapshot("AAPL", QuoteField.ASK, 197.70,
+				   QuoteField.BID, 197.60));
+	Thread.sleep(2 * INTRADAY_TTL);
+	cache.put("AAPL", snapshot("AAPL", QuoteField.ASK, 197.80));
+
+	QuoteSnapshot cached = cache.get("AAPL", QuoteField.ASK);
+	assertEquals(197.80, cached.getDouble(QuoteField.ASK));
+	assertEquals(197.60, cached.getDouble(QuoteField.BID));
+	assertNull(cache.get("AAPL", QuoteField.BID));
+    }
+
+    public void testFieldNotRequestedIsAMiss() {
+	cache.put("AAPL", snapshot("AAPL", QuoteField.ASK, 197.70));
+	assertNull(cache.get("AAPL", QuoteField.BID));
+	assertNull(cache.get("MSFT", QuoteField.ASK));
+	assertEquals(2, cache.missCount());
+    }
+
+    public void testTickersIgnoreCaseAndSurroundingWhitespace() {
+	cache.put("aapl", snapshot("AAPL", QuoteField.ASK, 197.70));
+	assertNotNull(cache.get(" AAPL ", QuoteField.ASK));
+	assertEquals(1, cache.size());
+    }
+
+    public void testLeastRecentlyUsedTickerIsEvicted() {
+	/* Sixteen segments of two entries each, filled with tickers that
+	   all fall in the same segment */
+	QuoteCache small = new QuoteCache(32, 1, 1, TimeUnit.HOURS);
+	List<String> tickers = sameSegment(3);
+	String first = tickers.get(0);
+	String second = tickers.get(1);
+	String third = tickers.get(2);
+
+	small.put(first, snapshot(first, QuoteField.ASK, 1.0));
+	small.put(second, snapshot(second, QuoteField.ASK, 2.0));
+	assertNotNull(small.get(first, QuoteField.ASK));
+	small.put(third, snapshot(third, QuoteField.ASK, 3.0));
+
+	assertNull(small.get(second, QuoteField.ASK));
+	assertNotNull(small.get(first, QuoteField.ASK));
+	assertNotNull(small.get(third, QuoteField.ASK));
+	assertEquals(2, small.size());
+	assertEquals(1, small.evictionCount());
+    }
+
+    public void testCacheOfNoEntriesStoresNothing() {
+	QuoteCache disabled = new QuoteCache(0, 1, 1, TimeUnit.HOURS);
+	disabled.put("AAPL", snapshot("AAPL", QuoteField.ASK, 197.70));
+	assertNull(disabled.get("AAPL", QuoteField.ASK));
+	assertEquals(0, disabled.size());
+    }
+
+    /* Finds tickers whose keys hash to the same segment */
+    private static List<String> sameSegment(int count) {
+	List<String> tickers = new ArrayList<String>();
+	int wanted = segment("T0");
+	for (int i = 0; tickers.size() < count; i++) {
+	    String ticker = "T" + i;
+	    if (segment(ticker) == wanted)
+		tickers.add(ticker);
+	}
+	return tickers;
+    }
+
+    private static int segment(String key) {
+	int h = key.hashCode();
+	return (h ^ (h >>> 16)) & 15;
+    }
+}
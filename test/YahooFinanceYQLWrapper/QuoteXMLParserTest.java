@@ -0,0 +1,105 @@
+package YahooFinanceYQLWrapper;
+
+import static YahooFinanceYQLWrapper.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests {@link QuoteXMLParser} on recorded and hand-written responses.
+ *
+ * @author Amandeep Sarow
+ */
+public final class QuoteXMLParserTest {
+    private static final Set<QuoteField> WANTED =
+	EnumSet.of(QuoteField.ASK, QuoteField.BID, QuoteField.NAME);
+
+    public void testRecordedQuote() throws IOException {
+	Set<QuoteField> all = EnumSet.allOf(QuoteField.class);
+	Map<String, QuoteSnapshot> quotes =
+	    parse(Files.newInputStream(TestRunner.fixture("quote-AAPL.xml")),
+		  all, 1);
+	QuoteSnapshot aapl = quotes.get("AAPL");
+
+	assertEquals(1, quotes.size());
+	assertEquals(all, aapl.fields());
+	assertEquals(197.70, aapl.ask());
+	assertEquals(197.68, aapl.getDouble(QuoteField.LAST_TRADE_PRICE));
+	assertEquals(43783473L, aapl.averageDailyVolume());
+	assertEquals(60250000000.0, aapl.getDouble(QuoteField.MARKETCAP));
+	assertEquals(-1.77, aapl.getDouble(QuoteField.CHANGE_PERCENT));
+	assertEquals("AAPL Holdings Inc.", aapl.getText(QuoteField.NAME));
+    }
+
+    public void testRecordedBatch() throws IOException {
+	InputStream batch =
+	    Files.newInputStream(TestRunner.fixture("quotes-batch-200.xml"));
+	Map<String, QuoteSnapshot> quotes = parse(batch, WANTED, 200);
+	assertEquals(200, quotes.size());
+	for (QuoteSnapshot quote : quotes.values())
+	    assertEquals(WANTED, quote.fields());
+    }
+
+    public void testSelfClosingAndMissingFieldsAreAbsent() throws IOException {
+	Map<String, QuoteSnapshot> quotes = parse(xml(
+	    "<?xml version=\"1.0\"?>\n<query><results>\n" +
+	    "<quote symbol=\"AAA\"><Ask/><Bid>1.5</Bid>" +
+	    "<Name>Alpha &amp; Co</Name></quote>\n" +
+	    "<quote symbol=\"BBB\"><Ask>N/A</Ask><Name/></quote>\n" +
+	    "</results></query>"), WANTED, 2);
+	QuoteSnapshot aaa = quotes.get("AAA");
+	QuoteSnapshot bbb = quotes.get("BBB");
+
+	assertEquals(2, quotes.size());
+	assertTrue("Ask was not requested", aaa.has(QuoteField.ASK));
+	assertEquals(Double.NaN, aaa.getDouble(QuoteField.ASK));
+	assertEquals(1.5, aaa.getDouble(QuoteField.BID));
+	assertEquals("Alpha & Co", aaa.getText(QuoteField.NAME));
+	assertEquals(Double.NaN, bbb.getDouble(QuoteField.ASK));
+	assertEquals(Double.NaN, bbb.getDouble(QuoteField.BID));
+	assertNull(bbb.getText(QuoteField.NAME));
+    }
+
+    public void testTagsSplitAcrossLines() throws IOException {
+	Map<String, QuoteSnapshot> quotes = parse(xml(
+	    "<query><results><quote\n  symbol=\"AAA\"\n><Ask\n>\n 2.5\n" +
+	    "</Ask\n><Bid>2.4</Bid><Name> A </Name></quote></results></query>"),
+	    WANTED, 1);
+	assertEquals(2.5, quotes.get("AAA").ask());
+	assertEquals("A", quotes.get("AAA").getText(QuoteField.NAME));
+    }
+
+    public void testStopsAfterTheExpectedQuotes() throws IOException {
+	Map<String, QuoteSnapshot> quotes = parse(xml(
+	    "<query><results><quote symbol=\"AAA\"><Ask>1</Ask>" +
+	    "<Bid>1</Bid><Name>A</Name></quote><quote symbol=\"BBB\">" +
+	    "<Ask>2</Ask></quote></results></query>"), WANTED, 1);
+	assertEquals(1, quotes.size());
+	assertNotNull(quotes.get("AAA"));
+    }
+
+    private static Map<String, QuoteSnapshot> parse(InputStream in,
+						    Set<QuoteField> wanted,
+						    int expectedQuotes)
+	throws IOException {
+	QuoteSnapshot.Collector collector = new QuoteSnapshot.Collector(
+	    new LinkedHashMap<String, QuoteSnapshot>(), wanted);
+	try (InputStream closing = in) {
+	    int quotes = new QuoteXMLParser(closing)
+		.parse(collector, wanted, expectedQuotes);
+	    assertEquals(collector.quotes().size(), quotes);
+	}
+	return collector.quotes();
+    }
+
+    private static InputStream xml(String s) {
+	return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
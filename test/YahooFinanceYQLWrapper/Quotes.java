@@ -0,0 +1,42 @@
+package YahooFinanceYQLWrapper;
+
+import java.util.Arrays;
+
+/**
+ * Builds the quote snapshots the tests feed to the wrapper.
+ *
+ * @author Amandeep Sarow
+ */
+final class Quotes {
+    private static final int FIELD_COUNT = QuoteField.values().length;
+
+    private Quotes() {
+    }
+
+    /**
+     * Builds a snapshot requested with exactly the given fields.
+     *
+     * @param symbol The stock ticker.
+     * @param values Pairs of a field and its value, a Double for numeric
+     *               fields and a String for text ones. A null value leaves
+     *               the field requested but absent.
+     * @return       The snapshot.
+     */
+    static QuoteSnapshot snapshot(String symbol, Object... values) {
+	double[] numbers = new double[FIELD_COUNT];
+	String[] text = new String[FIELD_COUNT];
+	long fields = 0;
+	Arrays.fill(numbers, Double.NaN);
+
+	for (int i = 0; i < values.length; i += 2) {
+	    QuoteField field = (QuoteField) values[i];
+	    Object value = values[i + 1];
+	    fields |= 1L << field.ordinal();
+	    if (value instanceof String)
+		text[field.ordinal()] = (String) value;
+	    else if (value != null)
+		numbers[field.ordinal()] = ((Number) value).doubleValue();
+	}
+	return new QuoteSnapshot(symbol, numbers, text, fields);
+    }
+}
@@ -0,0 +1,149 @@
+package YahooFinanceYQLWrapper;
+
+import static YahooFinanceYQLWrapper.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the retries, retry budget and deadline of {@link RequestRunner}
+ * against transports that fail on cue.
+ *
+ * @author Amandeep Sarow
+ */
+public final class RequestRunnerTest {
+    private static final String URL = "https://query.yahooapis.com/test";
+    private static final RequestPolicy NO_BACKOFF = RequestPolicy.DEFAULT
+	.withDeadline(5, TimeUnit.SECONDS)
+	.withRetries(3, 0, 0, TimeUnit.MILLISECONDS)
+	.withRetryBudget(0, 100)
+	.withHedging(false);
+
+    private final RequestRunner runner = new RequestRunner();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    public void testTransientFailureIsRetried() {
+	HttpTransport previous = YQLWrapper.transport();
+	YQLWrapper.setTransport(url -> {
+	    if (requests.incrementAndGet() < 3)
+		throw new ConnectException("Connection refused");
+	    return body("ok");
+	});
+	try {
+	    assertEquals("ok", runner.fetch(NO_BACKOFF, URL,
+					    RequestRunnerTest::read));
+	    assertEquals(3, requests.get());
+	} finally {
+	    YQLWrapper.setTransport(previous);
+	}
+    }
+
+    public void testAttemptsStopAtMaxAttempts() {
+	HttpTransport previous = YQLWrapper.transport();
+	YQLWrapper.setTransport(url -> {
+	    requests.incrementAndGet();
+	    throw new HttpStatusException(503, url);
+	});
+	try {
+	    YQLException e = assertThrows(YQLException.class, () ->
+		runner.fetch(NO_BACKOFF, URL, RequestRunnerTest::read));
+	    assertEquals(Metrics.ErrorCause.HTTP_STATUS, e.errorCause());
+	    assertEquals(3, e.attempts());
+	    assertEquals(3, requests.get());
+	} finally {
+	    YQLWrapper.setTransport(previous);
+	}
+    }
+
+    public void testPermanentFailureIsNotRetried() {
+	HttpTransport previous = YQLWrapper.transport();
+	YQLWrapper.setTransport(url -> {
+	    requests.incrementAndGet();
+	    throw new FileNotFoundException(url);
+	});
+	try {
+	    YQLException e = assertThrows(YQLException.class, () ->
+		runner.fetch(NO_BACKOFF, URL, RequestRunnerTest::read));
+	    assertEquals(Metrics.ErrorCause.NOT_FOUND, e.errorCause());
+	    assertEquals(1, e.attempts());
+	    assertEquals(1, requests.get());
+	} finally {
+	    YQLWrapper.setTransport(previous);
+	}
+    }
+
+    public void testRetryBudgetLimitsRetries() {
+	/* Two retries saved up, and one more earned every other call */
+	RequestPolicy policy = NO_BACKOFF
+	    .withRetries(10, 0, 0, TimeUnit.MILLISECONDS)
+	    .withRetryBudget(0.5, 2);
+	HttpTransport previous = YQLWrapper.transport();
+	YQLWrapper.setTransport(url -> {
+	    requests.incrementAndGet();
+	    throw new ConnectException("Connection refused");
+	});
+	try {
+	    int[] expected = { 3, 1, 2, 1, 2 };
+	    for (int attempts : expected) {
+		YQLException e = assertThrows(YQLException.class, () ->
+		    runner.fetch(policy, URL, RequestRunnerTest::read));
+		assertEquals(Metrics.ErrorCause.CONNECTION, e.errorCause());
+		assertEquals(attempts, e.attempts());
+	    }
+	    assertEquals(9, requests.get());
+	} finally {
+	    YQLWrapper.setTransport(previous);
+	}
+    }
+
+    public void testDeadlineAbandonsStalledRequest()
+	throws InterruptedException {
+	CountDownLatch interrupted = new CountDownLatch(1);
+	RequestPolicy policy = NO_BACKOFF
+	    .withDeadline(200, TimeUnit.MILLISECONDS);
+	HttpTransport previous = YQLWrapper.transport();
+	YQLWrapper.setTransport(url -> {
+	    requests.incrementAndGet();
+	    try {
+		Thread.sleep(10000);
+	    } catch (InterruptedException e) {
+		interrupted.countDown();
+	    }
+	    return body("late");
+	});
+	try {
+	    long start = System.nanoTime();
+	    YQLException e = assertThrows(YQLException.class, () ->
+		runner.fetch(policy, URL, RequestRunnerTest::read));
+	    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() -
+							 start);
+
+	    assertEquals(Metrics.ErrorCause.TIMEOUT, e.errorCause());
+	    assertEquals(1, requests.get());
+	    assertTrue("the call took " + elapsed + " ms",
+		       elapsed >= 200 && elapsed < 2000);
+	    assertTrue("the stalled request was not interrupted",
+		       interrupted.await(5, TimeUnit.SECONDS));
+	} finally {
+	    YQLWrapper.setTransport(previous);
+	}
+    }
+
+    private static InputStream body(String s) {
+	return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(InputStream body) throws IOException {
+	try (Scanner scanner = new Scanner(body, "UTF-8")) {
+	    return scanner.useDelimiter("\\A").next();
+	}
+    }
+}
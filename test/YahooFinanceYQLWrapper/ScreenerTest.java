@@ -0,0 +1,120 @@
+package YahooFinanceYQLWrapper;
+
+import static YahooFinanceYQLWrapper.Assert.*;
+import static YahooFinanceYQLWrapper.Quotes.snapshot;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+/**
+ * Tests {@link Screener} against a brute-force scan and sort of the same
+ * table.
+ *
+ * @author Amandeep Sarow
+ */
+public final class ScreenerTest {
+    /* Enough rows for several blocks, the last one partly filled */
+    private static final int ROWS = 10000;
+
+    private final QuoteTable table = new QuoteTable(16);
+
+    public ScreenerTest() {
+	/* Values of one decimal place, so that many rows tie, and some
+	   absent */
+	Random random = new Random(7);
+	for (int i = 0; i < ROWS; i++)
+	    table.put(snapshot("T" + i,
+			       QuoteField.PE_RATIO, value(random, 40),
+			       QuoteField.SHORT_RATIO, value(random, 10),
+			       QuoteField.VOLUME, value(random, 1000)));
+    }
+
+    public void testMatchingAgainstBruteForce() {
+	check(new Screener(), id -> true);
+	check(new Screener().below(QuoteField.PE_RATIO, 15),
+	      id -> pe(id) < 15);
+	check(new Screener().below(QuoteField.PE_RATIO, 15)
+	      .above(QuoteField.SHORT_RATIO, 2),
+	      id -> pe(id) < 15 && shortRatio(id) > 2);
+	check(new Screener().between(QuoteField.SHORT_RATIO, 2.5, 2.5),
+	      id -> shortRatio(id) == 2.5);
+	check(new Screener().above(QuoteField.VOLUME, 1000), id -> false);
+    }
+
+    public void testTopAgainstBruteForce() {
+	Screener screener = new Screener().below(QuoteField.PE_RATIO, 30)
+	    .above(QuoteField.SHORT_RATIO, 1);
+	IntPredicate condition = id -> pe(id) < 30 && shortRatio(id) > 1;
+	for (int n : new int[] { 1, 20, 500, 4096, ROWS }) {
+	    for (boolean descending : new boolean[] { true, false }) {
+		assertArrayEquals(bruteForce(condition, QuoteField.VOLUME, n,
+					     descending),
+				  screener.top(table, QuoteField.VOLUME, n,
+					       descending));
+	    }
+	}
+    }
+
+    public void testTopOfNothing() {
+	Screener screener = new Screener().above(QuoteField.PE_RATIO, 100);
+	assertEquals(0, screener.top(table, QuoteField.VOLUME, 10, true)
+		     .length);
+	assertEquals(0, new Screener().top(table, QuoteField.VOLUME, 0, true)
+		     .length);
+	assertThrows(IllegalArgumentException.class,
+		     () -> new Screener().top(table, QuoteField.VOLUME, -1,
+					      true));
+    }
+
+    public void testTextFieldIsRejected() {
+	assertThrows(IllegalArgumentException.class,
+		     () -> new Screener().below(QuoteField.NAME, 1));
+    }
+
+    private static Double value(Random random, int max) {
+	if (random.nextInt(10) == 0)
+	    return null;
+	return random.nextInt(max * 10) / 10.0;
+    }
+
+    private void check(Screener screener, IntPredicate condition) {
+	int[] expected = bruteForce(condition, null, ROWS, false);
+	assertArrayEquals(expected, screener.matching(table));
+	assertEquals(expected.length, screener.count(table));
+    }
+
+    /* The rows that meet the condition, in row order or, when ranking,
+       best first with ties going to the lower row */
+    private int[] bruteForce(IntPredicate condition, QuoteField by, int n,
+			     boolean descending) {
+	List<Integer> rows = new ArrayList<Integer>();
+	for (int id = 0; id < table.size(); id++) {
+	    if (condition.test(id) &&
+		(by == null || !Double.isNaN(table.getDouble(id, by))))
+		rows.add(id);
+	}
+	if (by != null) {
+	    Comparator<Integer> byValue =
+		Comparator.comparingDouble(id -> table.getDouble(id, by));
+	    rows.sort((descending ? byValue.reversed() : byValue)
+		      .thenComparing(Comparator.naturalOrder()));
+	}
+
+	int[] expected = new int[Math.min(n, rows.size())];
+	for (int i = 0; i < expected.length; i++)
+	    expected[i] = rows.get(i);
+	return expected;
+    }
+
+    /* Comparisons with an absent value are false, as in the screener */
+    private double pe(int id) {
+	return table.getDouble(id, QuoteField.PE_RATIO);
+    }
+
+    private double shortRatio(int id) {
+	return table.getDouble(id, QuoteField.SHORT_RATIO);
+    }
+}
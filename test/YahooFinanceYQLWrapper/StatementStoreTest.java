@@ -0,0 +1,138 @@
+package YahooFinanceYQLWrapper;
+
+import static YahooFinanceYQLWrapper.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Tests that a {@link StatementStore} reads back what was put in it across
+ * reopening, compaction and a torn last record.
+ *
+ * @author Amandeep Sarow
+ */
+public final class StatementStoreTest {
+    public void testPutReopenAndCompactRoundTrip() throws IOException {
+	Path file = TestRunner.temporaryDirectory().resolve("statements.db");
+	try (StatementStore store = StatementStore.open(file)) {
+	    store.put(statement("AAPL", StatementType.BALANCE_SHEET, 1));
+	    store.put(statement("AAPL", StatementType.BALANCE_SHEET, 2));
+	    store.put(statement("MSFT", StatementType.CASH_FLOW, 3));
+	    assertEquals(2, store.size());
+	    check(store.get("AAPL", StatementType.BALANCE_SHEET,
+			    PeriodType.QUARTERLY), 2);
+	}
+
+	long uncompacted = Files.size(file);
+	try (StatementStore store = StatementStore.open(file)) {
+	    assertEquals(2, store.size());
+	    check(store.get("AAPL", StatementType.BALANCE_SHEET,
+			    PeriodType.QUARTERLY), 2);
+
+	    store.compact();
+	    assertTrue("compaction did not shrink the file",
+		       Files.size(file) < uncompacted);
+	    check(store.get("AAPL", StatementType.BALANCE_SHEET,
+			    PeriodType.QUARTERLY), 2);
+	    check(store.get("MSFT", StatementType.CASH_FLOW,
+			    PeriodType.QUARTERLY), 3);
+	    store.put(statement("IBM", StatementType.INCOME_STATEMENT, 4));
+	}
+
+	try (StatementStore store = StatementStore.open(file)) {
+	    assertEquals(3, store.size());
+	    check(store.get("AAPL", StatementType.BALANCE_SHEET,
+			    PeriodType.QUARTERLY), 2);
+	    check(store.get("MSFT", StatementType.CASH_FLOW,
+			    PeriodType.QUARTERLY), 3);
+	    check(store.get("IBM", StatementType.INCOME_STATEMENT,
+			    PeriodType.QUARTERLY), 4);
+	    assertNull(store.get("IBM", StatementType.INCOME_STATEMENT,
+				 PeriodType.ANNUAL));
+	}
+    }
+
+    public void testTornLastRecordIsDiscarded() throws IOException {
+	Path file = TestRunner.temporaryDirectory().resolve("statements.db");
+	try (StatementStore store = StatementStore.open(file)) {
+	    store.put(statement("AAPL", StatementType.BALANCE_SHEET, 1));
+	    store.put(statement("MSFT", StatementType.BALANCE_SHEET, 2));
+	}
+	try (FileChannel channel = FileChannel.open(file,
+						    StandardOpenOption.WRITE)) {
+	    channel.truncate(channel.size() - 5);
+	}
+
+	try (StatementStore store = StatementStore.open(file)) {
+	    assertEquals(1, store.size());
+	    check(store.get("AAPL", StatementType.BALANCE_SHEET,
+			    PeriodType.QUARTERLY), 1);
+	    assertNull(store.get("MSFT", StatementType.BALANCE_SHEET,
+				 PeriodType.QUARTERLY));
+	    store.put(statement("IBM", StatementType.BALANCE_SHEET, 3));
+	}
+
+	try (StatementStore store = StatementStore.open(file)) {
+	    assertEquals(2, store.size());
+	    check(store.get("AAPL", StatementType.BALANCE_SHEET,
+			    PeriodType.QUARTERLY), 1);
+	    check(store.get("IBM", StatementType.BALANCE_SHEET,
+			    PeriodType.QUARTERLY), 3);
+	}
+    }
+
+    public void testCorruptRecordIsReported() throws IOException {
+	Path file = TestRunner.temporaryDirectory().resolve("statements.db");
+	try (StatementStore store = StatementStore.open(file)) {
+	    store.put(statement("AAPL", StatementType.BALANCE_SHEET, 1));
+	}
+	try (FileChannel channel = FileChannel.open(file,
+						    StandardOpenOption.WRITE)) {
+	    /* The statement type of the first record */
+	    channel.write(ByteBuffer.wrap(new byte[] { 9 }), 12);
+	}
+
+	IOException e = assertThrows(IOException.class,
+				     () -> StatementStore.open(file).close());
+	assertTrue(e.getMessage(), e.getMessage().contains("corrupt"));
+    }
+
+    public void testFileThatIsNotAStoreIsRejected() throws IOException {
+	Path file = TestRunner.temporaryDirectory().resolve("statements.db");
+	Files.write(file, "not a statement store".getBytes("US-ASCII"));
+	assertThrows(IOException.class,
+		     () -> StatementStore.open(file).close());
+    }
+
+    /* A quarterly statement of two periods whose values derive from seed */
+    private static FinancialStatement statement(String ticker,
+						StatementType type, int seed) {
+	String[] lineItems = { "Total Assets", "Total Liabilities",
+			       "Net Tangible Assets" };
+	long[] values = new long[2 * lineItems.length];
+	for (int i = 0; i < values.length; i++)
+	    values[i] = seed * 1000000L + i;
+	values[1] = FinancialStatement.MISSING;
+	return new FinancialStatement(ticker, type, PeriodType.QUARTERLY,
+				      new int[] { 20150627, 20150328 },
+				      lineItems, values);
+    }
+
+    private static void check(FinancialStatement statement, int seed) {
+	FinancialStatement expected =
+	    statement(statement.ticker(), statement.type(), seed);
+	assertEquals(expected.periodCount(), statement.periodCount());
+	assertEquals(expected.lineItemCount(), statement.lineItemCount());
+	for (int p = 0; p < expected.periodCount(); p++) {
+	    assertEquals(expected.periodEnd(p), statement.periodEnd(p));
+	    for (int i = 0; i < expected.lineItemCount(); i++) {
+		assertEquals(expected.lineItem(i), statement.lineItem(i));
+		assertEquals(expected.value(i, p), statement.value(i, p));
+	    }
+	}
+    }
+}
@@ -0,0 +1,106 @@
+package YahooFinanceYQLWrapper;
+
+import static YahooFinanceYQLWrapper.Assert.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests {@link StatementTableParser} on the recorded statement pages.
+ *
+ * @author Amandeep Sarow
+ */
+public final class StatementTableParserTest {
+    public void testRecordedIncomeStatement() throws IOException {
+	List<String> lines = parse("is-AAPL-annual.html", "is");
+	assertEquals(27, lines.size());
+	assertEquals("Get Income Statement for: Period Ending Sep 27, 2014 " +
+		     "Sep 28, 2013 Sep 29, 2012", lines.get(0));
+	assertEquals("Total Revenue 51,068,974 66,169,359 48,351,710",
+		     lines.get(1));
+	assertEquals("Net Income Applicable To Common Shares 15,096,267 " +
+		     "27,378,005 83,582,898", lines.get(26));
+    }
+
+    public void testRecordedBalanceSheet() throws IOException {
+	List<String> lines = parse("bs-AAPL-quarterly.html", "bs");
+	assertEquals(40, lines.size());
+	assertEquals("Assets", lines.get(1));
+	assertEquals("Cash And Cash Equivalents 60,430,997 67,278,381 " +
+		     "54,796,182 85,512,728", lines.get(3));
+	assertEquals("Net Tangible Assets 81,562,363 28,600,360 30,047,899 " +
+		     "41,508,104", lines.get(39));
+    }
+
+    public void testRecordedCashFlow() throws IOException {
+	List<String> lines = parse("cf-AAPL-annual.html", "cf");
+	assertEquals(23, lines.size());
+	assertEquals("Net Income 12,595,996 48,284,715 76,369,740",
+		     lines.get(1));
+	assertEquals("Change In Cash and Cash Equivalents 37,928,422 " +
+		     "26,067,147 10,261,966", lines.get(22));
+    }
+
+    public void testLinesHoldNoMarkup() throws IOException {
+	String[] pages = { "is-AAPL-annual.html", "bs-AAPL-quarterly.html",
+			   "cf-AAPL-annual.html" };
+	for (String page : pages) {
+	    for (String line : parse(page, page.substring(0, 2)))
+		assertTrue(page + ": " + line, line.indexOf('<') == -1 &&
+			   line.indexOf('&') == -1 &&
+			   line.equals(line.trim()) && !line.contains("  "));
+	}
+    }
+
+    public void testEntitiesAndTagsAcrossLines() throws IOException {
+	List<String> lines = new ArrayList<String>();
+	boolean complete = new StatementTableParser(new StringReader(
+	    "<p>Period Ending</p>\n<tr><td class=\"a\"\n>Research &amp; " +
+	    "Development</td><td>&nbsp;1,234&nbsp;</td></tr>\n" +
+	    "<td>&#40;5&#41;</td>\n<td>Net Tangible Assets</td><td>7</td>\n" +
+	    "<p>tail</p>\n"))
+	    .parse("Net Tangible Assets", lines::add);
+
+	assertTrue("the table was not complete", complete);
+	assertEquals(4, lines.size());
+	assertEquals("Research & Development 1,234", lines.get(1));
+	assertEquals("(5)", lines.get(2));
+	assertEquals("Net Tangible Assets 7", lines.get(3));
+    }
+
+    public void testPageWithoutTable() throws IOException {
+	List<String> lines = new ArrayList<String>();
+	assertTrue("a table was found", !new StatementTableParser(
+	    new StringReader("<html><body>No such ticker</body></html>\n"))
+	    .parse("Net Tangible Assets", lines::add));
+	assertEquals(0, lines.size());
+    }
+
+    public void testPageEndingInsideTable() throws IOException {
+	byte[] bytes = Files.readAllBytes(
+	    TestRunner.fixture("bs-AAPL-quarterly.html"));
+	String page = new String(bytes, StandardCharsets.UTF_8);
+	String truncated = page.substring(0, page.indexOf("Net Tangible"));
+	assertThrows(EOFException.class, () ->
+		     new StatementTableParser(new StringReader(truncated))
+		     .parse("Net Tangible Assets", line -> { }));
+    }
+
+    private static List<String> parse(String page, String code)
+	throws IOException {
+	List<String> lines = new ArrayList<String>();
+	String last = StatementType.forCode(code).lastLineItem();
+	try (Reader in = Files.newBufferedReader(TestRunner.fixture(page),
+						 StandardCharsets.UTF_8)) {
+	    assertTrue(page + " has no complete table",
+		       new StatementTableParser(in).parse(last, lines::add));
+	}
+	return lines;
+    }
+}
@@ -0,0 +1,143 @@
+package YahooFinanceYQLWrapper;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A small, dependency-free test harness. Every public no-argument method
+ * whose name starts with "test" is run on a fresh instance of its class,
+ * and the run ends with a non-zero exit status if any of them failed.
+ *
+ * <p>Compile the wrapper and tests together and run from the project
+ * root:
+ * <pre>
+ *   javac -d out YahooFinanceYQLWrapper/*.java test/YahooFinanceYQLWrapper/*.java
+ *   java -cp out YahooFinanceYQLWrapper.TestRunner [fixtures dir] [name filter]
+ * </pre>
+ *
+ * @author Amandeep Sarow
+ */
+public final class TestRunner {
+    private static final Class<?>[] TESTS = {
+	QuoteCacheTest.class, NumberDecoderTest.class,
+	QuoteXMLParserTest.class, StatementTableParserTest.class,
+	StatementStoreTest.class, TickJournalTest.class, ScreenerTest.class,
+	RequestRunnerTest.class
+    };
+
+    private static Path fixtures;
+    private static final List<Path> directories = new ArrayList<Path>();
+
+    private TestRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+	fixtures = Paths.get(args.length > 0 ? args[0] : "benchmark/fixtures");
+	String filter = args.length > 1 ? args[1] : "";
+	int passed = 0;
+	int failed = 0;
+
+	for (Class<?> test : TESTS) {
+	    Method[] methods = test.getDeclaredMethods();
+	    Arrays.sort(methods, Comparator.comparing(Method::getName));
+	    for (Method method : methods) {
+		String name = test.getSimpleName() + "." + method.getName();
+		if (!isTest(method) || !name.contains(filter))
+		    continue;
+		Throwable failure = run(test, method);
+		if (failure == null) {
+		    System.out.println("PASS " + name);
+		    passed++;
+		} else {
+		    System.out.println("FAIL " + name + ": " + failure);
+		    failure.printStackTrace(System.out);
+		    failed++;
+		}
+	    }
+	}
+
+	System.out.printf("%d passed, %d failed%n", passed, failed);
+	System.exit(failed == 0 ? 0 : 1);
+    }
+
+    /**
+     * Resolves a recorded response in the fixtures directory.
+     *
+     * @param name The file name of the fixture.
+     * @return     The path to the fixture.
+     */
+    static Path fixture(String name) {
+	return fixtures.resolve(name);
+    }
+
+    /**
+     * Creates a scratch directory that is deleted once the running test
+     * ends.
+     *
+     * @return The new, empty directory.
+     */
+    static Path temporaryDirectory() throws IOException {
+	Path directory = Files.createTempDirectory("yqlwrapper-test");
+	directories.add(directory);
+	return directory;
+    }
+
+    private static boolean isTest(Method method) {
+	return method.getName().startsWith("test") &&
+	    method.getParameterCount() == 0 &&
+	    Modifier.isPublic(method.getModifiers()) &&
+	    !Modifier.isStatic(method.getModifiers());
+    }
+
+    /* Runs one test, returning why it failed or null if it passed */
+    private static Throwable run(Class<?> test, Method method) {
+	try {
+	    method.invoke(test.getDeclaredConstructor().newInstance());
+	    return null;
+	} catch (InvocationTargetException e) {
+	    return e.getCause();
+	} catch (ReflectiveOperationException e) {
+	    return e;
+	} finally {
+	    for (Path directory : directories)
+		delete(directory);
+	    directories.clear();
+	}
+    }
+
+    private static void delete(Path directory) {
+	try {
+	    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+		@Override
+		public FileVisitResult visitFile(Path file,
+						 BasicFileAttributes attrs)
+		    throws IOException {
+		    Files.delete(file);
+		    return FileVisitResult.CONTINUE;
+		}
+
+		@Override
+		public FileVisitResult postVisitDirectory(Path dir,
+							  IOException e)
+		    throws IOException {
+		    Files.delete(dir);
+		    return FileVisitResult.CONTINUE;
+		}
+	    });
+	} catch (IOException e) {
+	    System.out.println("Could not delete " + directory + ": " + e);
+	}
+    }
+}
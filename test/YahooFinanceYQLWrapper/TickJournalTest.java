@@ -0,0 +1,126 @@
+package YahooFinanceYQLWrapper;
+
+import static YahooFinanceYQLWrapper.Assert.*;
+import static YahooFinanceYQLWrapper.Quotes.snapshot;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests that a {@link TickReplay} delivers what a {@link TickJournal}
+ * recorded, across segment files.
+ *
+ * @author Amandeep Sarow
+ */
+public final class TickJournalTest {
+    private static final int RECORDS = 200;
+    private static final long START = 1444262400000L;
+
+    public void testReplayAcrossSegmentRolls() throws IOException {
+	Path directory = TestRunner.temporaryDirectory();
+	List<QuoteSnapshot> recorded = new ArrayList<QuoteSnapshot>();
+	try (TickJournal journal = TickJournal.open(directory, 4096)) {
+	    for (int i = 0; i < RECORDS; i++) {
+		QuoteSnapshot quote = quote(i);
+		journal.append(quote, START + 10 * i);
+		recorded.add(quote);
+	    }
+	    assertEquals(RECORDS, journal.recordCount());
+	}
+	assertTrue("the journal did not roll",
+		   TickJournal.segments(directory).size() > 2);
+
+	TickReplay replay = new TickReplay(directory);
+	List<QuoteSnapshot> replayed = new ArrayList<QuoteSnapshot>();
+	List<Long> timestamps = new ArrayList<Long>();
+	long delivered = replay.replay(Long.MIN_VALUE, Long.MAX_VALUE,
+				       quote -> {
+					   replayed.add(quote);
+					   timestamps.add(replay.timestamp());
+				       });
+
+	assertEquals(RECORDS, delivered);
+	for (int i = 0; i < RECORDS; i++) {
+	    check(recorded.get(i), replayed.get(i));
+	    assertEquals(START + 10 * i, (long) timestamps.get(i));
+	}
+    }
+
+    public void testReplayOfTimeRange() throws IOException {
+	Path directory = TestRunner.temporaryDirectory();
+	try (TickJournal journal = TickJournal.open(directory, 4096)) {
+	    for (int i = 0; i < RECORDS; i++)
+		journal.append(quote(i), START + 10 * i);
+	}
+
+	/* From is inclusive and to exclusive, and both fall between the
+	   records of some segment */
+	List<String> symbols = new ArrayList<String>();
+	long delivered = new TickReplay(directory)
+	    .replay(START + 495, START + 1500,
+		    quote -> symbols.add(quote.symbol()));
+	assertEquals(100, delivered);
+	assertEquals(quote(50).symbol(), symbols.get(0));
+	assertEquals(quote(149).symbol(), symbols.get(99));
+
+	assertEquals(0, new TickReplay(directory)
+		     .replay(START + 10 * RECORDS, Long.MAX_VALUE,
+			     quote -> { }));
+    }
+
+    public void testReopenedJournalStartsNewSegment() throws IOException {
+	Path directory = TestRunner.temporaryDirectory();
+	try (TickJournal journal = TickJournal.open(directory, 1 << 20)) {
+	    journal.append(quote(0), START);
+	}
+	try (TickJournal journal = TickJournal.open(directory, 1 << 20)) {
+	    journal.append(quote(1), START + 10);
+	}
+
+	assertEquals(2, TickJournal.segments(directory).size());
+	List<QuoteSnapshot> replayed = new ArrayList<QuoteSnapshot>();
+	new TickReplay(directory).replay(START, START + 20, replayed::add);
+	assertEquals(2, replayed.size());
+	check(quote(0), replayed.get(0));
+	check(quote(1), replayed.get(1));
+    }
+
+    public void testClockSetBackKeepsRecording() throws IOException {
+	Path directory = TestRunner.temporaryDirectory();
+	try (TickJournal journal = TickJournal.open(directory, 1 << 20)) {
+	    long future = System.currentTimeMillis() + 3600000;
+	    journal.append(quote(0), future);
+	    journal.onQuote(quote(1));
+	    assertEquals(2, journal.recordCount());
+	    assertEquals(0, journal.failureCount());
+	    assertThrows(IllegalArgumentException.class,
+			 () -> journal.append(quote(2), future - 1));
+	}
+    }
+
+    /* A snapshot with some fields requested but absent, and some not
+       requested at all */
+    private static QuoteSnapshot quote(int i) {
+	String symbol = "T" + (i % 7);
+	return i % 3 == 0 ?
+	    snapshot(symbol, QuoteField.ASK, 100 + i * 0.25,
+		     QuoteField.BID, null, QuoteField.VOLUME, 1000.0 * i,
+		     QuoteField.NAME, "Ticker " + i) :
+	    snapshot(symbol, QuoteField.LAST_TRADE_PRICE, 50 - i * 0.5,
+		     QuoteField.NAME, null);
+    }
+
+    private static void check(QuoteSnapshot expected, QuoteSnapshot actual) {
+	assertEquals(expected.symbol(), actual.symbol());
+	assertEquals(expected.fields(), actual.fields());
+	for (QuoteField field : QuoteField.values()) {
+	    if (field.hasText())
+		assertEquals(expected.getText(field), actual.getText(field));
+	    else
+		assertEquals(expected.getDouble(field),
+			     actual.getDouble(field));
+	}
+    }
+}